@@ -0,0 +1,269 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/** Deterministic generator of large synthetic repositories.  Commits and
+ *  blobs are written straight into the object directories instead of going
+ *  through add and commit, so building a deep history costs one object
+ *  write per new object.  The same seed and settings always produce the
+ *  same commit ids.
+ *  @author Ramon Moreno
+ */
+class RepoGenerator {
+
+    /** A generator with the settings in CONFIG.  Missing settings take the
+     *  defaults documented on the fields below. */
+    RepoGenerator(Properties config) {
+        _seed = Long.parseLong(config.getProperty("seed", "61"));
+        _files = intSetting(config, "files", 1000);
+        _commits = intSetting(config, "commits", 1000);
+        _branches = Math.max(1, intSetting(config, "branches", 8));
+        _changesPerCommit = intSetting(config, "changesPerCommit", 10);
+        _mergeInterval = intSetting(config, "mergeInterval", 50);
+        _crissCross = Boolean.parseBoolean(
+            config.getProperty("crissCross", "true"));
+        _blobSize = intSetting(config, "blobSize", 64);
+        _checkout = Boolean.parseBoolean(
+            config.getProperty("checkout", "true"));
+    }
+
+    /** Usage: java gitlet.RepoGenerator DIR [KEY=VALUE ...].  Generates a
+     *  repository in DIR, which must not already hold one. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java gitlet.RepoGenerator DIR "
+                + "[KEY=VALUE ...]");
+            System.exit(1);
+        }
+        Properties config = new Properties();
+        for (int i = 1; i < args.length; i += 1) {
+            String[] setting = args[i].split("=", 2);
+            config.setProperty(setting[0], setting.length > 1
+                ? setting[1] : "true");
+        }
+        RepoGenerator generator = new RepoGenerator(config);
+        long start = System.nanoTime();
+        generator.generate(new File(args[0]));
+        System.out.printf("%d commits, %d blobs in %.1f s%n",
+            generator.commitsWritten(), generator.blobsWritten(),
+            (System.nanoTime() - start) / 1e9);
+    }
+
+    /** Generates the repository in DIR and points Repository at it. */
+    void generate(File dir) {
+        dir.mkdirs();
+        Repository.setWorkingDirectory(dir);
+        if (Repository.GITLET_DIR.exists()) {
+            throw new IllegalArgumentException(dir + " already holds a "
+                + "Gitlet repository");
+        }
+        Random random = new Random(_seed);
+        Repository repository = new Repository();
+        _commitsWritten = 1;
+        _blobsWritten = 0;
+        _step = 0;
+
+        _trees = new TreeCache();
+        FileMap tree = new FileMap(_files);
+        for (int i = 0; i < _files; i += 1) {
+            tree.put(fileName(i), writeBlob(fileName(i), 0));
+        }
+        String root = writeCommit(tree,
+            new String[] {repository.headCommitUID()}, "import");
+
+        _heads = new String[_branches];
+        for (int b = 0; b < _branches; b += 1) {
+            _heads[b] = root;
+        }
+        _trees.put(root, tree);
+
+        int version = 1;
+        while (_commitsWritten < _commits) {
+            if (_branches > 1 && _mergeInterval > 0
+                    && _step % _mergeInterval == _mergeInterval - 1) {
+                int into = random.nextInt(_branches);
+                int from = (into + 1 + random.nextInt(_branches - 1))
+                    % _branches;
+                String oldInto = _heads[into];
+                merge(into, _heads[from]);
+                if (_crissCross && _commitsWritten < _commits) {
+                    merge(from, oldInto);
+                }
+            } else {
+                int b = random.nextInt(_branches);
+                FileMap files = new FileMap(tree(_heads[b]));
+                int changes = Math.min(_changesPerCommit, _files);
+                for (int c = 0; c < changes; c += 1) {
+                    String name = fileName(random.nextInt(_files));
+                    files.put(name, writeBlob(name, version));
+                }
+                version += 1;
+                _heads[b] = writeCommit(files, new String[] {_heads[b]},
+                    "commit " + _step + " on " + branchName(b));
+                _trees.put(_heads[b], files);
+            }
+            _step += 1;
+        }
+
+        for (int b = 0; b < _branches; b += 1) {
+            repository.setBranchHead(branchName(b), _heads[b]);
+        }
+        ObjectWriter.flush();
+        Utils.writeObject(Repository.REPO_FILE, repository);
+        if (_checkout) {
+            FileMap head = tree(_heads[0]);
+            for (String name : head.keySet()) {
+                Utils.writeContents(Repository.workingFile(name),
+                    Utils.readContents(Repository.blobFile(head.get(name))));
+            }
+        }
+        _trees = null;
+    }
+
+    /** Writes a merge commit of commit OTHER into branch INTO.  Files of
+     *  OTHER win wherever the two trees differ. */
+    private void merge(int into, String other) {
+        FileMap files = new FileMap(tree(_heads[into]));
+        files.putAll(tree(other));
+        _heads[into] = writeCommit(files, new String[] {_heads[into], other},
+            "Merged into " + branchName(into) + ".");
+        _trees.put(_heads[into], files);
+    }
+
+    /** Writes a commit of FILES with parents PARENTS and message MESSAGE,
+     *  dated one minute after the previous one, and returns its id. */
+    private String writeCommit(FileMap files,
+                               String[] parents, String message) {
+        Date date = new Date(BASE_TIME + 60_000L * _commitsWritten);
+        Commit commit = new Commit(files, parents, message, date);
+        Repository.writeCommit(commit,
+            CommitGraph.changedPaths(files, tree(parents[0])));
+        _commitsWritten += 1;
+        return commit.getMyUID();
+    }
+
+    /** Writes version VERSION of file NAME as a blob if it does not
+     *  exist yet, and returns its hash code. */
+    private ObjectId writeBlob(String name, int version) {
+        StringBuilder contents = new StringBuilder(_blobSize + 32);
+        contents.append(name).append(" version ").append(version).append('\n');
+        while (contents.length() < _blobSize) {
+            contents.append((char) ('a' + contents.length() % 26));
+        }
+        byte[] text = contents.toString().getBytes(StandardCharsets.UTF_8);
+        ObjectId id = Hashing.objectId(text);
+        File blob = Repository.blobFile(id);
+        if (!blob.exists()) {
+            Utils.writeContents(blob, text);
+            _blobsWritten += 1;
+        }
+        return id;
+    }
+
+    /** Returns the files of commit UID, reading it back from disk if it
+     *  is no longer cached. */
+    private FileMap tree(String uid) {
+        FileMap files = _trees.get(uid);
+        if (files == null) {
+            files = Commit.read(Repository.commitFile(uid)).getMyFiles();
+            _trees.put(uid, files);
+        }
+        return files;
+    }
+
+    /** Returns the name of the Ith generated file. */
+    static String fileName(int i) {
+        return String.format("f%07d.txt", i);
+    }
+
+    /** Returns the name of generated branch B; branch 0 is master. */
+    static String branchName(int b) {
+        return b == 0 ? "master" : String.format("branch-%05d", b);
+    }
+
+    /** Returns the names of all generated branches. */
+    ArrayList<String> branchNames() {
+        ArrayList<String> names = new ArrayList<>();
+        for (int b = 0; b < _branches; b += 1) {
+            names.add(branchName(b));
+        }
+        return names;
+    }
+
+    /** Returns the number of commits written, the initial one included. */
+    int commitsWritten() {
+        return _commitsWritten;
+    }
+
+    /** Returns the number of distinct blobs written. */
+    int blobsWritten() {
+        return _blobsWritten;
+    }
+
+    /** Returns the integer setting KEY in CONFIG, or DEFAULTVALUE. */
+    private static int intSetting(Properties config, String key,
+                                  int defaultValue) {
+        return Integer.parseInt(config.getProperty(key, "" + defaultValue));
+    }
+
+    /** A small LRU cache of commit trees, so that memory stays bounded no
+     *  matter how many branches there are. */
+    private static class TreeCache
+        extends LinkedHashMap<String, FileMap> {
+        /** An empty cache. */
+        TreeCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<String, FileMap> eldest) {
+            return size() > TREE_CACHE_SIZE;
+        }
+    }
+
+    /** Number of commit trees kept in memory while generating. */
+    private static final int TREE_CACHE_SIZE = 16;
+    /** Date of the first generated commit. */
+    private static final long BASE_TIME = 1_600_000_000_000L;
+
+    /** Seed of the pseudo-random choices (default 61). */
+    private final long _seed;
+    /** Number of tracked files (default 1000). */
+    private final int _files;
+    /** Number of commits to write, the initial one included (default
+     *  1000). */
+    private final int _commits;
+    /** Number of branches, master included (default 8). */
+    private final int _branches;
+    /** Number of files changed by each ordinary commit (default 10). */
+    private final int _changesPerCommit;
+    /** Steps between merges; 0 disables merges (default 50). */
+    private final int _mergeInterval;
+    /** Whether each merge is answered by a merge the other way, making
+     *  criss-cross histories (default true). */
+    private final boolean _crissCross;
+    /** Minimum size of each blob in bytes (default 64). */
+    private final int _blobSize;
+    /** Whether master's files are written to the working directory
+     *  (default true). */
+    private final boolean _checkout;
+
+    /** Head commit of each branch while generating. */
+    private String[] _heads;
+    /** Recently used commit trees. */
+    private TreeCache _trees;
+    /** Number of commits written so far. */
+    private int _commitsWritten;
+    /** Number of blobs written so far. */
+    private int _blobsWritten;
+    /** Number of generation steps taken. */
+    private int _step;
+}
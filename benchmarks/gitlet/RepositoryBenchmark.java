@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** JMH benchmarks for each Repository command, run against synthetic
+ *  repositories of every combination of the Shape parameters.
+ *  @author Ramon Moreno
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    /** A repository that benchmarks only read from. */
+    @State(Scope.Benchmark)
+    public static class Shape {
+        /** Number of tracked files. */
+        @Param({"10", "100", "1000"})
+        public int files;
+        /** Number of commits on master. */
+        @Param({"1", "20"})
+        public int depth;
+        /** Number of branches, master included. */
+        @Param({"1", "4"})
+        public int branches;
+
+        /** Builds the repository and silences command output. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            _stdout = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            repo = new SyntheticRepo(files, depth, branches);
+            repo.build();
+        }
+
+        /** Removes the repository and restores command output. */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            repo.delete();
+            System.setOut(_stdout);
+        }
+
+        /** Returns the branch other benchmarks merge or check out. */
+        String otherBranch() {
+            return repo.branches() > 1 ? SyntheticRepo.branchName(1)
+                : "master";
+        }
+
+        /** The repository under test. */
+        SyntheticRepo repo;
+        /** Standard output while the benchmarks run. */
+        private PrintStream _stdout;
+    }
+
+    /** A repository restored to its built state before every invocation,
+     *  for benchmarks that change it. */
+    @State(Scope.Benchmark)
+    public static class Fresh {
+        /** Restores the repository of SHAPE. */
+        @Setup(Level.Invocation)
+        public void restore(Shape shape) {
+            repository = shape.repo.restore();
+        }
+
+        /** A copy of the built repository. */
+        Repository repository;
+    }
+
+    /** A fresh repository with one working file modified. */
+    @State(Scope.Benchmark)
+    public static class Modified {
+        /** Restores the repository of SHAPE and changes one file. */
+        @Setup(Level.Invocation)
+        public void restore(Shape shape) {
+            repository = shape.repo.restore();
+            shape.repo.writeFile(SyntheticRepo.fileName(0), -1);
+        }
+
+        /** A copy of the built repository. */
+        Repository repository;
+    }
+
+    /** A fresh repository with a modification already staged. */
+    @State(Scope.Benchmark)
+    public static class Staged {
+        /** Restores the repository of SHAPE and stages one change. */
+        @Setup(Level.Invocation)
+        public void restore(Shape shape) {
+            repository = shape.repo.restore();
+            shape.repo.writeFile(SyntheticRepo.fileName(0), -1);
+            repository.add(SyntheticRepo.fileName(0));
+        }
+
+        /** A copy of the built repository. */
+        Repository repository;
+    }
+
+    /** Stages one modified file, waiting for its blob to be durable as
+     *  Main does at the end of a command. */
+    @Benchmark
+    public void add(Modified modified) {
+        modified.repository.add(SyntheticRepo.fileName(0));
+        ObjectWriter.flush();
+    }
+
+    /** Commits one staged file, waiting for it to be durable. */
+    @Benchmark
+    public void commit(Staged staged) {
+        staged.repository.commit("benchmark commit");
+        ObjectWriter.flush();
+    }
+
+    /** Prints the status of the whole working directory. */
+    @Benchmark
+    public void status(Shape shape) {
+        shape.repo.repository().status();
+    }
+
+    /** Prints the first-parent history of the head commit. */
+    @Benchmark
+    public void log(Shape shape) {
+        shape.repo.repository().log();
+    }
+
+    /** Prints every commit. */
+    @Benchmark
+    public void globalLog(Shape shape) {
+        shape.repo.repository().globalLog();
+    }
+
+    /** Checks out another branch, or a single file if there is none. */
+    @Benchmark
+    public void checkout(Fresh fresh, Shape shape) {
+        if (shape.repo.branches() > 1) {
+            fresh.repository.checkout(new String[] {shape.otherBranch()});
+        } else {
+            fresh.repository.checkout(
+                new String[] {"--", SyntheticRepo.fileName(0)});
+        }
+    }
+
+    /** Merges another branch into master. */
+    @Benchmark
+    public void merge(Fresh fresh, Shape shape) {
+        if (shape.repo.branches() == 1) {
+            return;
+        }
+        String other = shape.otherBranch();
+        fresh.repository.merge(other,
+            fresh.repository.findSplitPoint(other));
+    }
+
+    /** Finds the split point of master and another branch. */
+    @Benchmark
+    public void findSplitPoint(Shape shape, Blackhole hole) {
+        hole.consume(shape.repo.repository()
+            .findSplitPoint(shape.otherBranch()));
+    }
+
+    /** Expands an abbreviated commit id. */
+    @Benchmark
+    public void fullSizeID(Shape shape, Blackhole hole) {
+        Repository repository = shape.repo.repository();
+        hole.consume(repository.fullSizeID(
+            repository.headCommitUID().substring(0, 8)));
+    }
+}
@@ -0,0 +1,230 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/** Scale test: generates a large repository with RepoGenerator, times
+ *  each command against it the way Main runs it (read the repository,
+ *  run the command, write the repository back), and checks the results
+ *  against latency and memory budgets.  Exits with status 1 if any budget
+ *  is exceeded, so it can gate releases.
+ *
+ *  Settings come from a properties file: the generator settings described
+ *  in RepoGenerator, "runs" (timed runs per command, default 5), "dir"
+ *  (where to generate; default a temporary directory that is deleted
+ *  afterwards), and budgets of the form budget.COMMAND.ms (median
+ *  latency) and budget.COMMAND.mb (peak heap).
+ *  @author Ramon Moreno
+ */
+public class ScaleTest {
+
+    /** Usage: java gitlet.ScaleTest CONFIG.properties. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java gitlet.ScaleTest CONFIG");
+            System.exit(1);
+        }
+        Properties config = new Properties();
+        try (InputStream in = new FileInputStream(args[0])) {
+            config.load(in);
+        }
+        ScaleTest test = new ScaleTest(config);
+        boolean passed = test.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /** A scale test with settings CONFIG. */
+    ScaleTest(Properties config) {
+        _config = config;
+        _runs = Integer.parseInt(config.getProperty("runs", "5"));
+    }
+
+    /** Generates the repository, times every command and prints a report.
+     *  Returns true iff every budget was met. */
+    boolean run() throws IOException {
+        String dirName = _config.getProperty("dir");
+        File dir = dirName == null
+            ? Files.createTempDirectory("gitlet-scale").toFile()
+            : new File(dirName);
+        RepoGenerator generator = new RepoGenerator(_config);
+        long start = System.nanoTime();
+        generator.generate(dir);
+        System.out.printf("Generated %d commits and %d blobs in %.1f s%n",
+            generator.commitsWritten(), generator.blobsWritten(),
+            (System.nanoTime() - start) / 1e9);
+
+        List<String> branches = generator.branchNames();
+        String other = branches.size() > 1 ? branches.get(1) : "master";
+        String probe = RepoGenerator.fileName(0);
+
+        boolean passed = true;
+        passed &= measure("status", r -> r.status());
+        passed &= measure("log", r -> r.log());
+        passed &= measure("log-path", r -> r.log(probe));
+        passed &= measure("global-log", r -> r.globalLog());
+        passed &= measure("find", r -> {
+            try {
+                r.find("import");
+            } catch (GitletException excp) {
+                return;
+            }
+        });
+        passed &= measure("add", new Command() {
+            public void apply(Repository r) {
+                Utils.writeContents(Repository.workingFile(probe),
+                    "scale test " + _run + "\n");
+                r.add(probe);
+            }
+        });
+        passed &= measure("commit", new Command() {
+            public void apply(Repository r) {
+                Utils.writeContents(Repository.workingFile(probe),
+                    "scale commit " + _run + "\n");
+                r.add(probe);
+                r.commit("scale commit " + _run);
+            }
+        });
+        passed &= measure("branch", new Command() {
+            public void apply(Repository r) {
+                r.branch("scale-" + _run);
+            }
+        });
+        passed &= measure("checkout", r -> {
+            r.checkout(new String[] {other});
+            r.checkout(new String[] {"master"});
+        });
+        passed &= measure("findSplitPoint", r -> r.findSplitPoint(other));
+        passed &= measure("rev-list", r -> {
+            r.revList(new String[] {"--count", other + "..master"});
+            r.isAncestor(other, "master");
+        });
+        passed &= measure("merge", new Command() {
+            public void apply(Repository r) {
+                if (_run + 1 < branches.size()) {
+                    String given = branches.get(_run + 1);
+                    r.merge(given, r.findSplitPoint(given));
+                }
+            }
+        });
+
+        if (dirName == null) {
+            delete(dir);
+        }
+        System.out.println(passed ? "All budgets met." : "Budget exceeded.");
+        return passed;
+    }
+
+    /** Runs COMMAND _runs times as Main would, prints its median and
+     *  worst latency and peak heap, and returns true iff they are within
+     *  the budgets for NAME. */
+    private boolean measure(String name, Command command) {
+        long[] times = new long[_runs];
+        long peak = 0;
+        PrintStream stdout = System.out;
+        for (_run = 0; _run < _runs; _run += 1) {
+            System.gc();
+            resetPeaks();
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long start = System.nanoTime();
+            try {
+                Repository repository =
+                    Repository.load(Repository.GITLET_DIR);
+                command.apply(repository);
+                ObjectWriter.flush();
+                Utils.writeObject(Repository.REPO_FILE, repository);
+            } catch (GitletException excp) {
+                System.setOut(stdout);
+                System.out.printf("%-15s failed: %s%n", name,
+                    excp.getMessage());
+                return false;
+            } finally {
+                times[_run] = System.nanoTime() - start;
+                System.setOut(stdout);
+            }
+            peak = Math.max(peak, peakHeap());
+        }
+        Arrays.sort(times);
+        double median = times[times.length / 2] / 1e6;
+        double worst = times[times.length - 1] / 1e6;
+        double peakMB = peak / (1024.0 * 1024.0);
+
+        double msBudget = budget(name, "ms");
+        double mbBudget = budget(name, "mb");
+        boolean ok = median <= msBudget && peakMB <= mbBudget;
+        System.out.printf("%-15s median %9.2f ms  max %9.2f ms  "
+            + "peak %7.1f MB  budget %s ms / %s MB  %s%n",
+            name, median, worst, peakMB, show(msBudget), show(mbBudget),
+            ok ? "OK" : "OVER");
+        return ok;
+    }
+
+    /** Returns the budget for COMMAND in UNIT, or infinity if none. */
+    private double budget(String command, String unit) {
+        String value = _config.getProperty("budget." + command + "." + unit);
+        return value == null ? Double.POSITIVE_INFINITY
+            : Double.parseDouble(value);
+    }
+
+    /** Returns BUDGET formatted for the report. */
+    private static String show(double budget) {
+        return Double.isInfinite(budget) ? "-" : String.format("%.0f", budget);
+    }
+
+    /** Resets the peak usage of every heap memory pool. */
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /** Returns the sum of the peak usage of the heap memory pools since
+     *  the last resetPeaks(). */
+    private static long peakHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool
+                 : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    /** Deletes DIR and everything in it. */
+    private static void delete(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    /** A command run against a repository. */
+    private interface Command {
+        /** Runs this command against REPOSITORY. */
+        void apply(Repository repository);
+    }
+
+    /** Settings of this test. */
+    private final Properties _config;
+    /** Timed runs per command. */
+    private final int _runs;
+    /** Index of the run in progress. */
+    private int _run;
+}
@@ -0,0 +1,210 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/** A throwaway repository of a given shape (files x history depth x
+ *  branch count) built in a temporary directory for the benchmarks.
+ *  @author Ramon Moreno
+ */
+class SyntheticRepo {
+
+    /** A repository description with FILES tracked files, DEPTH commits of
+     *  history on master and BRANCHES branches (master included). */
+    SyntheticRepo(int files, int depth, int branches) {
+        _files = Math.max(1, files);
+        _depth = Math.max(1, depth);
+        _branches = Math.max(1, branches);
+    }
+
+    /** Creates the repository in a new temporary directory and points
+     *  Repository at it.  Every step goes through the Repository API, the
+     *  same way Main drives it. */
+    void build() {
+        try {
+            _dir = Files.createTempDirectory("gitlet-bench").toFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Repository.setWorkingDirectory(_dir);
+        _repository = new Repository();
+
+        for (int i = 0; i < _files; i += 1) {
+            writeFile(fileName(i), 0);
+            _repository.add(fileName(i));
+        }
+        _repository.commit("commit 0");
+
+        int touched = Math.max(1, _files / 10);
+        for (int d = 1; d < _depth; d += 1) {
+            for (int j = 0; j < touched; j += 1) {
+                String name = fileName((d * 7 + j) % _files);
+                writeFile(name, d);
+                _repository.add(name);
+            }
+            _repository.commit("commit " + d);
+        }
+
+        for (int b = 1; b < _branches; b += 1) {
+            String branch = branchName(b);
+            _repository.branch(branch);
+            _repository.checkout(new String[] {branch});
+            String name = "branch" + b + ".txt";
+            Utils.writeContents(Repository.workingFile(name), branch + "\n");
+            _repository.add(name);
+            _repository.commit("work on " + branch);
+            _repository.checkout(new String[] {"master"});
+        }
+        if (_branches > 1) {
+            writeFile(fileName(0), _depth);
+            _repository.add(fileName(0));
+            _repository.commit("diverge master");
+        }
+        ObjectWriter.flush();
+        Utils.writeObject(Repository.REPO_FILE, _repository);
+        _snapshot = Utils.serialize(_repository);
+        _objects = new HashSet<>();
+        _state = new HashMap<>();
+        for (Path path : gitletFiles()) {
+            String name = path.toString();
+            if (isObject(path)) {
+                _objects.add(name);
+            } else {
+                _state.put(name, Utils.readContents(
+                    Repository.GITLET_DIR.toPath().resolve(path).toFile()));
+            }
+        }
+    }
+
+    /** Returns a fresh copy of the repository as it was right after
+     *  build().  Every file in .gitlet is put back as it was: objects
+     *  written since are deleted, and the branches, reflogs, staging
+     *  area, commit graph, bitmaps and the rest are rewritten, so each
+     *  benchmark invocation sees the declared shape.  The working
+     *  directory is restored to match the head commit. */
+    Repository restore() {
+        Repository.setWorkingDirectory(_dir);
+        Repository fresh = Utils.deserialize(_snapshot, Repository.class);
+        for (Path path : gitletFiles()) {
+            String name = path.toString();
+            if (isObject(path) ? !_objects.contains(name)
+                : !_state.containsKey(name)) {
+                Repository.GITLET_DIR.toPath().resolve(path).toFile()
+                    .delete();
+            }
+        }
+        for (Map.Entry<String, byte[]> file : _state.entrySet()) {
+            File target = Repository.GITLET_DIR.toPath()
+                .resolve(file.getKey()).toFile();
+            target.getParentFile().mkdirs();
+            Utils.writeContents(target, file.getValue());
+        }
+        FileMap tracked =
+            fresh.uidToACommit(fresh.headCommitUID()).getMyFiles();
+        List<String> present = WorkingTree.list(_dir);
+        for (String name : present) {
+            if (!tracked.containsKey(name)) {
+                Repository.deleteWorkingFile(name);
+            }
+        }
+        for (String name : tracked.keySet()) {
+            Utils.writeContents(Repository.workingFile(name),
+                Utils.readContents(Repository.blobFile(tracked.get(name))));
+        }
+        _repository = fresh;
+        return fresh;
+    }
+
+    /** Returns the paths of every file in .gitlet, relative to it. */
+    private static List<Path> gitletFiles() {
+        Path root = Repository.GITLET_DIR.toPath();
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                .map(root::relativize).collect(Collectors.toList());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns true iff PATH, relative to .gitlet, is a commit or blob,
+     *  which never changes once written. */
+    private static boolean isObject(Path path) {
+        String top = path.getName(0).toString();
+        return path.getNameCount() > 1
+            && (top.equals(Repository.COMMITS_DIR.getName())
+                || top.equals(Repository.BLOBS_DIR.getName()));
+    }
+
+    /** Rewrites working file NAME with contents specific to VERSION. */
+    void writeFile(String name, int version) {
+        Utils.writeContents(Repository.workingFile(name),
+            name + " version " + version + "\n");
+    }
+
+    /** Deletes the temporary directory and everything in it. */
+    void delete() {
+        if (_dir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(_dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .map(Path::toFile).forEach(File::delete);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _dir = null;
+    }
+
+    /** Returns the name of the Ith tracked file. */
+    static String fileName(int i) {
+        return "f" + i + ".txt";
+    }
+
+    /** Returns the name of branch number K (K > 0). */
+    static String branchName(int k) {
+        return "branch-" + k;
+    }
+
+    /** Returns the repository currently checked out. */
+    Repository repository() {
+        return _repository;
+    }
+
+    /** Returns the number of branches, master included. */
+    int branches() {
+        return _branches;
+    }
+
+    /** Returns the number of tracked files on master. */
+    int files() {
+        return _files;
+    }
+
+    /** Number of tracked files. */
+    private final int _files;
+    /** Number of commits on master. */
+    private final int _depth;
+    /** Number of branches. */
+    private final int _branches;
+    /** Temporary working directory. */
+    private File _dir;
+    /** The repository being benchmarked. */
+    private Repository _repository;
+    /** The serialized repository right after build(). */
+    private byte[] _snapshot;
+    /** The commits and blobs right after build(), relative to .gitlet. */
+    private Set<String> _objects;
+    /** The contents of every other file in .gitlet right after build(),
+     *  by path relative to it. */
+    private Map<String, byte[]> _state;
+}
@@ -0,0 +1,111 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH micro-benchmarks for the hashing and serialization helpers in
+ *  Utils.
+ *  @author Ramon Moreno
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsBenchmark {
+
+    /** Input for the hashing benchmarks. */
+    @State(Scope.Benchmark)
+    public static class Content {
+        /** Size of the hashed contents in bytes. */
+        @Param({"64", "4096", "1048576"})
+        public int size;
+
+        /** Fills the contents with pseudo-random bytes. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+            text = new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+
+        /** The contents as bytes. */
+        byte[] bytes;
+        /** The contents as a String. */
+        String text;
+    }
+
+    /** A commit, and a file to serialize it to. */
+    @State(Scope.Benchmark)
+    public static class Serialized {
+        /** Number of files tracked by the commit. */
+        @Param({"10", "1000", "100000"})
+        public int files;
+
+        /** Builds the commit and writes it once so it can be read back. */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            FileMap tracked = new FileMap(files);
+            for (int i = 0; i < files; i += 1) {
+                tracked.put(SyntheticRepo.fileName(i),
+                            ObjectId.fromHex(Utils.sha1("" + i)));
+            }
+            commit = new Commit(tracked, new String[] {Utils.sha1("parent")},
+                "benchmark commit", false);
+            file = File.createTempFile("gitlet-bench", ".commit");
+            Utils.writeObject(file, commit);
+        }
+
+        /** Removes the commit file. */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            file.delete();
+        }
+
+        /** The commit. */
+        Commit commit;
+        /** Where the commit is written. */
+        File file;
+    }
+
+    /** Hashes a byte array. */
+    @Benchmark
+    public String sha1Bytes(Content content) {
+        return Utils.sha1(content.bytes);
+    }
+
+    /** Hashes a String, as add and status do with file contents. */
+    @Benchmark
+    public String sha1String(Content content) {
+        return Utils.sha1(content.text);
+    }
+
+    /** Writes a serialized commit. */
+    @Benchmark
+    public void writeObject(Serialized serialized) {
+        Utils.writeObject(serialized.file, serialized.commit);
+    }
+
+    /** Reads a serialized commit back. */
+    @Benchmark
+    public Commit readObject(Serialized serialized) {
+        return Utils.readObject(serialized.file, Commit.class);
+    }
+}
@@ -0,0 +1,252 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Writes the files of a commit as a tar or zip archive, straight from
+ *  the object store.  Blobs are streamed into the archive one at a time
+ *  and never held in memory: into a tar archive they are copied channel
+ *  to channel, which the system may do without copying through this
+ *  process at all, and into a zip archive they are deflated through a
+ *  large buffer.  Every entry is a regular file dated at the commit.
+ *  Tar archives are POSIX ustar, with a pax header for any path that
+ *  does not fit in the ustar fields and any file of 8 GiB or more.
+ *  @author Ramon Moreno
+ */
+class Archive {
+
+    /** The tar format. */
+    static final String TAR = "tar";
+    /** The zip format. */
+    static final String ZIP = "zip";
+
+    /** An archive of COMMIT, whose blobs are in the repository whose
+     *  .gitlet directory is DIR. */
+    Archive(File dir, Commit commit) {
+        _dir = dir;
+        _files = commit.getMyFiles();
+        long time;
+        try {
+            time = new SimpleDateFormat(DATE_FORMAT)
+                .parse(commit.getTimeOfCommit()).getTime();
+        } catch (ParseException excp) {
+            time = 0;
+        }
+        _time = Math.max(time, 0);
+    }
+
+    /** Writes the archive in FORMAT, TAR or ZIP, to OUT. */
+    void write(String format, WritableByteChannel out) throws IOException {
+        if (format.equals(ZIP)) {
+            writeZip(out);
+        } else {
+            writeTar(out);
+        }
+    }
+
+    /** Writes the archive as tar to OUT. */
+    private void writeTar(WritableByteChannel out) throws IOException {
+        for (String path : _files.sortedKeys()) {
+            File blob = Repository.blobFile(_dir, _files.get(path));
+            try (FileChannel in = FileChannel.open(blob.toPath(),
+                                                   StandardOpenOption.READ)) {
+                long size = in.size();
+                byte[] name = path.getBytes(StandardCharsets.UTF_8);
+                int split = ustarSplit(name);
+                if (split < -1 || size > MAX_USTAR_SIZE) {
+                    writePax(out, path, size);
+                    split = -1;
+                    name = ustarFallback(name);
+                }
+                writeFully(out, header(name, split, size, REGULAR));
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+                pad(out, size);
+            }
+        }
+        writeFully(out, ByteBuffer.allocate(2 * BLOCK));
+    }
+
+    /** Writes the archive as zip to OUT. */
+    private void writeZip(WritableByteChannel out) throws IOException {
+        OutputStream stream = new BufferedOutputStream(
+            Channels.newOutputStream(out), BUFFER_SIZE);
+        ZipOutputStream zip = new ZipOutputStream(stream,
+                                                  StandardCharsets.UTF_8);
+        FileTime time = FileTime.fromMillis(_time);
+        for (String path : _files.sortedKeys()) {
+            File blob = Repository.blobFile(_dir, _files.get(path));
+            ZipEntry entry = new ZipEntry(path);
+            entry.setLastModifiedTime(time);
+            zip.putNextEntry(entry);
+            Files.copy(blob.toPath(), zip);
+            zip.closeEntry();
+        }
+        zip.finish();
+        stream.flush();
+    }
+
+    /** Writes a pax extended header to OUT giving PATH and SIZE, for an
+     *  entry that ustar cannot describe. */
+    private void writePax(WritableByteChannel out, String path, long size)
+        throws IOException {
+        byte[] records = (paxRecord("path", path)
+                          + paxRecord("size", Long.toString(size)))
+            .getBytes(StandardCharsets.UTF_8);
+        byte[] name = "././@PaxHeader".getBytes(StandardCharsets.UTF_8);
+        writeFully(out, header(name, -1, records.length, PAX));
+        writeFully(out, ByteBuffer.wrap(records));
+        pad(out, records.length);
+    }
+
+    /** Returns the pax record setting KEY to VALUE, which begins with its
+     *  own length in bytes. */
+    private static String paxRecord(String key, String value) {
+        int body = (" " + key + "=" + value + "\n")
+            .getBytes(StandardCharsets.UTF_8).length;
+        int length = body + Integer.toString(body).length();
+        if (Integer.toString(length).length()
+            != Integer.toString(body).length()) {
+            length += 1;
+        }
+        return length + " " + key + "=" + value + "\n";
+    }
+
+    /** Returns the ustar header of an entry of type TYPE named NAME, of
+     *  SIZE bytes.  If SPLIT is not -1, NAME is stored as a prefix, its
+     *  bytes before SPLIT, and a name, its bytes after. */
+    private ByteBuffer header(byte[] name, int split, long size, byte type) {
+        byte[] header = new byte[BLOCK];
+        if (split == -1) {
+            System.arraycopy(name, 0, header, 0, name.length);
+        } else {
+            System.arraycopy(name, split + 1, header, 0,
+                             name.length - split - 1);
+            System.arraycopy(name, 0, header, PREFIX_OFFSET, split);
+        }
+        octal(header, MODE_OFFSET, 8, MODE);
+        octal(header, UID_OFFSET, 8, 0);
+        octal(header, GID_OFFSET, 8, 0);
+        octal(header, SIZE_OFFSET, 12, Math.min(size, MAX_USTAR_SIZE));
+        octal(header, MTIME_OFFSET, 12, _time / 1000);
+        header[TYPE_OFFSET] = type;
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, MAGIC_OFFSET, magic.length);
+        for (int i = 0; i < 8; i += 1) {
+            header[CHECKSUM_OFFSET + i] = ' ';
+        }
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        octal(header, CHECKSUM_OFFSET, 7, checksum);
+        return ByteBuffer.wrap(header);
+    }
+
+    /** Returns the index of the slash at which NAME splits into a ustar
+     *  prefix and name, -1 if it fits in the name field alone, or -2 if
+     *  it does not fit at all. */
+    private static int ustarSplit(byte[] name) {
+        if (name.length <= NAME_LENGTH) {
+            return -1;
+        }
+        for (int i = Math.min(name.length - 1, PREFIX_LENGTH); i > 0; i -= 1) {
+            if (name[i] == '/' && name.length - i - 1 <= NAME_LENGTH) {
+                return i;
+            }
+        }
+        return -2;
+    }
+
+    /** Returns the name stored in the ustar header of an entry whose real
+     *  name, NAME, is given by a pax header: its last NAME_LENGTH
+     *  bytes. */
+    private static byte[] ustarFallback(byte[] name) {
+        if (name.length <= NAME_LENGTH) {
+            return name;
+        }
+        byte[] result = new byte[NAME_LENGTH];
+        System.arraycopy(name, name.length - NAME_LENGTH, result, 0,
+                         NAME_LENGTH);
+        return result;
+    }
+
+    /** Stores VALUE in HEADER at OFFSET as an octal numeral of WIDTH - 1
+     *  digits and a terminating NUL. */
+    private static void octal(byte[] header, int offset, int width,
+                              long value) {
+        String digits = Long.toOctalString(value);
+        int pad = width - 1 - digits.length();
+        for (int i = 0; i < width - 1; i += 1) {
+            header[offset + i] = (byte) (i < pad ? '0'
+                                         : digits.charAt(i - pad));
+        }
+        header[offset + width - 1] = 0;
+    }
+
+    /** Writes the zeros that fill out the last block of an entry of SIZE
+     *  bytes to OUT. */
+    private static void pad(WritableByteChannel out, long size)
+        throws IOException {
+        int rest = (int) (size % BLOCK);
+        if (rest != 0) {
+            writeFully(out, ByteBuffer.allocate(BLOCK - rest));
+        }
+    }
+
+    /** Writes all of BUFFER to OUT. */
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer)
+        throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    /** The form of commit dates, which are in local time whatever zone
+     *  follows them. */
+    private static final String DATE_FORMAT = "EEE MMM d HH:mm:ss yyyy";
+    /** Size of a tar block. */
+    private static final int BLOCK = 512;
+    /** Size of the buffer between the zip writer and its channel. */
+    private static final int BUFFER_SIZE = 1 << 20;
+    /** Length of the ustar name field. */
+    private static final int NAME_LENGTH = 100;
+    /** Length of the ustar prefix field. */
+    private static final int PREFIX_LENGTH = 155;
+    /** Largest size a ustar header can hold. */
+    private static final long MAX_USTAR_SIZE = 077777777777L;
+    /** Mode of every entry. */
+    private static final long MODE = 0644;
+    /** Type of a regular file entry. */
+    private static final byte REGULAR = '0';
+    /** Type of a pax extended header entry. */
+    private static final byte PAX = 'x';
+    /** Offsets of the ustar header fields. */
+    private static final int MODE_OFFSET = 100, UID_OFFSET = 108,
+        GID_OFFSET = 116, SIZE_OFFSET = 124, MTIME_OFFSET = 136,
+        CHECKSUM_OFFSET = 148, TYPE_OFFSET = 156, MAGIC_OFFSET = 257,
+        PREFIX_OFFSET = 345;
+
+    /** The .gitlet directory holding the blobs. */
+    private final File _dir;
+    /** The files archived. */
+    private final FileMap _files;
+    /** The date of every entry, in milliseconds since the epoch. */
+    private final long _time;
+}
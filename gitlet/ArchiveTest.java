@@ -0,0 +1,82 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Archive.
+ *  @author Ramon Moreno
+ */
+public class ArchiveTest {
+
+    /** A path too long for the name field of a tar header. */
+    private static final String LONG = "dir/" + "x".repeat(150) + ".txt";
+
+    /** Returns a commit of two files whose blobs are stored in DIR. */
+    private static Commit commit(File dir) {
+        Utils.join(dir, "Blobs").mkdir();
+        FileMap files = new FileMap();
+        for (String text : new String[] {"short", "long"}) {
+            ObjectId id = Hashing.objectId(text.getBytes());
+            Utils.writeContents(Repository.blobFile(dir, id),
+                                text.getBytes());
+            files.put(text.equals("short") ? "a.txt" : LONG, id);
+        }
+        return new Commit(files, new String[] {Utils.sha1("p")}, "files",
+                          "Thu Nov 9 20:00:05 2017 -0800");
+    }
+
+    /** Returns archive of COMMIT in DIR in FORMAT. */
+    private static byte[] write(File dir, Commit commit, String format)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new Archive(dir, commit).write(format, Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void writesUstarWithPaxForLongNames() throws IOException {
+        File dir = Files.createTempDirectory("archive").toFile();
+        try {
+            byte[] tar = write(dir, commit(dir), Archive.TAR);
+            assertEquals(0, tar.length % 512);
+            String text = new String(tar, StandardCharsets.ISO_8859_1);
+            assertTrue(text.startsWith("a.txt\0"));
+            assertEquals("ustar\u000000", text.substring(257, 265));
+            assertEquals("short", text.substring(512, 517));
+            assertEquals('x', text.charAt(1024 + 156));
+            assertTrue(text.contains(" path=" + LONG + "\n"));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void writesZip() throws IOException {
+        File dir = Files.createTempDirectory("archive").toFile();
+        try {
+            byte[] zip = write(dir, commit(dir), Archive.ZIP);
+            try (ZipInputStream in =
+                     new ZipInputStream(new ByteArrayInputStream(zip))) {
+                ZipEntry entry = in.getNextEntry();
+                assertEquals("a.txt", entry.getName());
+                assertEquals("short",
+                             new String(in.readAllBytes(),
+                                        StandardCharsets.UTF_8));
+                assertEquals(LONG, in.getNextEntry().getName());
+                assertNull(in.getNextEntry());
+            }
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/** A binary search through history for the commit that introduced a
+ *  change, kept in the file bisect of a working tree's state directory
+ *  between commands.  The commit being tested is checked out detached:
+ *  the bisect records it as the working tree's head, and the branch
+ *  that was checked out at the start is never moved.  The candidates
+ *  are the commits reachable from the bad commit and from no good one,
+ *  over every parent of every merge.
+ *  Each step tests the candidate that splits them most evenly: the one
+ *  for which the smaller of the number of candidates reachable from it
+ *  and the number not reachable is largest.  Those counts are built in
+ *  one pass over the candidates in commit-graph order, parents first,
+ *  each taking the union of its parents' sets; a set is dropped as soon
+ *  as every child has used it, and a commit that is its parent's only
+ *  child takes the set over without copying it, so a linear stretch of
+ *  history needs a single set.
+ *  @author Ramon Moreno
+ */
+class Bisect {
+
+    /** A bisect in the working tree whose state directory is DIR, started
+     *  with BRANCH checked out, that has the commit HEAD checked out. */
+    private Bisect(File dir, String branch, String head) {
+        _dir = dir;
+        _branch = branch;
+        _head = head;
+    }
+
+    /** Returns a new bisect in the working tree whose state directory is
+     *  DIR, started with BRANCH checked out at the commit START. */
+    static Bisect start(File dir, String branch, String start) {
+        return new Bisect(dir, branch, start);
+    }
+
+    /** Returns the bisect in progress in the working tree whose state
+     *  directory is DIR, or null if there is none. */
+    static Bisect load(File dir) {
+        File file = file(dir);
+        if (!file.exists()) {
+            return null;
+        }
+        String[] lines = Utils.readContentsAsString(file).split("\n");
+        Bisect result = new Bisect(dir, lines[0], lines[1]);
+        for (int i = 2; i < lines.length; i += 1) {
+            int space = lines[i].indexOf(' ');
+            if (space > 0) {
+                result.mark(lines[i].substring(0, space),
+                            lines[i].substring(space + 1));
+            }
+        }
+        return result;
+    }
+
+    /** Writes this bisect to its file. */
+    void save() {
+        StringBuilder contents = new StringBuilder();
+        contents.append(_branch).append('\n').append(_head).append('\n');
+        if (_bad != null) {
+            contents.append(BAD).append(' ').append(_bad).append('\n');
+        }
+        for (String uid : _good) {
+            contents.append(GOOD).append(' ').append(uid).append('\n');
+        }
+        for (String uid : _skipped) {
+            contents.append(SKIP).append(' ').append(uid).append('\n');
+        }
+        Utils.replaceContents(file(_dir), contents.toString());
+    }
+
+    /** Ends this bisect, deleting its file. */
+    void delete() {
+        file(_dir).delete();
+    }
+
+    /** Marks the commit UID as TERM: BAD, GOOD or SKIP.  A new bad commit
+     *  replaces the old one. */
+    void mark(String term, String uid) {
+        switch (term) {
+        case BAD:
+            _bad = uid;
+            break;
+        case GOOD:
+            _good.add(uid);
+            break;
+        case SKIP:
+            _skipped.add(uid);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown bisect term "
+                                               + term);
+        }
+    }
+
+    /** Returns true iff both a bad commit and a good one are known. */
+    boolean ready() {
+        return _bad != null && !_good.isEmpty();
+    }
+
+    /** Returns the positions, in INDEX's graph, of the commits that may
+     *  be the first bad one. */
+    Bitmap candidates(ReachabilityIndex index) {
+        Bitmap result = index.reachable(_bad);
+        for (String uid : _good) {
+            result.andNot(index.reachable(uid));
+        }
+        return result;
+    }
+
+    /** Returns the position of the candidate among CANDIDATES, positions
+     *  in GRAPH, that is best to test next, or -1 if every candidate but
+     *  the bad commit is skipped. */
+    int choose(CommitGraph graph, Bitmap candidates) {
+        Bitmap skipped = new Bitmap();
+        for (String uid : _skipped) {
+            skipped.add(graph.position(uid));
+        }
+        int[] order = candidates.toDescendingArray();
+        int total = order.length;
+        HashMap<Integer, Integer> children = new HashMap<>();
+        for (int pos : order) {
+            for (int parent : graph.parents(pos)) {
+                if (candidates.contains(parent)) {
+                    children.merge(parent, 1, Integer::sum);
+                }
+            }
+        }
+
+        HashMap<Integer, Bitmap> live = new HashMap<>();
+        int best = -1;
+        int bestScore = 0;
+        int bestWeight = 0;
+        for (int i = total - 1; i >= 0; i -= 1) {
+            int pos = order[i];
+            Bitmap ancestors = null;
+            for (int parent : graph.parents(pos)) {
+                Bitmap theirs = live.get(parent);
+                if (theirs == null) {
+                    continue;
+                }
+                int left = children.merge(parent, -1, Integer::sum);
+                if (left == 0) {
+                    live.remove(parent);
+                }
+                if (ancestors == null && left == 0) {
+                    ancestors = theirs;
+                } else {
+                    if (ancestors == null) {
+                        ancestors = new Bitmap();
+                    }
+                    ancestors.or(theirs);
+                }
+            }
+            if (ancestors == null) {
+                ancestors = new Bitmap();
+            }
+            ancestors.add(pos);
+            if (children.getOrDefault(pos, 0) > 0) {
+                live.put(pos, ancestors);
+            }
+            int weight = ancestors.cardinality();
+            int score = Math.min(weight, total - weight);
+            if (score > bestScore && !skipped.contains(pos)) {
+                best = pos;
+                bestScore = score;
+                bestWeight = weight;
+                if (2 * score >= total - 1) {
+                    break;
+                }
+            }
+        }
+        _left = Math.max(bestWeight, total - bestWeight) - 1;
+        return best;
+    }
+
+    /** Returns the most candidates that can remain once the commit last
+     *  chosen is tested. */
+    int left() {
+        return _left;
+    }
+
+    /** Runs COMMAND in the working directory DIR, with this process's
+     *  input and output, and returns its exit status. */
+    static int test(File dir, String[] command) {
+        try {
+            return new ProcessBuilder(command).directory(dir).inheritIO()
+                .start().waitFor();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot run %s.", command[0]);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted running %s.", command[0]);
+        }
+    }
+
+    /** Returns the term marking a commit on which a test exited with
+     *  STATUS: GOOD for 0, SKIP for 125, BAD for any other status below
+     *  128, or null for a status that stops the bisect. */
+    static String term(int status) {
+        if (status == 0) {
+            return GOOD;
+        } else if (status == SKIP_STATUS) {
+            return SKIP;
+        } else if (status > 0 && status < ABORT_STATUS) {
+            return BAD;
+        }
+        return null;
+    }
+
+    /** Returns the branch checked out when this bisect started. */
+    String branch() {
+        return _branch;
+    }
+
+    /** Returns the commit this bisect has checked out. */
+    String head() {
+        return _head;
+    }
+
+    /** Records that this bisect has checked out the commit UID. */
+    void checkout(String uid) {
+        _head = uid;
+    }
+
+    /** Returns the bad commit, or null if there is none yet. */
+    String bad() {
+        return _bad;
+    }
+
+    /** Returns the skipped commits. */
+    List<String> skipped() {
+        return _skipped;
+    }
+
+    /** Returns the file holding the bisect of the working tree whose state
+     *  directory is DIR. */
+    static File file(File dir) {
+        return Utils.join(dir, "bisect");
+    }
+
+    /** The terms marking commits. */
+    static final String BAD = "bad", GOOD = "good", SKIP = "skip";
+    /** Exit status of a test that cannot judge the commit. */
+    private static final int SKIP_STATUS = 125;
+    /** Lowest exit status of a test that stops the bisect. */
+    private static final int ABORT_STATUS = 128;
+
+    /** The state directory of the working tree. */
+    private final File _dir;
+    /** The branch checked out when this bisect started. */
+    private final String _branch;
+    /** The commit checked out. */
+    private String _head;
+    /** The bad commit, or null. */
+    private String _bad;
+    /** The good commits. */
+    private final ArrayList<String> _good = new ArrayList<>();
+    /** The skipped commits. */
+    private final ArrayList<String> _skipped = new ArrayList<>();
+    /** The most candidates left once the last chosen commit is tested. */
+    private int _left;
+}
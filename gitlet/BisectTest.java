@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Bisect.
+ *  @author Ramon Moreno
+ */
+public class BisectTest {
+
+    /** Returns the smaller of the number of CANDIDATES reachable from the
+     *  commit at POS in INDEX's graph and the number not reachable. */
+    private static int split(ReachabilityIndex index, Bitmap candidates,
+                             int pos) {
+        Bitmap reachable = index.reachable(index.graph().uid(pos));
+        reachable.and(candidates);
+        int weight = reachable.cardinality();
+        return Math.min(weight, candidates.cardinality() - weight);
+    }
+
+    @Test
+    public void choosesAnEvenSplitAcrossMerges() throws IOException {
+        File dir = Files.createTempDirectory("bisect").toFile();
+        try {
+            String root = TestUtils.commit(dir, new FileMap(), "root");
+            String a = root;
+            String b = root;
+            for (int i = 0; i < 6; i += 1) {
+                a = TestUtils.commit(dir, new FileMap(), "a" + i, a);
+                b = TestUtils.commit(dir, new FileMap(), "b" + i, b);
+            }
+            String head = TestUtils.commit(dir, new FileMap(), "merge", a, b);
+            ArrayList<String> line = new ArrayList<>();
+            for (int i = 0; i < 3; i += 1) {
+                head = TestUtils.commit(dir, new FileMap(), "c" + i, head);
+                line.add(head);
+            }
+
+            ReachabilityIndex index =
+                ReachabilityIndex.load(CommitGraph.load(dir));
+            Bisect bisect = Bisect.start(dir, "master", head);
+            bisect.mark(Bisect.BAD, head);
+            bisect.mark(Bisect.GOOD, root);
+            Bitmap candidates = bisect.candidates(index);
+            assertEquals(16, candidates.cardinality());
+
+            int best = 0;
+            for (int pos : candidates.toDescendingArray()) {
+                best = Math.max(best, split(index, candidates, pos));
+            }
+            int chosen = bisect.choose(index.graph(), candidates);
+            assertTrue(candidates.contains(chosen));
+            assertEquals(best, split(index, candidates, chosen));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void skippedCommitsAreNeverChosen() throws IOException {
+        File dir = Files.createTempDirectory("bisect").toFile();
+        try {
+            String good = TestUtils.commit(dir, new FileMap(), "root");
+            String middle =
+                TestUtils.commit(dir, new FileMap(), "middle", good);
+            String bad = TestUtils.commit(dir, new FileMap(), "bad", middle);
+            ReachabilityIndex index =
+                ReachabilityIndex.load(CommitGraph.load(dir));
+
+            Bisect bisect = Bisect.start(dir, "master", bad);
+            bisect.mark(Bisect.BAD, bad);
+            bisect.mark(Bisect.GOOD, good);
+            Bitmap candidates = bisect.candidates(index);
+            assertEquals(index.graph().position(middle),
+                         bisect.choose(index.graph(), candidates));
+
+            bisect.mark(Bisect.SKIP, middle);
+            bisect.save();
+            Bisect loaded = Bisect.load(dir);
+            assertEquals(bad, loaded.bad());
+            assertEquals(-1, loaded.choose(index.graph(), candidates));
+            loaded.delete();
+            assertNull(Bisect.load(dir));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A compressed set of non-negative ints, laid out like a Roaring bitmap:
+ *  values are grouped by their upper 16 bits, and each group is held
+ *  either as a sorted array of its lower 16 bits (when sparse) or as a
+ *  65536-bit bitmap (when dense).  Used for sets of commit-graph
+ *  positions, so that set operations on commit histories cost about one
+ *  word operation per 64 commits.
+ *  @author Ramon Moreno
+ */
+class Bitmap {
+
+    /** An empty Bitmap. */
+    Bitmap() {
+        _keys = new char[4];
+        _containers = new Container[4];
+        _count = 0;
+    }
+
+    /** A copy of OTHER. */
+    Bitmap(Bitmap other) {
+        _keys = other._keys.clone();
+        _containers = new Container[other._containers.length];
+        _count = other._count;
+        for (int i = 0; i < _count; i += 1) {
+            _containers[i] = other._containers[i].copy();
+        }
+    }
+
+    /** Adds X to this set. */
+    void add(int x) {
+        char key = (char) (x >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new Container());
+        }
+        _containers[i] = _containers[i].add((char) x);
+    }
+
+    /** Returns true iff X is in this set. */
+    boolean contains(int x) {
+        int i = find((char) (x >>> 16));
+        return i >= 0 && _containers[i].contains((char) x);
+    }
+
+    /** Returns the number of values in this set. */
+    int cardinality() {
+        int result = 0;
+        for (int i = 0; i < _count; i += 1) {
+            result += _containers[i].size();
+        }
+        return result;
+    }
+
+    /** Returns true iff this set is empty. */
+    boolean isEmpty() {
+        return cardinality() == 0;
+    }
+
+    /** Adds every value of OTHER to this set. */
+    void or(Bitmap other) {
+        for (int j = 0; j < other._count; j += 1) {
+            char key = other._keys[j];
+            int i = find(key);
+            if (i < 0) {
+                insert(-i - 1, key, other._containers[j].copy());
+            } else {
+                _containers[i] = _containers[i].or(other._containers[j]);
+            }
+        }
+    }
+
+    /** Removes every value of OTHER from this set. */
+    void andNot(Bitmap other) {
+        for (int j = 0; j < other._count; j += 1) {
+            int i = find(other._keys[j]);
+            if (i >= 0) {
+                _containers[i] = _containers[i].andNot(other._containers[j]);
+            }
+        }
+        compact();
+    }
+
+    /** Removes every value that is not in OTHER from this set. */
+    void and(Bitmap other) {
+        for (int i = 0; i < _count; i += 1) {
+            int j = other.find(_keys[i]);
+            if (j < 0) {
+                _containers[i] = new Container();
+            } else {
+                _containers[i] = _containers[i].and(other._containers[j]);
+            }
+        }
+        compact();
+    }
+
+    /** Returns the values of this set in decreasing order. */
+    int[] toDescendingArray() {
+        int[] result = new int[cardinality()];
+        int n = 0;
+        for (int i = _count - 1; i >= 0; i -= 1) {
+            int high = _keys[i] << 16;
+            char[] lows = _containers[i].values();
+            for (int k = lows.length - 1; k >= 0; k -= 1) {
+                result[n] = high | lows[k];
+                n += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Writes this set to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(_count);
+        for (int i = 0; i < _count; i += 1) {
+            out.writeChar(_keys[i]);
+            _containers[i].write(out);
+        }
+    }
+
+    /** Returns a set read from IN, as written by write. */
+    static Bitmap read(DataInput in) throws IOException {
+        Bitmap result = new Bitmap();
+        int count = in.readInt();
+        for (int i = 0; i < count; i += 1) {
+            char key = in.readChar();
+            result.insert(i, key, Container.read(in));
+        }
+        return result;
+    }
+
+    /** Returns the index of KEY in _keys, or -(insertion point) - 1. */
+    private int find(char key) {
+        return Arrays.binarySearch(_keys, 0, _count, key);
+    }
+
+    /** Inserts KEY with CONTAINER at index I. */
+    private void insert(int i, char key, Container container) {
+        if (_count == _keys.length) {
+            _keys = Arrays.copyOf(_keys, 2 * _count);
+            _containers = Arrays.copyOf(_containers, 2 * _count);
+        }
+        System.arraycopy(_keys, i, _keys, i + 1, _count - i);
+        System.arraycopy(_containers, i, _containers, i + 1, _count - i);
+        _keys[i] = key;
+        _containers[i] = container;
+        _count += 1;
+    }
+
+    /** Drops empty containers. */
+    private void compact() {
+        int n = 0;
+        for (int i = 0; i < _count; i += 1) {
+            if (_containers[i].size() > 0) {
+                _keys[n] = _keys[i];
+                _containers[n] = _containers[i];
+                n += 1;
+            }
+        }
+        Arrays.fill(_containers, n, _count, null);
+        _count = n;
+    }
+
+    /** The lower 16 bits of the values sharing one upper half: a sorted
+     *  array while there are at most ARRAY_MAX of them, a bitmap
+     *  otherwise.  Operations may return a different container, which
+     *  replaces this one. */
+    private static final class Container {
+
+        /** An empty array container. */
+        Container() {
+            _array = new char[4];
+        }
+
+        /** Returns the number of values. */
+        int size() {
+            return _size;
+        }
+
+        /** Returns true iff X is present. */
+        boolean contains(char x) {
+            if (_bits != null) {
+                return (_bits[x >>> 6] & (1L << x)) != 0;
+            }
+            return Arrays.binarySearch(_array, 0, _size, x) >= 0;
+        }
+
+        /** Adds X, returning the resulting container. */
+        Container add(char x) {
+            if (_bits != null) {
+                long mask = 1L << x;
+                if ((_bits[x >>> 6] & mask) == 0) {
+                    _bits[x >>> 6] |= mask;
+                    _size += 1;
+                }
+                return this;
+            }
+            int i = Arrays.binarySearch(_array, 0, _size, x);
+            if (i >= 0) {
+                return this;
+            }
+            if (_size == ARRAY_MAX) {
+                Container dense = toBits();
+                return dense.add(x);
+            }
+            i = -i - 1;
+            if (_size == _array.length) {
+                _array = Arrays.copyOf(_array, Math.min(ARRAY_MAX, 2 * _size));
+            }
+            System.arraycopy(_array, i, _array, i + 1, _size - i);
+            _array[i] = x;
+            _size += 1;
+            return this;
+        }
+
+        /** Returns the union of this and OTHER. */
+        Container or(Container other) {
+            Container result = _bits != null ? this : toBits();
+            if (other._bits != null) {
+                for (int w = 0; w < WORDS; w += 1) {
+                    result._bits[w] |= other._bits[w];
+                }
+            } else {
+                for (int k = 0; k < other._size; k += 1) {
+                    char x = other._array[k];
+                    result._bits[x >>> 6] |= 1L << x;
+                }
+            }
+            return result.recount();
+        }
+
+        /** Returns this minus OTHER. */
+        Container andNot(Container other) {
+            Container result = _bits != null ? this : toBits();
+            if (other._bits != null) {
+                for (int w = 0; w < WORDS; w += 1) {
+                    result._bits[w] &= ~other._bits[w];
+                }
+            } else {
+                for (int k = 0; k < other._size; k += 1) {
+                    char x = other._array[k];
+                    result._bits[x >>> 6] &= ~(1L << x);
+                }
+            }
+            return result.recount();
+        }
+
+        /** Returns the intersection of this and OTHER. */
+        Container and(Container other) {
+            Container result = _bits != null ? this : toBits();
+            Container mask = other._bits != null ? other : other.toBits();
+            for (int w = 0; w < WORDS; w += 1) {
+                result._bits[w] &= mask._bits[w];
+            }
+            return result.recount();
+        }
+
+        /** Returns the values in increasing order. */
+        char[] values() {
+            if (_bits == null) {
+                return Arrays.copyOf(_array, _size);
+            }
+            char[] result = new char[_size];
+            int n = 0;
+            for (int w = 0; w < WORDS; w += 1) {
+                long word = _bits[w];
+                while (word != 0) {
+                    result[n] =
+                        (char) (w * 64 + Long.numberOfTrailingZeros(word));
+                    n += 1;
+                    word &= word - 1;
+                }
+            }
+            return result;
+        }
+
+        /** Returns a copy of this container. */
+        Container copy() {
+            Container result = new Container();
+            result._size = _size;
+            if (_bits != null) {
+                result._array = null;
+                result._bits = _bits.clone();
+            } else {
+                result._array = Arrays.copyOf(_array, Math.max(4, _size));
+            }
+            return result;
+        }
+
+        /** Writes this container to OUT. */
+        void write(DataOutput out) throws IOException {
+            out.writeBoolean(_bits != null);
+            if (_bits != null) {
+                for (long word : _bits) {
+                    out.writeLong(word);
+                }
+            } else {
+                out.writeChar(_size);
+                for (int k = 0; k < _size; k += 1) {
+                    out.writeChar(_array[k]);
+                }
+            }
+        }
+
+        /** Returns a container read from IN. */
+        static Container read(DataInput in) throws IOException {
+            Container result = new Container();
+            if (in.readBoolean()) {
+                result._array = null;
+                result._bits = new long[WORDS];
+                for (int w = 0; w < WORDS; w += 1) {
+                    result._bits[w] = in.readLong();
+                }
+                return result.recount();
+            }
+            int size = in.readChar();
+            result._array = new char[Math.max(4, size)];
+            for (int k = 0; k < size; k += 1) {
+                result._array[k] = in.readChar();
+            }
+            result._size = size;
+            return result;
+        }
+
+        /** Returns a bitmap copy of this array container. */
+        private Container toBits() {
+            Container result = new Container();
+            result._array = null;
+            result._bits = new long[WORDS];
+            for (int k = 0; k < _size; k += 1) {
+                char x = _array[k];
+                result._bits[x >>> 6] |= 1L << x;
+            }
+            result._size = _size;
+            return result;
+        }
+
+        /** Recomputes _size of a bitmap container, converting it back to
+         *  an array if it has become sparse.  Returns the result. */
+        private Container recount() {
+            int size = 0;
+            for (long word : _bits) {
+                size += Long.bitCount(word);
+            }
+            _size = size;
+            if (size > ARRAY_MAX) {
+                return this;
+            }
+            Container result = new Container();
+            result._array = values();
+            result._size = size;
+            if (result._array.length < 4) {
+                result._array = Arrays.copyOf(result._array, 4);
+            }
+            return result;
+        }
+
+        /** Largest number of values held as an array. */
+        private static final int ARRAY_MAX = 4096;
+        /** Number of words in a bitmap container. */
+        private static final int WORDS = 1024;
+
+        /** Sorted values, when held as an array. */
+        private char[] _array;
+        /** Bit set of values, when held as a bitmap. */
+        private long[] _bits;
+        /** Number of values. */
+        private int _size;
+    }
+
+    /** Upper halves of the values present, sorted. */
+    private char[] _keys;
+    /** Container for each key. */
+    private Container[] _containers;
+    /** Number of keys. */
+    private int _count;
+}
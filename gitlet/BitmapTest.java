@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Bitmap.
+ *  @author Ramon Moreno
+ */
+public class BitmapTest {
+
+    /** Returns a Bitmap and a TreeSet of N random values below BOUND. */
+    private static Object[] randomSet(Random random, int n, int bound) {
+        Bitmap bitmap = new Bitmap();
+        TreeSet<Integer> set = new TreeSet<>();
+        for (int i = 0; i < n; i += 1) {
+            int x = random.nextInt(bound);
+            bitmap.add(x);
+            set.add(x);
+        }
+        return new Object[] {bitmap, set};
+    }
+
+    /** Asserts that BITMAP holds exactly the values of EXPECTED. */
+    private static void assertSame(TreeSet<Integer> expected, Bitmap bitmap) {
+        assertEquals(expected.size(), bitmap.cardinality());
+        int[] values = bitmap.toDescendingArray();
+        int i = 0;
+        for (int x : expected.descendingSet()) {
+            assertEquals(x, values[i]);
+            i += 1;
+        }
+    }
+
+    @Test
+    public void behavesLikeASet() {
+        Random random = new Random(61);
+        for (int bound : new int[] {1000, 70000, 300000}) {
+            Object[] sample = randomSet(random, 20000, bound);
+            Bitmap bitmap = (Bitmap) sample[0];
+            @SuppressWarnings("unchecked")
+            TreeSet<Integer> set = (TreeSet<Integer>) sample[1];
+            assertSame(set, bitmap);
+            for (int x = 0; x < bound; x += 97) {
+                assertEquals(set.contains(x), bitmap.contains(x));
+            }
+        }
+    }
+
+    @Test
+    public void setOperations() {
+        Random random = new Random(62);
+        for (int n : new int[] {100, 6000, 50000}) {
+            Object[] a = randomSet(random, n, 200000);
+            Object[] b = randomSet(random, n, 200000);
+            @SuppressWarnings("unchecked")
+            TreeSet<Integer> setA = (TreeSet<Integer>) a[1];
+            @SuppressWarnings("unchecked")
+            TreeSet<Integer> setB = (TreeSet<Integer>) b[1];
+
+            Bitmap union = new Bitmap((Bitmap) a[0]);
+            union.or((Bitmap) b[0]);
+            TreeSet<Integer> expected = new TreeSet<>(setA);
+            expected.addAll(setB);
+            assertSame(expected, union);
+
+            Bitmap difference = new Bitmap((Bitmap) a[0]);
+            difference.andNot((Bitmap) b[0]);
+            expected = new TreeSet<>(setA);
+            expected.removeAll(setB);
+            assertSame(expected, difference);
+
+            Bitmap intersection = new Bitmap((Bitmap) a[0]);
+            intersection.and((Bitmap) b[0]);
+            expected = new TreeSet<>(setA);
+            expected.retainAll(setB);
+            assertSame(expected, intersection);
+
+            assertSame(setA, (Bitmap) a[0]);
+        }
+    }
+
+    @Test
+    public void roundTrips() throws IOException {
+        Random random = new Random(63);
+        Object[] sample = randomSet(random, 30000, 100000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            ((Bitmap) sample[0]).write(out);
+        }
+        Bitmap copy = Bitmap.read(new DataInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())));
+        @SuppressWarnings("unchecked")
+        TreeSet<Integer> set = (TreeSet<Integer>) sample[1];
+        assertSame(set, copy);
+    }
+}
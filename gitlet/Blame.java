@@ -0,0 +1,514 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/** The commit that introduced each line of a file.  Only the commits
+ *  that gave the file new contents are examined: from any commit the
+ *  history is followed back along first parents to the commit that
+ *  introduced its blob, skipping, without decoding them, the commits
+ *  whose changed-path filters rule the file out, and comparing blob ids
+ *  rather than contents otherwise.  Each such commit inherits the lines
+ *  it shares with each parent's version, in order of parents, and is
+ *  given the rest; a commit that took a parent's blob unchanged takes
+ *  that parent's attribution whole.  The lines shared with a parent are
+ *  found by Myers' linear-space difference algorithm, after lines that
+ *  appear in only one version are set aside, since they cannot match.
+ *
+ *  Attributions are computed parents first, in commit-graph order, and
+ *  each is dropped once every commit that inherits from it is done.  The
+ *  attribution of the requested version, and of every CACHE_INTERVAL-th
+ *  version computed on the way, is kept in .gitlet/blame under the
+ *  file's path and blob id, so that a later blame stops as soon as it
+ *  reaches a version already done and only examines newer history.
+ *  @author Ramon Moreno
+ */
+class Blame {
+
+    /** The attribution of the lines of PATH in the repository whose
+     *  .gitlet directory is DIR. */
+    Blame(File dir, String path) {
+        _dir = dir;
+        _path = path;
+        _graph = CommitGraph.load(dir);
+    }
+
+    /** Returns the blob of this file in the commit UID, or null if the
+     *  commit does not have the file. */
+    ObjectId blob(String uid) {
+        return blob(_graph.position(uid));
+    }
+
+    /** Returns, for each line of this file in the commit UID, the id of
+     *  the commit that introduced the line, or null if the commit does
+     *  not have the file. */
+    String[] annotate(String uid) {
+        int start = _graph.position(uid);
+        if (blob(start) == null) {
+            return null;
+        }
+        int top = origin(start);
+        TreeMap<Integer, int[]> pending = new TreeMap<>();
+        HashMap<Integer, int[]> done = new HashMap<>();
+        HashMap<Integer, Integer> uses = new HashMap<>();
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(top);
+        while (!work.isEmpty()) {
+            int pos = work.pop();
+            if (pending.containsKey(pos) || done.containsKey(pos)) {
+                continue;
+            }
+            int[] cached = load(pos);
+            if (cached != null) {
+                done.put(pos, cached);
+                continue;
+            }
+            int[] parents = _graph.parents(pos);
+            int[] sources = new int[parents.length];
+            for (int i = 0; i < parents.length; i += 1) {
+                if (blob(parents[i]) == null) {
+                    sources[i] = -1;
+                } else {
+                    sources[i] = origin(parents[i]);
+                    uses.merge(sources[i], 1, Integer::sum);
+                    work.push(sources[i]);
+                }
+            }
+            pending.put(pos, sources);
+        }
+
+        int computed = 0;
+        for (Map.Entry<Integer, int[]> entry : pending.entrySet()) {
+            int pos = entry.getKey();
+            int[] result = attribute(pos, entry.getValue(), done);
+            for (int source : entry.getValue()) {
+                if (source >= 0 && uses.merge(source, -1, Integer::sum) == 0
+                    && source != top) {
+                    done.remove(source);
+                }
+            }
+            done.put(pos, result);
+            computed += 1;
+            if (pos == top || computed % CACHE_INTERVAL == 0) {
+                save(pos, result);
+            }
+        }
+
+        int[] lines = done.get(top);
+        String[] result = new String[lines.length];
+        for (int i = 0; i < lines.length; i += 1) {
+            result[i] = _graph.uid(lines[i]);
+        }
+        return result;
+    }
+
+    /** Returns the attribution of the lines of this file in the commit at
+     *  POS, whose parents' versions were introduced by the commits at
+     *  SOURCES (-1 for a parent without the file), whose attributions are
+     *  in DONE. */
+    private int[] attribute(int pos, int[] sources, Map<Integer, int[]> done) {
+        ObjectId blob = blob(pos);
+        int[] parents = _graph.parents(pos);
+        for (int i = 0; i < parents.length; i += 1) {
+            if (sources[i] >= 0 && blob.equals(blob(parents[i]))) {
+                return done.get(sources[i]);
+            }
+        }
+        String[] lines = lines(blob);
+        int[] result = new int[lines.length];
+        Arrays.fill(result, -1);
+        for (int i = 0; i < parents.length; i += 1) {
+            if (sources[i] < 0) {
+                continue;
+            }
+            int[] theirs = done.get(sources[i]);
+            int[] match = match(lines(blob(parents[i])), lines);
+            for (int j = 0; j < lines.length; j += 1) {
+                if (result[j] < 0 && match[j] >= 0) {
+                    result[j] = theirs[match[j]];
+                }
+            }
+        }
+        for (int j = 0; j < lines.length; j += 1) {
+            if (result[j] < 0) {
+                result[j] = pos;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the position of the commit that introduced the version of
+     *  this file in the commit at POS, following first parents. */
+    private int origin(int pos) {
+        Integer known = _origins.get(pos);
+        if (known != null) {
+            return known;
+        }
+        ObjectId blob = blob(pos);
+        ArrayList<Integer> walked = new ArrayList<>();
+        int result = pos;
+        while (true) {
+            known = _origins.get(result);
+            if (known != null) {
+                result = known;
+                break;
+            }
+            walked.add(result);
+            int[] parents = _graph.parents(result);
+            if (parents.length == 0) {
+                break;
+            }
+            if (!_graph.mayHaveChanged(result, _path)) {
+                _blobs.put(parents[0], blob);
+            } else if (!Objects.equals(blob(parents[0]), blob)) {
+                break;
+            }
+            result = parents[0];
+        }
+        for (int walkedPos : walked) {
+            _origins.put(walkedPos, result);
+        }
+        return result;
+    }
+
+    /** Returns the blob of this file in the commit at POS, or null. */
+    private ObjectId blob(int pos) {
+        if (_blobs.containsKey(pos)) {
+            return _blobs.get(pos);
+        }
+        String uid = _graph.uid(pos);
+        long start = Trace.start();
+        Commit commit = Commit.read(Repository.commitFile(_dir, uid));
+        Trace.record(Trace.Stat.COMMIT_DECODE, start, 0, uid);
+        ObjectId result = commit.getMyFiles().get(_path);
+        _blobs.put(pos, result);
+        return result;
+    }
+
+    /** Returns the lines of the blob ID, without their line breaks. */
+    private String[] lines(ObjectId id) {
+        String[] result = _lines.get(id);
+        if (result == null) {
+            result = split(Utils.readContentsAsString(
+                Repository.blobFile(_dir, id)));
+            _lines.put(id, result);
+        }
+        return result;
+    }
+
+    /** Returns the lines of TEXT, without their line breaks. */
+    static String[] split(String text) {
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.split("\n", -1);
+    }
+
+    /** Returns the cached attribution of the version of this file that
+     *  the commit at POS introduced, or null if there is none. */
+    private int[] load(int pos) {
+        File file = cacheFile(blob(pos));
+        if (!file.exists()) {
+            return null;
+        }
+        String[] lines = Utils.readContentsAsString(file).split("\n");
+        if (lines.length < 2 || !lines[0].equals(_graph.uid(pos))) {
+            return null;
+        }
+        int commits = Integer.parseInt(lines[1]);
+        int[] positions = new int[commits];
+        for (int i = 0; i < commits; i += 1) {
+            positions[i] = _graph.position(lines[2 + i]);
+        }
+        int[] result = new int[lines.length - 2 - commits];
+        for (int j = 0; j < result.length; j += 1) {
+            result[j] = positions[Integer.parseInt(lines[2 + commits + j])];
+        }
+        return result;
+    }
+
+    /** Caches ATTRIBUTION as that of the version of this file that the
+     *  commit at POS introduced: the commit's id, the number of commits
+     *  named and their ids, then the index of each line's commit. */
+    private void save(int pos, int[] attribution) {
+        LinkedHashMap<Integer, Integer> commits = new LinkedHashMap<>();
+        StringBuilder lines = new StringBuilder();
+        for (int line : attribution) {
+            Integer index = commits.get(line);
+            if (index == null) {
+                index = commits.size();
+                commits.put(line, index);
+            }
+            lines.append(index).append('\n');
+        }
+        StringBuilder contents = new StringBuilder();
+        contents.append(_graph.uid(pos)).append('\n')
+            .append(commits.size()).append('\n');
+        for (int commit : commits.keySet()) {
+            contents.append(_graph.uid(commit)).append('\n');
+        }
+        File file = cacheFile(blob(pos));
+        file.getParentFile().mkdirs();
+        Utils.replaceContents(file, contents.append(lines).toString());
+    }
+
+    /** Returns the cache file of this file's version BLOB. */
+    private File cacheFile(ObjectId blob) {
+        return Utils.join(_dir, CACHE_DIR,
+                          blob.toHex() + "-" + Utils.sha1(_path));
+    }
+
+    /** Deletes the cached attributions of the repository whose .gitlet
+     *  directory is DIR whose blobs no longer exist, and returns how many
+     *  there were. */
+    static int prune(File dir) {
+        File[] files = Utils.join(dir, CACHE_DIR).listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            int dash = name.indexOf('-');
+            if ((dash != Utils.UID_LENGTH
+                 || !Repository.blobFile(dir, ObjectId.fromHex(
+                         name.substring(0, dash))).exists())
+                && file.delete()) {
+                deleted += 1;
+            }
+        }
+        return deleted;
+    }
+
+    /** Returns, for each line of B, the index of the line of A it is
+     *  matched with in a longest common subsequence of A and B, or -1. */
+    static int[] match(String[] a, String[] b) {
+        int[] result = new int[b.length];
+        Arrays.fill(result, -1);
+        int lo = 0;
+        while (lo < a.length && lo < b.length && a[lo].equals(b[lo])) {
+            result[lo] = lo;
+            lo += 1;
+        }
+        int aHi = a.length;
+        int bHi = b.length;
+        while (aHi > lo && bHi > lo && a[aHi - 1].equals(b[bHi - 1])) {
+            aHi -= 1;
+            bHi -= 1;
+            result[bHi] = aHi;
+        }
+
+        HashMap<String, Integer> ids = new HashMap<>(2 * (aHi - lo));
+        int[] aIds = new int[aHi - lo];
+        for (int i = lo; i < aHi; i += 1) {
+            Integer id = ids.get(a[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(a[i], id);
+            }
+            aIds[i - lo] = id;
+        }
+        boolean[] inB = new boolean[ids.size()];
+        int[] bIds = new int[bHi - lo];
+        int bKept = 0;
+        for (int j = lo; j < bHi; j += 1) {
+            bIds[j - lo] = ids.getOrDefault(b[j], -1);
+            if (bIds[j - lo] >= 0) {
+                inB[bIds[j - lo]] = true;
+                bKept += 1;
+            }
+        }
+        int aKept = 0;
+        for (int id : aIds) {
+            if (inB[id]) {
+                aKept += 1;
+            }
+        }
+
+        int[] aLines = new int[aKept];
+        int[] aSeq = new int[aKept];
+        for (int i = 0, k = 0; i < aIds.length; i += 1) {
+            if (inB[aIds[i]]) {
+                aLines[k] = lo + i;
+                aSeq[k] = aIds[i];
+                k += 1;
+            }
+        }
+        int[] bLines = new int[bKept];
+        int[] bSeq = new int[bKept];
+        for (int j = 0, k = 0; j < bIds.length; j += 1) {
+            if (bIds[j] >= 0) {
+                bLines[k] = lo + j;
+                bSeq[k] = bIds[j];
+                k += 1;
+            }
+        }
+
+        int[] kept = new int[bKept];
+        Arrays.fill(kept, -1);
+        match(aSeq, 0, aKept, bSeq, 0, bKept, kept);
+        for (int k = 0; k < bKept; k += 1) {
+            if (kept[k] >= 0) {
+                result[bLines[k]] = aLines[kept[k]];
+            }
+        }
+        return result;
+    }
+
+    /** Records in RESULT, for each element of B from BLO to BHI, the index
+     *  of the element of A from ALO to AHI it is matched with in a
+     *  longest common subsequence of the two. */
+    private static void match(int[] a, int aLo, int aHi,
+                              int[] b, int bLo, int bHi, int[] result) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            result[bLo] = aLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+            result[bHi] = aHi;
+        }
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        if (n == 0 || m == 0) {
+            return;
+        } else if (n == 1) {
+            for (int j = bLo; j < bHi; j += 1) {
+                if (b[j] == a[aLo]) {
+                    result[j] = aLo;
+                    return;
+                }
+            }
+            return;
+        } else if (m == 1) {
+            for (int i = aLo; i < aHi; i += 1) {
+                if (a[i] == b[bLo]) {
+                    result[bLo] = i;
+                    return;
+                }
+            }
+            return;
+        }
+
+        int maxD = (n + m + 1) / 2;
+        int offset = maxD;
+        int[] forward = new int[2 * maxD];
+        int[] reverse = new int[2 * maxD];
+        Arrays.fill(forward, -1);
+        Arrays.fill(reverse, -1);
+        forward[offset + 1] = 0;
+        reverse[offset + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int kStart = 0, kEnd = 0, cStart = 0, cEnd = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            for (int k = -d + kStart; k <= d - kEnd; k += 2) {
+                int x;
+                if (k == -d || k != d
+                    && forward[offset + k - 1] < forward[offset + k + 1]) {
+                    x = forward[offset + k + 1];
+                } else {
+                    x = forward[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && a[aLo + x] == b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                forward[offset + k] = x;
+                if (x > n) {
+                    kEnd += 2;
+                } else if (y > m) {
+                    kStart += 2;
+                } else if (odd) {
+                    int c = offset + delta - k;
+                    if (c >= 0 && c < reverse.length && reverse[c] != -1
+                        && x >= n - reverse[c]) {
+                        split(a, aLo, aHi, b, bLo, bHi, x, y, result);
+                        return;
+                    }
+                }
+            }
+            for (int c = -d + cStart; c <= d - cEnd; c += 2) {
+                int x;
+                if (c == -d || c != d
+                    && reverse[offset + c - 1] < reverse[offset + c + 1]) {
+                    x = reverse[offset + c + 1];
+                } else {
+                    x = reverse[offset + c - 1] + 1;
+                }
+                int y = x - c;
+                while (x < n && y < m
+                       && a[aHi - 1 - x] == b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                reverse[offset + c] = x;
+                if (x > n) {
+                    cEnd += 2;
+                } else if (y > m) {
+                    cStart += 2;
+                } else if (!odd) {
+                    int k = offset + delta - c;
+                    if (k >= 0 && k < forward.length && forward[k] != -1) {
+                        int fx = forward[k];
+                        int fy = offset + fx - k;
+                        if (fx >= n - x) {
+                            split(a, aLo, aHi, b, bLo, bHi, fx, fy, result);
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Matches A from ALO to AHI with B from BLO to BHI, into RESULT, as
+     *  two halves divided after X elements of A and Y of B. */
+    private static void split(int[] a, int aLo, int aHi, int[] b, int bLo,
+                              int bHi, int x, int y, int[] result) {
+        match(a, aLo, aLo + x, b, bLo, bLo + y, result);
+        match(a, aLo + x, aHi, b, bLo + y, bHi, result);
+    }
+
+    /** Name of the directory of cached attributions. */
+    static final String CACHE_DIR = "blame";
+    /** Every how many versions computed in one blame one is cached. */
+    static final int CACHE_INTERVAL = 16;
+    /** Number of versions whose lines are kept in memory. */
+    private static final int LINES_KEPT = 8;
+
+    /** The .gitlet directory of the repository. */
+    private final File _dir;
+    /** The path of the file. */
+    private final String _path;
+    /** The commit graph of the repository. */
+    private final CommitGraph _graph;
+    /** The blob of the file in each commit examined, or null where the
+     *  commit does not have it, by position. */
+    private final HashMap<Integer, ObjectId> _blobs = new HashMap<>();
+    /** The commit that introduced the version of the file in each commit
+     *  examined, by position. */
+    private final HashMap<Integer, Integer> _origins = new HashMap<>();
+    /** The lines of the versions read most recently. */
+    private final LinkedHashMap<ObjectId, String[]> _lines =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<ObjectId, String[]> eldest) {
+                return size() > LINES_KEPT;
+            }
+        };
+}
@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Blame.
+ *  @author Ramon Moreno
+ */
+public class BlameTest {
+
+    /** Returns the length of a longest common subsequence of A and B. */
+    private static int lcs(String[] a, String[] b) {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i -= 1) {
+            for (int j = b.length - 1; j >= 0; j -= 1) {
+                lengths[i][j] = a[i].equals(b[j]) ? lengths[i + 1][j + 1] + 1
+                    : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+    /** Returns N random lines drawn from an alphabet of SIZE. */
+    private static String[] lines(Random random, int n, int size) {
+        String[] result = new String[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = String.valueOf((char) ('a' + random.nextInt(size)));
+        }
+        return result;
+    }
+
+    /** Writes a commit of DIR whose file f holds CONTENTS, with message
+     *  MESSAGE and parents PARENTS, if any, and returns its id. */
+    private static String commit(File dir, String contents, String message,
+                                 String... parents) {
+        FileMap files = new FileMap();
+        files.put("f", TestUtils.blob(dir, contents));
+        return TestUtils.commit(dir, files, message, parents);
+    }
+
+    @Test
+    public void matchesALongestCommonSubsequence() {
+        Random random = new Random(49);
+        for (int trial = 0; trial < 500; trial += 1) {
+            String[] a = lines(random, random.nextInt(30), 1 + trial % 8);
+            String[] b = lines(random, random.nextInt(30), 1 + trial % 8);
+            int[] match = Blame.match(a, b);
+            int matched = 0;
+            int last = -1;
+            for (int j = 0; j < b.length; j += 1) {
+                if (match[j] >= 0) {
+                    assertEquals(a[match[j]], b[j]);
+                    assertTrue(match[j] > last);
+                    last = match[j];
+                    matched += 1;
+                }
+            }
+            assertEquals(lcs(a, b), matched);
+        }
+    }
+
+    @Test
+    public void followsMergesAndReusesCachedVersions() throws IOException {
+        File dir = Files.createTempDirectory("blame").toFile();
+        try {
+            String one = commit(dir, "a\nb\nc\n", "one");
+            String two = commit(dir, "a\nB\nc\nd\n", "two", one);
+            String side = commit(dir, "z\na\nB\nc\nd\n", "side", two);
+            String main = commit(dir, "a\nB\nc\nd\ne\n", "main", two);
+            String merge = commit(dir, "z\na\nB\nc\nd\ne\n", "merge",
+                                  main, side);
+            assertArrayEquals(new String[] {side, one, two, one, two, main},
+                              new Blame(dir, "f").annotate(merge));
+            assertTrue(Utils.join(dir, Blame.CACHE_DIR).list().length > 0);
+
+            for (String old : new String[] {"a\nb\nc\n", "a\nB\nc\nd\n",
+                                            "z\na\nB\nc\nd\n",
+                                            "a\nB\nc\nd\ne\n"}) {
+                Repository.blobFile(dir, ObjectId.fromHex(Utils.sha1(old)))
+                    .delete();
+            }
+            String next = commit(dir, "z\na\nB\nc\nd\ne\nf\n", "next", merge);
+            Blame blame = new Blame(dir, "f");
+            assertArrayEquals(new String[] {side, one, two, one, two, main,
+                                            next},
+                              blame.annotate(next));
+            assertNull(new Blame(dir, "g").annotate(next));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
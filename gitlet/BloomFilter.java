@@ -0,0 +1,76 @@
+package gitlet;
+
+import java.util.Collection;
+
+/** Bloom filters over sets of file paths, stored as plain byte arrays.
+ *  The commit graph keeps one per commit, over the paths the commit
+ *  changed relative to its first parent, so that path-limited history
+ *  can skip a commit without decoding it whenever its filter says the
+ *  path is definitely absent.  Filters use about ten bits and seven
+ *  probes per path, a false-positive rate of roughly one percent.
+ *  @author Ramon Moreno
+ */
+class BloomFilter {
+
+    /** Returns a filter of PATHS, or null if there are more than
+     *  MAX_PATHS of them, in which case the filter would be too large to
+     *  be worth keeping and every path must be treated as present. */
+    static byte[] of(Collection<String> paths) {
+        if (paths.size() > MAX_PATHS) {
+            return null;
+        }
+        int words = Math.max(1, (paths.size() * BITS_PER_PATH + 63) / 64);
+        byte[] filter = new byte[words * 8];
+        int bits = filter.length * 8;
+        for (String path : paths) {
+            long hash = hash(path);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int k = 0; k < PROBES; k += 1) {
+                int bit = Math.floorMod(h1 + k * h2, bits);
+                filter[bit >>> 3] |= (byte) (1 << (bit & 7));
+            }
+        }
+        return filter;
+    }
+
+    /** Returns false if PATH is definitely not in the set FILTER was built
+     *  from, and true if it may be.  A null FILTER may hold anything. */
+    static boolean mightContain(byte[] filter, String path) {
+        if (filter == null) {
+            return true;
+        }
+        int bits = filter.length * 8;
+        long hash = hash(path);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int k = 0; k < PROBES; k += 1) {
+            int bit = Math.floorMod(h1 + k * h2, bits);
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns a 64-bit FNV-1a hash of the characters of PATH, with a
+     *  final mix so that both halves are well distributed. */
+    private static long hash(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i += 1) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Largest number of paths given a filter of their own. */
+    static final int MAX_PATHS = 512;
+    /** Filter bits per path. */
+    private static final int BITS_PER_PATH = 10;
+    /** Number of bits set per path. */
+    private static final int PROBES = 7;
+}
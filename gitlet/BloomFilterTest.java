@@ -0,0 +1,44 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of BloomFilter.
+ *  @author Ramon Moreno
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void neverMissesAPath() {
+        ArrayList<String> paths = new ArrayList<>();
+        for (int i = 0; i < 300; i += 1) {
+            paths.add("dir" + (i % 7) + "/file" + i + ".txt");
+        }
+        byte[] filter = BloomFilter.of(paths);
+        for (String path : paths) {
+            assertTrue(BloomFilter.mightContain(filter, path));
+        }
+        int falsePositives = 0;
+        for (int i = 300; i < 10300; i += 1) {
+            if (BloomFilter.mightContain(filter, "dir0/file" + i + ".txt")) {
+                falsePositives += 1;
+            }
+        }
+        assertTrue(falsePositives < 300);
+    }
+
+    @Test
+    public void emptyAndOversizedSets() {
+        byte[] empty = BloomFilter.of(Collections.emptyList());
+        assertFalse(BloomFilter.mightContain(empty, "a.txt"));
+        ArrayList<String> many = new ArrayList<>();
+        for (int i = 0; i <= BloomFilter.MAX_PATHS; i += 1) {
+            many.add("f" + i);
+        }
+        assertNull(BloomFilter.of(many));
+        assertTrue(BloomFilter.mightContain(null, "anything"));
+    }
+}
@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of cloning repositories.
+ *  @author Ramon Moreno
+ */
+public class CloneTest {
+
+    @Test
+    public void sharedCloneReadsObjectsThroughAlternates()
+        throws IOException {
+        File root = Files.createTempDirectory("clone").toFile();
+        File upstream = Utils.join(root, "upstream");
+        File local = Utils.join(root, "local");
+        upstream.mkdir();
+        local.mkdir();
+        try {
+            Repository.setWorkingDirectory(upstream);
+            Repository origin = new Repository();
+            TestUtils.commit(origin, "a.txt", "one\n", "one");
+            File source = Repository.GITLET_DIR;
+            String head = origin.headCommitUID();
+            ObjectId blob = ObjectId.fromHex(Utils.sha1("one\n"));
+
+            Repository.setWorkingDirectory(local);
+            Repository copy = Repository.clone(upstream.getPath(), true);
+            ObjectWriter.flush();
+            Utils.writeObject(Repository.REPO_FILE, copy);
+            File dir = Repository.GITLET_DIR;
+            assertEquals(0, Repository.BLOBS_DIR.list().length);
+            assertEquals(0, Repository.COMMITS_DIR.list().length);
+            assertEquals(1, Repository.alternates(dir).size());
+            assertEquals(source.getAbsoluteFile(),
+                         Repository.alternates(dir).get(0).getAbsoluteFile());
+
+            assertEquals(Utils.join(source, "Blobs", blob.toHex()),
+                         Repository.blobFile(dir, blob));
+            assertEquals(Utils.join(source, "Commits", head),
+                         Repository.commitFile(dir, head));
+            assertEquals(head, copy.headCommitUID());
+            assertEquals("one\n", Utils.readContentsAsString(
+                Repository.workingFile("a.txt")));
+
+            TestUtils.commit(copy, "b.txt", "two\n", "two");
+            ObjectId added = ObjectId.fromHex(Utils.sha1("two\n"));
+            assertEquals(Utils.join(dir, "Blobs", added.toHex()),
+                         Repository.blobFile(dir, added));
+            assertTrue(Repository.blobFile(dir, added).exists());
+            assertFalse(Utils.join(source, "Blobs", added.toHex()).exists());
+        } finally {
+            Repository.setWorkingDirectory(
+                new File(System.getProperty("user.dir")));
+            TestUtils.delete(root);
+        }
+    }
+}
@@ -1,20 +1,38 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
 
 /** Commit class for commits.
+ *
+ * On disk a commit is a small header (its id, date, message and parents)
+ * followed by its file map, with the length of the header stored in
+ * front of it. Reading a commit reads only the header; the file map is
+ * read from the same file the first time getMyFiles() is called, so
+ * commands that walk history without looking at files never decode it.
  * @author Ramon Moreno*/
 public class Commit implements Serializable {
     /** A Commit constructor which creates a commit with an
-     * initial message MESSAGE, a HashMap of tracked files (name --> hashcode) FILES, an array of
-     * parent commit HashCodes PARENTS, and a boolean INITIAL that is set
+     * initial message MESSAGE, a FileMap of tracked files
+     * (name --> hashcode) FILES, an array of parent commit HashCodes
+     * PARENTS, and a boolean INITIAL that is set
      * to true iff this is the initial commit of a Gitlet repository.
      */
-    public Commit(HashMap<String, String> files,
+    public Commit(FileMap files,
                   String[] parents, String message, boolean initial) {
         _myMessage = message;
         _myFiles = files;
@@ -30,12 +48,234 @@ public class Commit implements Serializable {
         _myUID = hashThisCommit();
     }
 
+    /** A commit of FILES with parents PARENTS and message MESSAGE made at
+     *  DATE rather than now.  Used to build histories in bulk. */
+    Commit(FileMap files, String[] parents,
+           String message, Date date) {
+        _myMessage = message;
+        _myFiles = files;
+        _parents = parents;
+        timeOfCommit = FORMAT.format(date) + " -0800";
+        _myUID = hashThisCommit();
+    }
+
+    /** A commit of FILES with parents PARENTS and message MESSAGE whose
+     *  date is exactly TIME, as written by getTimeOfCommit(), so that a
+     *  commit rebuilt from its parts keeps its id. */
+    Commit(FileMap files, String[] parents, String message, String time) {
+        _myMessage = message;
+        _myFiles = files;
+        _parents = parents;
+        timeOfCommit = time;
+        _myUID = hashThisCommit();
+    }
+
+    /** A commit with id UID, date TIME, message MESSAGE and parents
+     *  PARENTS, whose files are read from FILE at offset OFFSET when first
+     *  needed, or taken from ENCODED at OFFSET if it is not null. */
+    private Commit(String uid, String time, String message, String[] parents,
+                   File file, byte[] encoded, int offset) {
+        _myUID = uid;
+        timeOfCommit = time;
+        _myMessage = message;
+        _parents = parents;
+        _source = file;
+        _encoded = encoded;
+        _filesOffset = offset;
+        _filesPending = true;
+    }
+
+    /** Returns the commit stored in FILE, reading only its header. Its
+     *  files are read when getMyFiles() is first called. */
+    static Commit read(File file) {
+        long start = Trace.start();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("not a commit: " + file);
+            }
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            Trace.record(Trace.Stat.FILE_READ, start, PREFIX + header.length,
+                         file.getPath());
+            return decodeHeader(header, file, null, PREFIX + header.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the commit whose stored form is BYTES, as written by
+     *  toBytes(). Its files are decoded when first needed. */
+    static Commit fromBytes(byte[] bytes) {
+        try {
+            DataInputStream in =
+                new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("not a commit");
+            }
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            return decodeHeader(header, null, bytes, PREFIX + header.length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the commit whose header is HEADER, and whose files are at
+     *  OFFSET in FILE or, if it is null, in ENCODED. */
+    private static Commit decodeHeader(byte[] header, File file,
+                                       byte[] encoded, int offset)
+        throws IOException {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(header));
+        byte[] id = new byte[ObjectId.LENGTH];
+        in.readFully(id);
+        String uid = ObjectId.fromBytes(id, 0).toHex();
+        String time = in.readUTF();
+        byte[] message = new byte[in.readInt()];
+        in.readFully(message);
+        int parentCount = in.readUnsignedByte();
+        String[] parents = null;
+        if (parentCount > 0) {
+            parents = new String[parentCount];
+            for (int i = 0; i < parentCount; i += 1) {
+                in.readFully(id);
+                parents[i] = ObjectId.fromBytes(id, 0).toHex();
+            }
+        }
+        return new Commit(uid, time,
+                          new String(message, StandardCharsets.UTF_8),
+                          parents, file, encoded, offset);
+    }
+
+    /** Returns the stored form of this commit: a header holding its id,
+     *  date, message and parents, preceded by its length, and then its
+     *  files in path order, so that a commit always has the same stored
+     *  form however its FileMap was built. */
+    byte[] toBytes() {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(header)) {
+            out.write(ObjectId.fromHex(_myUID).toBytes());
+            out.writeUTF(timeOfCommit);
+            byte[] message = _myMessage.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(message.length);
+            out.write(message);
+            String[] parents = _parents == null ? new String[0] : _parents;
+            out.writeByte(parents.length);
+            for (String parent : parents) {
+                out.write(ObjectId.fromHex(parent).toBytes());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (DataOutputStream out = new DataOutputStream(result)) {
+            out.writeInt(MAGIC);
+            out.writeInt(header.size());
+            header.writeTo(out);
+            FileMap files = getMyFiles();
+            out.writeInt(files.size());
+            for (String path : files.sortedKeys()) {
+                byte[] name = path.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+                out.write(files.get(path).toBytes());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return result.toByteArray();
+    }
+
+    /** Reads this commit's files from where they are stored, if they
+     *  have not been read yet. */
+    private void loadFiles() {
+        if (!_filesPending) {
+            return;
+        }
+        ByteBuffer in = storedFiles();
+        int count = in.getInt();
+        FileMap files = new FileMap(count);
+        for (int i = 0; i < count; i += 1) {
+            int length = in.getShort() & 0xffff;
+            String name = new String(in.array(), in.position(), length,
+                                     StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            files.put(name, ObjectId.fromBytes(in.array(), in.position()));
+            in.position(in.position() + ObjectId.LENGTH);
+        }
+        _myFiles = count == 0 && _parents == null ? null : files;
+        _filesPending = false;
+        _source = null;
+        _encoded = null;
+    }
+
+    /** Calls ACTION with the path and blob of each of this commit's files
+     *  whose blob WANTED accepts, in the order stored.  If the files have
+     *  not been read yet, they are scanned where they are stored without
+     *  building a FileMap, and only the paths of accepted files are
+     *  decoded, which makes visiting the files of many large commits
+     *  cheap when few of them are wanted. */
+    void forEachFile(Predicate<ObjectId> wanted,
+                     BiConsumer<String, ObjectId> action) {
+        if (!_filesPending) {
+            FileMap files = getMyFiles();
+            for (String path : files.keySet()) {
+                ObjectId id = files.get(path);
+                if (wanted.test(id)) {
+                    action.accept(path, id);
+                }
+            }
+            return;
+        }
+        ByteBuffer in = storedFiles();
+        int count = in.getInt();
+        for (int i = 0; i < count; i += 1) {
+            int length = in.getShort() & 0xffff;
+            int name = in.position();
+            ObjectId id = ObjectId.fromBytes(in.array(), name + length);
+            if (wanted.test(id)) {
+                action.accept(new String(in.array(), name, length,
+                                         StandardCharsets.UTF_8), id);
+            }
+            in.position(name + length + ObjectId.LENGTH);
+        }
+    }
+
+    /** Returns the stored form of this commit's files, positioned at its
+     *  start. */
+    private ByteBuffer storedFiles() {
+        if (_encoded != null) {
+            return ByteBuffer.wrap(_encoded, _filesOffset,
+                                   _encoded.length - _filesOffset);
+        }
+        long start = Trace.start();
+        byte[] bytes;
+        try (RandomAccessFile in = new RandomAccessFile(_source, "r")) {
+            in.seek(_filesOffset);
+            bytes = new byte[(int) (in.length() - _filesOffset)];
+            in.readFully(bytes);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.record(Trace.Stat.FILE_READ, start, bytes.length,
+                     _source.getPath());
+        return ByteBuffer.wrap(bytes);
+    }
+
+    /** Reads the files before this commit is serialized, so that they
+     *  are included. Writes to OUT. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        loadFiles();
+        out.defaultWriteObject();
+    }
+
     /** Turns a commit into a hashcode.
      * @return String */
     public String hashThisCommit() {
         String myFiles;
         String[] myParents;
 
+        loadFiles();
         if (_myFiles == null) {
             myFiles = "";
         } else {
@@ -62,10 +302,11 @@ public class Commit implements Serializable {
         return timeOfCommit;
     }
     /** Gets the commit's files.
-     * @return HashMap*/
-    public HashMap<String, String> getMyFiles() {
+     * @return FileMap*/
+    public FileMap getMyFiles() {
+        loadFiles();
         if (_myFiles == null) {
-            return new HashMap<>();
+            return new FileMap();
         }
         return _myFiles;
     }
@@ -90,13 +331,25 @@ public class Commit implements Serializable {
     /** My message. */
     private String _myMessage;
     /** My files. */
-    private HashMap<String, String> _myFiles;
+    private FileMap _myFiles;
     /** My parents. */
     private String[] _parents;
     /** My time of commit. */
     private String timeOfCommit;
     /** My UID. */
     private String _myUID;
+    /** True iff my files have not been read from _source or _encoded yet. */
+    private transient boolean _filesPending;
+    /** The file my files are read from, or null. */
+    private transient File _source;
+    /** My stored form, from which my files are decoded, or null. */
+    private transient byte[] _encoded;
+    /** Offset of my files in _source or _encoded. */
+    private transient int _filesOffset;
+    /** First int of a stored commit. */
+    private static final int MAGIC = 0x47434d31;
+    /** Bytes before the header: the magic number and header length. */
+    private static final int PREFIX = 8;
     /** Date Formatter. */
     private static final SimpleDateFormat FORMAT =
             new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy");
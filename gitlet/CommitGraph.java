@@ -0,0 +1,426 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** The commit graph of a repository, kept in .gitlet/commit-graph as an
+ *  append-only list of records, one per commit, each giving the commit's
+ *  id, the ids of its parents and a BloomFilter of the paths it changed
+ *  relative to its first parent.  A commit's position is the number of
+ *  its record.  Positions never change, so a set of commits can be
+ *  stored as a Bitmap of positions, and walking the graph needs no
+ *  commit to be decoded.  Commits that are missing from the file, such
+ *  as those of repositories made before it existed, are read from the
+ *  object store the first time they are looked up, and the file is
+ *  replaced by one with their records added.  Records are appended in
+ *  place only under the repository's exclusive lock; looking a commit
+ *  up may happen under a shared lock, alongside other readers.
+ *  @author Ramon Moreno
+ */
+class CommitGraph {
+
+    /** Returns the commit graph of the current repository. */
+    static CommitGraph load() {
+        return load(Repository.GITLET_DIR);
+    }
+
+    /** Returns the commit graph of the repository whose .gitlet directory
+     *  is DIR. */
+    static CommitGraph load(File dir) {
+        CommitGraph graph = new CommitGraph(dir);
+        File file = file(dir);
+        if (file.exists()) {
+            graph.parse(Utils.readContents(file));
+        }
+        return graph;
+    }
+
+    /** An empty graph of the repository whose .gitlet directory is DIR. */
+    private CommitGraph(File dir) {
+        _dir = dir;
+    }
+
+    /** Appends the record of COMMIT, which changed the paths CHANGED
+     *  relative to its first parent, to the commit graph file without
+     *  loading it.  Called whenever a commit is written. */
+    static void append(Commit commit, Collection<String> changed) {
+        append(Repository.GITLET_DIR, commit, changed);
+    }
+
+    /** Like append(COMMIT, CHANGED), but for the repository whose .gitlet
+     *  directory is DIR. */
+    static void append(File dir, Commit commit, Collection<String> changed) {
+        ArrayList<byte[]> records = new ArrayList<>();
+        records.add(record(commit, changed));
+        append(dir, records);
+    }
+
+    /** Collects the records of many commits, as a bulk import writes
+     *  them, and appends them to the commit graph file in large writes
+     *  rather than one at a time.  Records must be added parents first. */
+    static class Appender {
+
+        /** An appender to the commit graph of the repository whose .gitlet
+         *  directory is DIR. */
+        Appender(File dir) {
+            _dir = dir;
+        }
+
+        /** Adds the record of COMMIT, which changed the paths CHANGED
+         *  relative to its first parent. */
+        void add(Commit commit, Collection<String> changed) {
+            byte[] record = record(commit, changed);
+            _records.add(record);
+            _size += record.length;
+            if (_size >= BATCH_BYTES) {
+                flush();
+            }
+        }
+
+        /** Appends the records added so far. */
+        void flush() {
+            if (!_records.isEmpty()) {
+                append(_dir, _records);
+                _records.clear();
+                _size = 0;
+            }
+        }
+
+        /** The .gitlet directory appended to. */
+        private final File _dir;
+        /** The records not yet appended. */
+        private final ArrayList<byte[]> _records = new ArrayList<>();
+        /** Total length of _records. */
+        private int _size;
+    }
+
+    /** Returns the paths whose entries differ between FILES and
+     *  PARENTFILES, in order. */
+    static TreeSet<String> changedPaths(FileMap files, FileMap parentFiles) {
+        TreeSet<String> result = new TreeSet<>();
+        for (String path : files.keySet()) {
+            if (!parentFiles.maps(path, files.get(path))) {
+                result.add(path);
+            }
+        }
+        for (String path : parentFiles.keySet()) {
+            if (!files.containsKey(path)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the .gitlet directory of this graph's repository. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Returns true iff the commit with id UID has a record. */
+    boolean contains(String uid) {
+        return _positions.containsKey(ObjectId.fromHex(uid));
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return _ids.size();
+    }
+
+    /** Returns the position of the commit with id UID, adding it and
+     *  any missing ancestors to the graph if needed. */
+    int position(String uid) {
+        ObjectId id = ObjectId.fromHex(uid);
+        Integer pos = _positions.get(id);
+        if (pos == null) {
+            ingest(uid);
+            pos = _positions.get(id);
+        }
+        return pos;
+    }
+
+    /** Returns the id of the commit at position POS. */
+    String uid(int pos) {
+        return _ids.get(pos).toHex();
+    }
+
+    /** Returns the positions of the parents of the commit at POS. */
+    int[] parents(int pos) {
+        return _parents.get(pos);
+    }
+
+    /** Returns false if the commit at POS definitely did not change PATH
+     *  relative to its first parent, and true if it may have. */
+    boolean mayHaveChanged(int pos, String path) {
+        return BloomFilter.mightContain(_filters.get(pos), path);
+    }
+
+    /** Returns the set of positions of the commits reachable from the
+     *  commit at POS, itself included.  The walk stops at any commit that
+     *  has an entry in KNOWN, the set reachable from it, and takes that
+     *  whole set at once. */
+    Bitmap reachable(int pos, Map<Integer, Bitmap> known) {
+        Bitmap result = new Bitmap();
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+        pending.push(pos);
+        while (!pending.isEmpty()) {
+            int p = pending.pop();
+            if (result.contains(p)) {
+                continue;
+            }
+            Bitmap shortcut = known.get(p);
+            if (shortcut != null) {
+                result.or(shortcut);
+                continue;
+            }
+            result.add(p);
+            for (int parent : _parents.get(p)) {
+                pending.push(parent);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the file holding the commit graph of the repository whose
+     *  .gitlet directory is DIR. */
+    static File file(File dir) {
+        return Utils.join(dir, "commit-graph");
+    }
+
+    /** Reads the records in CONTENTS, then adds any parents they name
+     *  that have no record of their own.  A record cut short, which only
+     *  an append interrupted by a crash or a full disk leaves, ends the
+     *  file: it is truncated to the records before it, so that later
+     *  appends follow a whole record. */
+    private void parse(byte[] contents) {
+        ArrayList<ObjectId[]> parentIds = new ArrayList<>();
+        int complete = Integer.BYTES;
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(contents))) {
+            if (contents.length < complete || in.readInt() != MAGIC) {
+                file(_dir).delete();
+                ReachabilityIndex.file(_dir).delete();
+                return;
+            }
+            byte[] id = new byte[ObjectId.LENGTH];
+            while (in.available() > 0) {
+                int count = in.readUnsignedByte();
+                in.readFully(id);
+                ObjectId commit = ObjectId.fromBytes(id, 0);
+                ObjectId[] parents = new ObjectId[count];
+                for (int i = 0; i < count; i += 1) {
+                    in.readFully(id);
+                    parents[i] = ObjectId.fromBytes(id, 0);
+                }
+                int length = in.readUnsignedShort();
+                byte[] filter = null;
+                if (length != NO_FILTER) {
+                    filter = new byte[length];
+                    in.readFully(filter);
+                }
+                if (!_positions.containsKey(commit)) {
+                    _positions.put(commit, _ids.size());
+                    _ids.add(commit);
+                    _parents.add(null);
+                    _filters.add(filter);
+                    parentIds.add(parents);
+                }
+                complete = contents.length - in.available();
+            }
+        } catch (EOFException excp) {
+            truncate(complete);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (int pos = 0; pos < parentIds.size(); pos += 1) {
+            ObjectId[] parents = parentIds.get(pos);
+            int[] positions = new int[parents.length];
+            for (int i = 0; i < parents.length; i += 1) {
+                positions[i] = position(parents[i].toHex());
+            }
+            _parents.set(pos, positions);
+        }
+    }
+
+    /** Cuts the commit graph file down to its first LENGTH bytes.  Any
+     *  process that finds the same partial record cuts it at the same
+     *  place, so this is safe under a shared lock. */
+    private void truncate(long length) {
+        try (FileChannel channel = FileChannel.open(file(_dir).toPath(),
+                                                    StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                channel.truncate(length);
+                channel.force(false);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Adds the commit UID and those of its ancestors that are missing,
+     *  parents before children, and adds their records to the file. */
+    private void ingest(String uid) {
+        ArrayList<byte[]> added = new ArrayList<>();
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        HashMap<String, Commit> decoded = new HashMap<>();
+        pending.push(uid);
+        while (!pending.isEmpty()) {
+            String next = pending.peek();
+            if (_positions.containsKey(ObjectId.fromHex(next))) {
+                pending.pop();
+                continue;
+            }
+            Commit commit = decoded.get(next);
+            if (commit == null) {
+                File commitFile = Repository.commitFile(_dir, next);
+                if (!commitFile.exists()) {
+                    throw Utils.error("No commit with that id exists.");
+                }
+                commit = Commit.read(commitFile);
+                decoded.put(next, commit);
+            }
+            boolean ready = true;
+            for (String parent : parentsOf(commit)) {
+                if (!_positions.containsKey(ObjectId.fromHex(parent))) {
+                    pending.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                String[] parents = parentsOf(commit);
+                int[] positions = new int[parents.length];
+                for (int i = 0; i < parents.length; i += 1) {
+                    positions[i] = _positions.get(ObjectId.fromHex(parents[i]));
+                }
+                FileMap parentFiles = new FileMap();
+                if (parents.length > 0) {
+                    Commit parent = decoded.get(parents[0]);
+                    if (parent == null) {
+                        parent = Commit.read(
+                            Repository.commitFile(_dir, parents[0]));
+                    }
+                    parentFiles = parent.getMyFiles();
+                }
+                TreeSet<String> changed =
+                    changedPaths(commit.getMyFiles(), parentFiles);
+                ObjectId id = ObjectId.fromHex(next);
+                _positions.put(id, _ids.size());
+                _ids.add(id);
+                _parents.add(positions);
+                _filters.add(BloomFilter.of(changed));
+                added.add(record(commit, changed));
+            }
+        }
+        rewrite(_dir, added);
+        Maintenance.count(Maintenance.Counter.UNINDEXED_COMMITS, added.size());
+    }
+
+    /** Appends RECORDS to the commit graph file in DIR, starting the file
+     *  if there is none, under the exclusive lock held by the caller.
+     *  Objects still being written are made durable first, so that no
+     *  record names a commit a crash could lose. */
+    private static void append(File dir, ArrayList<byte[]> records) {
+        ObjectWriter.flush();
+        File file = file(dir);
+        boolean fresh = !file.exists();
+        try (DataOutputStream out = new DataOutputStream(
+                 new FileOutputStream(file, true))) {
+            if (fresh) {
+                out.writeInt(MAGIC);
+            }
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Replaces the commit graph file in DIR with one holding its records
+     *  followed by RECORDS, atomically.  Readers holding only a shared
+     *  lock may do this at once: each leaves a whole file behind, and
+     *  records that one of them loses to another are added again the next
+     *  time their commits are looked up. */
+    private static void rewrite(File dir, ArrayList<byte[]> records) {
+        File file = file(dir);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            if (file.exists()) {
+                out.write(Utils.readContents(file));
+            } else {
+                out.writeInt(MAGIC);
+            }
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.replaceContents(file, bytes.toByteArray());
+    }
+
+    /** Returns the record of COMMIT, which changed the paths CHANGED. */
+    private static byte[] record(Commit commit, Collection<String> changed) {
+        String[] parents = parentsOf(commit);
+        byte[] filter = BloomFilter.of(changed);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(parents.length);
+            out.write(ObjectId.fromHex(commit.getMyUID()).toBytes());
+            for (String parent : parents) {
+                out.write(ObjectId.fromHex(parent).toBytes());
+            }
+            if (filter == null) {
+                out.writeShort(NO_FILTER);
+            } else {
+                out.writeShort(filter.length);
+                out.write(filter);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the parents of COMMIT, never null. */
+    private static String[] parentsOf(Commit commit) {
+        String[] parents = commit.getAllParents();
+        return parents == null ? NO_PARENTS : parents;
+    }
+
+    /** First int of the commit graph file. */
+    private static final int MAGIC = 0x47434732;
+    /** Filter length marking a commit that changed too many paths to
+     *  have a filter. */
+    private static final int NO_FILTER = 0xffff;
+    /** The parents of the initial commit. */
+    private static final String[] NO_PARENTS = {};
+    /** Number of bytes of records an Appender collects before writing
+     *  them. */
+    private static final int BATCH_BYTES = 1 << 16;
+
+    /** The .gitlet directory of the repository. */
+    private final File _dir;
+    /** Position of each commit. */
+    private final HashMap<ObjectId, Integer> _positions = new HashMap<>();
+    /** Commit ids by position. */
+    private final ArrayList<ObjectId> _ids = new ArrayList<>();
+    /** Parent positions by position. */
+    private final ArrayList<int[]> _parents = new ArrayList<>();
+    /** Changed-path filters by position; null where there is none. */
+    private final ArrayList<byte[]> _filters = new ArrayList<>();
+}
@@ -0,0 +1,43 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitGraph.
+ *  @author Ramon Moreno
+ */
+public class CommitGraphTest {
+
+    @Test
+    public void partialTrailingRecordIsDropped() throws IOException {
+        File dir = Files.createTempDirectory("graph").toFile();
+        try {
+            String root = TestUtils.commit(dir, new FileMap(), "root");
+            String next = TestUtils.commit(dir, new FileMap(), "next", root);
+            File file = CommitGraph.file(dir);
+            long whole = file.length();
+            try (FileOutputStream out = new FileOutputStream(file, true)) {
+                out.write(new byte[] {1, 2, 3, 4, 5});
+            }
+
+            CommitGraph graph = CommitGraph.load(dir);
+            assertEquals(2, graph.size());
+            assertEquals(whole, file.length());
+            int[] parents = graph.parents(graph.position(next));
+            assertEquals(1, parents.length);
+            assertEquals(graph.position(root), parents[0]);
+
+            String last = TestUtils.commit(dir, new FileMap(), "last", next);
+            graph = CommitGraph.load(dir);
+            assertEquals(3, graph.size());
+            assertEquals(2, graph.position(last));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the stored form of Commit.
+ *  @author Ramon Moreno
+ */
+public class CommitTest {
+
+    /** Returns a commit of two files with two parents. */
+    private static Commit sample() {
+        FileMap files = new FileMap();
+        files.put("a.txt", Hashing.objectId("a".getBytes()));
+        files.put("dir/b.txt", Hashing.objectId("b".getBytes()));
+        return new Commit(files, new String[] {Utils.sha1("p1"),
+                                               Utils.sha1("p2")},
+                          "merge \u00e9t\u00e9", false);
+    }
+
+    @Test
+    public void roundTrip() {
+        Commit commit = sample();
+        Commit copy = Commit.fromBytes(commit.toBytes());
+        assertEquals(commit.getMyUID(), copy.getMyUID());
+        assertEquals(commit.getMyMessage(), copy.getMyMessage());
+        assertEquals(commit.getTimeOfCommit(), copy.getTimeOfCommit());
+        assertArrayEquals(commit.getAllParents(), copy.getAllParents());
+        assertEquals(commit.getMyFiles().toString(),
+                     copy.getMyFiles().toString());
+
+        Commit initial = new Commit(null, null, "initial commit", true);
+        Commit initialCopy = Commit.fromBytes(initial.toBytes());
+        assertNull(initialCopy.parent1UID());
+        assertTrue(initialCopy.getMyFiles().isEmpty());
+    }
+
+    @Test
+    public void encodingIsCanonical() {
+        Random random = new Random(42);
+        FileMap files = new FileMap(4096);
+        for (int i = 0; i < 600; i += 1) {
+            String path = "dir" + random.nextInt(20) + "/f" + i + ".txt";
+            files.put(path, Hashing.objectId(path.getBytes()));
+            if (random.nextInt(3) == 0) {
+                files.remove(path);
+            }
+        }
+        for (int i = 0; i < 600; i += 7) {
+            files.remove("dir" + (i % 20) + "/f" + i + ".txt");
+        }
+        Commit commit = new Commit(files, new String[] {Utils.sha1("p")},
+                                   "many", false);
+        byte[] bytes = commit.toBytes();
+        Commit copy = Commit.fromBytes(bytes);
+        assertArrayEquals(bytes, copy.toBytes());
+        FileMap again = new FileMap(copy.getMyFiles().size());
+        for (String path : copy.getMyFiles().keySet()) {
+            again.put(path, copy.getMyFiles().get(path));
+        }
+        assertArrayEquals(bytes, new Commit(again, copy.getAllParents(),
+                                            copy.getMyMessage(),
+                                            copy.getTimeOfCommit())
+                                     .toBytes());
+    }
+
+    @Test
+    public void readsFilesOnlyWhenAsked() throws IOException {
+        Commit commit = sample();
+        File file = File.createTempFile("commit", "");
+        try {
+            Utils.writeContents(file, commit.toBytes());
+            Commit header = Commit.read(file);
+            assertEquals(commit.getMyMessage(), header.getMyMessage());
+            assertEquals(2, header.getMyFiles().size());
+            assertTrue(header.getMyFiles().maps(
+                "dir/b.txt", Hashing.objectId("b".getBytes())));
+
+            Utils.writeObject(file, commit);
+            try {
+                Commit.read(file);
+                fail("read a commit stored by Java serialization");
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().startsWith("not a commit"));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
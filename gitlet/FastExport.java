@@ -0,0 +1,140 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Writes the history of branches as a stream that FastImport reads
+ *  back, giving the same commits with the same ids.  Commits are written
+ *  parents first, in commit-graph order, each as its changes relative to
+ *  its first parent, preceded by the blobs of the paths it changed.
+ *  Objects are named by their ids rather than by marks, so memory does
+ *  not grow with the length of the history.  The stream ends with a
+ *  reset for each branch.
+ *  @author Ramon Moreno
+ */
+class FastExport {
+
+    /** An export from the repository whose reachability index is INDEX
+     *  of the branches BRANCHES, which maps each to its head. */
+    FastExport(ReachabilityIndex index, Map<String, String> branches) {
+        _index = index;
+        _branches = new TreeMap<>(branches);
+    }
+
+    /** Writes the stream to OUT. */
+    void run(OutputStream out) {
+        CommitGraph graph = _index.graph();
+        File dir = graph.dir();
+        Bitmap commits = new Bitmap();
+        for (String head : _branches.values()) {
+            commits.or(_index.reachable(head));
+        }
+        int[] positions = commits.toDescendingArray();
+        try {
+            BufferedOutputStream stream =
+                new BufferedOutputStream(out, BUFFER_SIZE);
+            for (int i = positions.length - 1; i >= 0; i -= 1) {
+                Commit commit = Commit.read(
+                    Repository.commitFile(dir, graph.uid(positions[i])));
+                export(dir, commit, stream);
+            }
+            for (Map.Entry<String, String> branch : _branches.entrySet()) {
+                line(stream, "reset " + branch.getKey());
+                line(stream, "from " + branch.getValue());
+                line(stream, "");
+            }
+            line(stream, "done");
+            stream.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes COMMIT of the repository whose .gitlet directory is DIR,
+     *  and the blobs it introduces, to OUT. */
+    private void export(File dir, Commit commit, OutputStream out)
+        throws IOException {
+        String[] parents = commit.getAllParents();
+        FileMap files = commit.getMyFiles();
+        FileMap parentFiles = parents == null ? new FileMap()
+            : filesOf(dir, parents[0]);
+        _recent.put(commit.getMyUID(), files);
+        TreeSet<String> changed =
+            CommitGraph.changedPaths(files, parentFiles);
+
+        HashSet<ObjectId> written = new HashSet<>();
+        for (String path : changed) {
+            ObjectId id = files.get(path);
+            if (id != null && written.add(id)) {
+                line(out, "blob");
+                data(out, Utils.readContents(Repository.blobFile(dir, id)));
+            }
+        }
+        line(out, "commit");
+        line(out, "date " + commit.getTimeOfCommit());
+        data(out, commit.getMyMessage().getBytes(StandardCharsets.UTF_8));
+        if (parents != null) {
+            line(out, "from " + parents[0]);
+            for (int i = 1; i < parents.length; i += 1) {
+                line(out, "merge " + parents[i]);
+            }
+        }
+        for (String path : changed) {
+            ObjectId id = files.get(path);
+            line(out, id == null ? "D " + path
+                                 : "M " + id.toHex() + " " + path);
+        }
+        line(out, "");
+    }
+
+    /** Returns the files of the commit UID of the repository whose
+     *  .gitlet directory is DIR. */
+    private FileMap filesOf(File dir, String uid) {
+        FileMap files = _recent.get(uid);
+        if (files == null) {
+            files = Commit.read(Repository.commitFile(dir, uid)).getMyFiles();
+        }
+        return files;
+    }
+
+    /** Writes LINE and a newline to OUT. */
+    private static void line(OutputStream out, String line)
+        throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /** Writes CONTENTS to OUT as a data command. */
+    private static void data(OutputStream out, byte[] contents)
+        throws IOException {
+        line(out, "data " + contents.length);
+        out.write(contents);
+        out.write('\n');
+    }
+
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Number of recent commits whose files are kept. */
+    private static final int RECENT = 64;
+
+    /** The reachability index of the repository. */
+    private final ReachabilityIndex _index;
+    /** The branches exported and their heads, by name. */
+    private final TreeMap<String, String> _branches;
+    /** The files of the most recently exported commits. */
+    private final LinkedHashMap<String, FileMap> _recent =
+        new LinkedHashMap<>(RECENT * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileMap> e) {
+                return size() > RECENT;
+            }
+        };
+}
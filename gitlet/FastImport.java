@@ -0,0 +1,455 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Builds history in bulk from a stream, without the working directory
+ *  or the staging area, in the spirit of git fast-import.  The stream is
+ *  a sequence of commands, each a line, some followed by raw data:
+ *  <pre>
+ *    blob
+ *    mark :N                    (optional)
+ *    data LENGTH
+ *    LENGTH bytes of contents
+ *
+ *    commit [BRANCH]
+ *    mark :N                    (optional)
+ *    date DATE | date @SECONDS  (optional; now if missing)
+ *    data LENGTH
+ *    LENGTH bytes of message
+ *    from COMMIT                (optional)
+ *    merge COMMIT               (optional, repeatable)
+ *    M BLOB PATH | D PATH | deleteall
+ *                               (repeatable)
+ *
+ *    reset BRANCH
+ *    from COMMIT                (optional)
+ *
+ *    done                       (optional)
+ *  </pre>
+ *  A BLOB or COMMIT is a mark, a full id, or for COMMIT a branch name.
+ *  A commit starts from the files of its first parent, which is the
+ *  from commit or else the head of BRANCH, and changes them by its
+ *  M and D lines.  A DATE is in the form log prints.  Blank lines, and a
+ *  newline after data, are ignored.
+ *
+ *  Objects go to the ObjectWriter as they are read and commit-graph
+ *  records are appended in batches.  Memory does not grow with the
+ *  length of the history: only the marks, the branch heads and the
+ *  files of a few recent commits are kept.  Branches are changed only
+ *  once the whole stream has been read.
+ *  @author Ramon Moreno
+ */
+class FastImport {
+
+    /** An import into the repository whose .gitlet directory is DIR and
+     *  whose branches have the heads HEADS. */
+    FastImport(File dir, Map<String, String> heads) {
+        _dir = dir;
+        _heads = new HashMap<>(heads);
+        _graph = new CommitGraph.Appender(dir);
+    }
+
+    /** Reads and carries out the commands in IN. */
+    void run(InputStream in) {
+        _in = new BufferedInputStream(in, BUFFER_SIZE);
+        try {
+            String line;
+            while ((line = nextLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                } else if (line.equals("blob")) {
+                    blob();
+                } else if (line.equals("commit")) {
+                    commit(null);
+                } else if (line.startsWith("commit ")) {
+                    commit(line.substring("commit ".length()));
+                } else if (line.startsWith("reset ")) {
+                    reset(line.substring("reset ".length()));
+                } else if (line.equals("done")) {
+                    break;
+                } else {
+                    throw malformed(line);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            _graph.flush();
+        }
+    }
+
+    /** Returns the branches the stream set, with their new heads. */
+    Map<String, String> branches() {
+        return _changed;
+    }
+
+    /** Returns the number of blobs read. */
+    int blobs() {
+        return _blobCount;
+    }
+
+    /** Returns the number of commits read. */
+    int commits() {
+        return _commitCount;
+    }
+
+    /** Reads the rest of a blob command and stores the blob. */
+    private void blob() throws IOException {
+        int mark = mark();
+        byte[] contents = data();
+        ObjectId id = Hashing.objectId(contents);
+        File file = Utils.join(_dir, BLOBS, id.toHex());
+        if (!ObjectWriter.pending(file)
+            && !Repository.blobFile(_dir, id).exists()) {
+            ObjectWriter.write(file, contents);
+        }
+        setMark(mark, id);
+        _blobCount += 1;
+    }
+
+    /** Reads the rest of a commit command for BRANCH, which is null if
+     *  the commit is on no branch, and stores the commit. */
+    private void commit(String branch) throws IOException {
+        int mark = mark();
+        String line = nextLine();
+        String time = null;
+        Date date = null;
+        if (line != null && line.startsWith("date ")) {
+            String value = line.substring("date ".length());
+            if (value.startsWith("@")) {
+                try {
+                    date = new Date(Long.parseLong(value.substring(1)) * 1000);
+                } catch (NumberFormatException excp) {
+                    throw malformed(line);
+                }
+            } else {
+                time = value;
+            }
+        } else {
+            _pushedBack = line;
+        }
+        String message = new String(data(), StandardCharsets.UTF_8);
+
+        ArrayList<String> parents = new ArrayList<>();
+        line = nextLine();
+        if (line != null && line.startsWith("from ")) {
+            parents.add(commitRef(line.substring("from ".length())));
+            line = nextLine();
+        } else if (branch != null && head(branch) != null) {
+            parents.add(head(branch));
+        }
+        while (line != null && line.startsWith("merge ")) {
+            parents.add(commitRef(line.substring("merge ".length())));
+            line = nextLine();
+        }
+
+        FileMap base = parents.isEmpty() ? new FileMap()
+            : filesOf(parents.get(0));
+        FileMap files = new FileMap(base);
+        TreeSet<String> touched = new TreeSet<>();
+        boolean cleared = false;
+        while (line != null && !line.isEmpty()) {
+            if (line.startsWith("M ")) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw malformed(line);
+                }
+                String path = line.substring(space + 1);
+                files.put(path, blobRef(line.substring(2, space)));
+                touched.add(path);
+            } else if (line.startsWith("D ")) {
+                String path = line.substring(2);
+                files.remove(path);
+                touched.add(path);
+            } else if (line.equals("deleteall")) {
+                files.clear();
+                cleared = true;
+            } else {
+                _pushedBack = line;
+                break;
+            }
+            line = nextLine();
+        }
+
+        TreeSet<String> changed;
+        if (cleared) {
+            changed = CommitGraph.changedPaths(files, base);
+        } else {
+            changed = new TreeSet<>();
+            for (String path : touched) {
+                ObjectId id = files.get(path);
+                boolean same = id == null ? !base.containsKey(path)
+                                          : base.maps(path, id);
+                if (!same) {
+                    changed.add(path);
+                }
+            }
+        }
+        String[] parentArray = parents.isEmpty() ? null
+            : parents.toArray(new String[0]);
+        FileMap stored = parents.isEmpty() && files.isEmpty() ? null : files;
+        Commit commit = time != null
+            ? new Commit(stored, parentArray, message, time)
+            : new Commit(stored, parentArray, message,
+                         date != null ? date : new Date());
+        String uid = commit.getMyUID();
+        File file = Utils.join(_dir, COMMITS, uid);
+        if (!ObjectWriter.pending(file)
+            && !Repository.commitFile(_dir, uid).exists()) {
+            ObjectWriter.write(file, commit.toBytes());
+            _graph.add(commit, changed);
+        }
+        _recent.put(uid, files);
+        setMark(mark, ObjectId.fromHex(uid));
+        if (branch != null) {
+            setHead(branch, uid);
+        }
+        _commitCount += 1;
+    }
+
+    /** Reads the rest of a reset command for BRANCH. */
+    private void reset(String branch) throws IOException {
+        String line = nextLine();
+        if (line != null && line.startsWith("from ")) {
+            setHead(branch, commitRef(line.substring("from ".length())));
+        } else {
+            _pushedBack = line;
+            _heads.remove(branch);
+            _changed.remove(branch);
+        }
+    }
+
+    /** Reads an optional mark line and returns its number, or 0 if there
+     *  is none. */
+    private int mark() throws IOException {
+        String line = nextLine();
+        if (line == null || !line.startsWith("mark :")) {
+            _pushedBack = line;
+            return 0;
+        }
+        int mark = markNumber(line.substring("mark ".length()), line);
+        if (mark <= 0) {
+            throw malformed(line);
+        }
+        return mark;
+    }
+
+    /** Reads a data line and the data it announces, and returns it. */
+    private byte[] data() throws IOException {
+        String line = nextLine();
+        if (line == null || !line.startsWith("data ")) {
+            throw malformed(line);
+        }
+        int length;
+        try {
+            length = Integer.parseInt(line.substring("data ".length()));
+        } catch (NumberFormatException excp) {
+            throw malformed(line);
+        }
+        if (length < 0) {
+            throw malformed(line);
+        }
+        byte[] result = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = _in.read(result, read, length - read);
+            if (n < 0) {
+                throw malformed("data ended early");
+            }
+            read += n;
+        }
+        _in.mark(1);
+        if (_in.read() != '\n') {
+            _in.reset();
+        }
+        return result;
+    }
+
+    /** Returns the id of the blob named by REF, which must exist. */
+    private ObjectId blobRef(String ref) {
+        ObjectId id = ref.startsWith(":") ? markedId(ref) : hexId(ref);
+        File file = Utils.join(_dir, BLOBS, id.toHex());
+        if (!ObjectWriter.pending(file)
+            && !Repository.blobFile(_dir, id).exists()) {
+            throw malformed("no blob " + ref);
+        }
+        return id;
+    }
+
+    /** Returns the id of the commit named by REF, which must exist. */
+    private String commitRef(String ref) {
+        String uid;
+        if (ref.startsWith(":")) {
+            uid = markedId(ref).toHex();
+        } else if (head(ref) != null) {
+            uid = head(ref);
+        } else {
+            uid = hexId(ref).toHex();
+        }
+        if (!_recent.containsKey(uid)
+            && !ObjectWriter.pending(Utils.join(_dir, COMMITS, uid))
+            && !Repository.commitFile(_dir, uid).exists()) {
+            throw malformed("no commit " + ref);
+        }
+        return uid;
+    }
+
+    /** Returns the files of the commit UID. */
+    private FileMap filesOf(String uid) {
+        FileMap files = _recent.get(uid);
+        if (files == null) {
+            files = Commit.read(Repository.commitFile(_dir, uid)).getMyFiles();
+            _recent.put(uid, files);
+        }
+        return files;
+    }
+
+    /** Returns the head of BRANCH, or null if it has none. */
+    private String head(String branch) {
+        return _heads.get(branch);
+    }
+
+    /** Points BRANCH at the commit UID. */
+    private void setHead(String branch, String uid) {
+        _heads.put(branch, uid);
+        _changed.put(branch, uid);
+    }
+
+    /** Returns the number of the mark REF, of the form :N, taken from
+     *  LINE. */
+    private int markNumber(String ref, String line) {
+        try {
+            return Integer.parseInt(ref.substring(1));
+        } catch (NumberFormatException excp) {
+            throw malformed(line);
+        }
+    }
+
+    /** Records that mark MARK, unless it is 0, names the object ID. */
+    private void setMark(int mark, ObjectId id) {
+        if (mark == 0) {
+            return;
+        }
+        int offset = (mark - 1) * ObjectId.LENGTH;
+        if (offset + ObjectId.LENGTH > _marks.length) {
+            byte[] grown = new byte[Math.max(_marks.length * 2,
+                                             offset + ObjectId.LENGTH)];
+            System.arraycopy(_marks, 0, grown, 0, _marks.length);
+            _marks = grown;
+        }
+        System.arraycopy(id.toBytes(), 0, _marks, offset, ObjectId.LENGTH);
+        _maxMark = Math.max(_maxMark, mark);
+    }
+
+    /** Returns the id named by the mark REF, which must be set. */
+    private ObjectId markedId(String ref) {
+        int mark = markNumber(ref, ref);
+        if (mark <= 0 || mark > _maxMark) {
+            throw malformed("undefined mark " + ref);
+        }
+        ObjectId id = ObjectId.fromBytes(_marks,
+                                         (mark - 1) * ObjectId.LENGTH);
+        if (id.equals(UNSET)) {
+            throw malformed("undefined mark " + ref);
+        }
+        return id;
+    }
+
+    /** Returns the id whose hexadecimal form is REF. */
+    private ObjectId hexId(String ref) {
+        if (ref.length() != Utils.UID_LENGTH) {
+            throw malformed("bad id " + ref);
+        }
+        try {
+            return ObjectId.fromHex(ref);
+        } catch (IllegalArgumentException excp) {
+            throw malformed("bad id " + ref);
+        }
+    }
+
+    /** Returns the next line of the stream, without its newline, or null
+     *  at its end. */
+    private String nextLine() throws IOException {
+        if (_pushedBack != null) {
+            String line = _pushedBack;
+            _pushedBack = null;
+            return line;
+        }
+        _lineBuffer.reset();
+        int c = _in.read();
+        if (c < 0) {
+            return null;
+        }
+        while (c >= 0 && c != '\n') {
+            _lineBuffer.write(c);
+            c = _in.read();
+        }
+        _lineNumber += 1;
+        return _lineBuffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the error reporting that the stream is malformed at the
+     *  current line, which is LINE or has the problem LINE. */
+    private GitletException malformed(String line) {
+        return Utils.error("Malformed fast-import stream at line %d: %s",
+                           _lineNumber, line == null ? "end of input" : line);
+    }
+
+    /** Name of the blob directory. */
+    private static final String BLOBS = "Blobs";
+    /** Name of the commit directory. */
+    private static final String COMMITS = "Commits";
+    /** Size of the input buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /** Number of recent commits whose files are kept. */
+    private static final int RECENT = 64;
+    /** The id stored for marks that were never set. */
+    private static final ObjectId UNSET =
+        ObjectId.fromBytes(new byte[ObjectId.LENGTH], 0);
+
+    /** The .gitlet directory imported into. */
+    private final File _dir;
+    /** The branch heads, as changed so far by the stream. */
+    private final HashMap<String, String> _heads;
+    /** The branches the stream set, and their heads. */
+    private final HashMap<String, String> _changed = new HashMap<>();
+    /** The commit-graph records not yet appended. */
+    private final CommitGraph.Appender _graph;
+    /** The files of the most recently used commits. */
+    private final LinkedHashMap<String, FileMap> _recent =
+        new LinkedHashMap<>(RECENT * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileMap> e) {
+                return size() > RECENT;
+            }
+        };
+    /** The ids named by marks, ObjectId.LENGTH bytes each, mark N at
+     *  (N - 1) * ObjectId.LENGTH. */
+    private byte[] _marks = new byte[0];
+    /** The highest mark set. */
+    private int _maxMark;
+    /** The stream read. */
+    private BufferedInputStream _in;
+    /** A line read ahead and given back, or null. */
+    private String _pushedBack;
+    /** The bytes of the line being read. */
+    private final ByteArrayOutputStream _lineBuffer =
+        new ByteArrayOutputStream();
+    /** Number of lines read. */
+    private int _lineNumber;
+    /** Number of blobs read. */
+    private int _blobCount;
+    /** Number of commits read. */
+    private int _commitCount;
+}
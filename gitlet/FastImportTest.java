@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of FastImport and FastExport.
+ *  @author Ramon Moreno
+ */
+public class FastImportTest {
+
+    /** Returns a new, empty .gitlet directory. */
+    private static File repository() throws IOException {
+        File dir = Files.createTempDirectory("import").toFile();
+        Utils.join(dir, "Blobs").mkdir();
+        Utils.join(dir, "Commits").mkdir();
+        return dir;
+    }
+
+    /** Imports STREAM into DIR and returns the branches it set. */
+    private static Map<String, String> load(File dir, String stream) {
+        FastImport importer = new FastImport(dir, new HashMap<>());
+        importer.run(new ByteArrayInputStream(
+            stream.getBytes(StandardCharsets.UTF_8)));
+        ObjectWriter.flush();
+        return importer.branches();
+    }
+
+    /** Returns the files of the commit UID in DIR. */
+    private static FileMap files(File dir, String uid) {
+        return Commit.read(Repository.commitFile(dir, uid)).getMyFiles();
+    }
+
+    /** A history with a root, a branch, a deletion and a merge. */
+    private static final String STREAM = String.join("\n",
+        "blob", "mark :1", "data 3", "one",
+        "blob", "mark :2", "data 3", "two",
+        "commit main", "mark :3", "date @1500000000", "data 4", "root",
+        "M :1 a.txt", "M :2 dir/b c.txt", "",
+        "commit side", "mark :4", "date @1500000100", "data 4", "side",
+        "from :3", "D a.txt", "",
+        "commit main", "mark :5", "date @1500000200", "data 5", "merge",
+        "merge :4", "M :2 a.txt", "",
+        "done", "");
+
+    @Test
+    public void importsCommitsAndBranches() throws IOException {
+        File dir = repository();
+        try {
+            Map<String, String> branches = load(dir, STREAM);
+            assertEquals(2, branches.size());
+            Commit merge = Commit.read(
+                Repository.commitFile(dir, branches.get("main")));
+            assertEquals("merge", merge.getMyMessage());
+            assertEquals(2, merge.getAllParents().length);
+            assertEquals(branches.get("side"), merge.getAllParents()[1]);
+            ObjectId two = Hashing.objectId("two".getBytes());
+            assertTrue(merge.getMyFiles().maps("a.txt", two));
+            assertTrue(merge.getMyFiles().maps("dir/b c.txt", two));
+            assertFalse(files(dir, branches.get("side"))
+                        .containsKey("a.txt"));
+            assertTrue(CommitGraph.load(dir).contains(branches.get("main")));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void exportImportsBackToTheSameCommits() throws IOException {
+        File first = repository();
+        File second = repository();
+        try {
+            Map<String, String> branches = load(first, STREAM);
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            new FastExport(ReachabilityIndex.load(CommitGraph.load(first)),
+                           branches).run(stream);
+            assertEquals(branches,
+                         load(second, stream.toString(StandardCharsets.UTF_8)));
+        } finally {
+            TestUtils.delete(first);
+            TestUtils.delete(second);
+        }
+    }
+
+    @Test
+    public void rejectsAnUndefinedMark() throws IOException {
+        File dir = repository();
+        try {
+            load(dir, "commit main\ndata 1\nx\nM :7 a.txt\n");
+            fail("expected an error");
+        } catch (GitletException excp) {
+            assertTrue(excp.getMessage().contains("undefined mark :7"));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** A map from file paths to the ObjectIds of their blobs, specialized for
+ *  the file maps of commits and the staging area.  Entries live in an
+ *  open-addressing table with linear probing: paths (interned through
+ *  PathTable) in one array and ids packed as primitive ints in another,
+ *  so an entry costs one reference and 20 bytes rather than a HashMap
+ *  node, a key String and a 40-character value String.
+ *  @author Ramon Moreno
+ */
+class FileMap implements Serializable {
+
+    /** An empty FileMap. */
+    FileMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /** An empty FileMap with room for about EXPECTED entries. */
+    FileMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < expected) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    /** A copy of OTHER. */
+    FileMap(FileMap other) {
+        _paths = other._paths.clone();
+        _ids = other._ids.clone();
+        _size = other._size;
+    }
+
+    /** Returns the number of entries. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns true iff there are no entries. */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Returns true iff PATH has an entry. */
+    boolean containsKey(String path) {
+        return _paths[slot(path)] != null;
+    }
+
+    /** Returns the id stored for PATH, or null if there is none. */
+    ObjectId get(String path) {
+        int k = slot(path);
+        return _paths[k] == null ? null
+            : ObjectId.fromInts(_ids, k * ObjectId.INTS);
+    }
+
+    /** Returns true iff PATH is mapped to ID.  Unlike ID.equals(get(PATH)),
+     *  this does not create an ObjectId. */
+    boolean maps(String path, ObjectId id) {
+        int k = slot(path);
+        return _paths[k] != null && id != null
+            && id.equalsAt(_ids, k * ObjectId.INTS);
+    }
+
+    /** Maps PATH to ID. */
+    void put(String path, ObjectId id) {
+        int k = slot(path);
+        if (_paths[k] == null) {
+            if ((_size + 1) > _paths.length * MAX_LOAD) {
+                resize(2 * _paths.length);
+                k = slot(path);
+            }
+            _paths[k] = PathTable.intern(path);
+            _size += 1;
+        }
+        id.copyTo(_ids, k * ObjectId.INTS);
+    }
+
+    /** Adds every entry of OTHER, replacing existing ones. */
+    void putAll(FileMap other) {
+        for (int k = 0; k < other._paths.length; k += 1) {
+            if (other._paths[k] != null) {
+                put(other._paths[k],
+                    ObjectId.fromInts(other._ids, k * ObjectId.INTS));
+            }
+        }
+    }
+
+    /** Removes the entry for PATH, if any. */
+    void remove(String path) {
+        int k = slot(path);
+        if (_paths[k] == null) {
+            return;
+        }
+        _paths[k] = null;
+        _size -= 1;
+        int mask = _paths.length - 1;
+        for (int j = (k + 1) & mask; _paths[j] != null; j = (j + 1) & mask) {
+            int home = home(_paths[j]);
+            boolean movable = k <= j ? (home <= k || home > j)
+                : (home <= k && home > j);
+            if (movable) {
+                _paths[k] = _paths[j];
+                System.arraycopy(_ids, j * ObjectId.INTS,
+                                 _ids, k * ObjectId.INTS, ObjectId.INTS);
+                _paths[j] = null;
+                k = j;
+            }
+        }
+    }
+
+    /** Removes every entry. */
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /** Returns the paths that have entries, in no particular order.  The
+     *  list is a snapshot, so this map may be changed while iterating. */
+    List<String> keySet() {
+        ArrayList<String> result = new ArrayList<>(_size);
+        for (String path : _paths) {
+            if (path != null) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the paths that have entries in lexicographic order. */
+    List<String> sortedKeys() {
+        List<String> result = keySet();
+        Collections.sort(result);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FileMap)) {
+            return false;
+        }
+        FileMap other = (FileMap) obj;
+        if (other._size != _size) {
+            return false;
+        }
+        for (int k = 0; k < _paths.length; k += 1) {
+            if (_paths[k] != null
+                && !other.maps(_paths[k],
+                               ObjectId.fromInts(_ids, k * ObjectId.INTS))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 0;
+        for (int k = 0; k < _paths.length; k += 1) {
+            if (_paths[k] != null) {
+                result += _paths[k].hashCode() ^ _ids[k * ObjectId.INTS];
+            }
+        }
+        return result;
+    }
+
+    /** Returns the entries as {PATH=ID, ...} in path order, which makes
+     *  it usable as input to a commit's hash. */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("{");
+        for (String path : sortedKeys()) {
+            if (result.length() > 1) {
+                result.append(", ");
+            }
+            result.append(path).append('=').append(get(path));
+        }
+        return result.append('}').toString();
+    }
+
+    /** Returns the slot holding PATH, or the empty slot where it would
+     *  go. */
+    private int slot(String path) {
+        int mask = _paths.length - 1;
+        int k = home(path);
+        while (_paths[k] != null && !_paths[k].equals(path)) {
+            k = (k + 1) & mask;
+        }
+        return k;
+    }
+
+    /** Returns the slot at which a search for PATH starts. */
+    private int home(String path) {
+        int h = path.hashCode() * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & (_paths.length - 1);
+    }
+
+    /** Replaces the table with an empty one of CAPACITY slots. */
+    private void allocate(int capacity) {
+        _paths = new String[capacity];
+        _ids = new int[capacity * ObjectId.INTS];
+        _size = 0;
+    }
+
+    /** Moves every entry into a new table of CAPACITY slots. */
+    private void resize(int capacity) {
+        String[] paths = _paths;
+        int[] ids = _ids;
+        allocate(capacity);
+        for (int k = 0; k < paths.length; k += 1) {
+            if (paths[k] != null) {
+                int j = slot(paths[k]);
+                _paths[j] = paths[k];
+                System.arraycopy(ids, k * ObjectId.INTS,
+                                 _ids, j * ObjectId.INTS, ObjectId.INTS);
+                _size += 1;
+            }
+        }
+    }
+
+    /** Writes the entries as a count followed by (path, id) pairs. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(_size);
+        byte[] id = new byte[ObjectId.LENGTH];
+        for (int k = 0; k < _paths.length; k += 1) {
+            if (_paths[k] != null) {
+                out.writeUTF(_paths[k]);
+                ObjectId.fromInts(_ids, k * ObjectId.INTS).copyTo(id, 0);
+                out.write(id);
+            }
+        }
+    }
+
+    /** Reads entries written by writeObject, interning their paths. */
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        int capacity = MIN_CAPACITY;
+        while (capacity * MAX_LOAD < size) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+        byte[] id = new byte[ObjectId.LENGTH];
+        for (int i = 0; i < size; i += 1) {
+            String path = in.readUTF();
+            in.readFully(id);
+            put(path, ObjectId.fromBytes(id, 0));
+        }
+    }
+
+    /** Smallest table size; always a power of two. */
+    private static final int MIN_CAPACITY = 8;
+    /** Largest fraction of slots in use before the table grows. */
+    private static final double MAX_LOAD = 0.6;
+
+    /** Paths by slot; null marks an empty slot. */
+    private transient String[] _paths;
+    /** Ids by slot, ObjectId.INTS ints each. */
+    private transient int[] _ids;
+    /** Number of entries. */
+    private transient int _size;
+}
@@ -0,0 +1,83 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectId and FileMap.
+ *  @author Ramon Moreno
+ */
+public class FileMapTest {
+
+    @Test
+    public void objectIdRoundTrips() {
+        String hex = Utils.sha1("object id");
+        ObjectId id = ObjectId.fromHex(hex);
+        assertEquals(hex, id.toHex());
+        assertEquals(id, ObjectId.fromBytes(id.toBytes(), 0));
+        int[] ints = new int[ObjectId.INTS + 1];
+        id.copyTo(ints, 1);
+        assertEquals(id, ObjectId.fromInts(ints, 1));
+        assertTrue(id.equalsAt(ints, 1));
+    }
+
+    @Test
+    public void objectIdsOrderLikeTheirHex() {
+        String[] hexes = {Utils.sha1("a"), Utils.sha1("b"), Utils.sha1("c"),
+                          "f" + Utils.sha1("d").substring(1),
+                          "0" + Utils.sha1("e").substring(1)};
+        for (String x : hexes) {
+            for (String y : hexes) {
+                assertEquals(Integer.signum(x.compareTo(y)),
+                    Integer.signum(ObjectId.fromHex(x)
+                                   .compareTo(ObjectId.fromHex(y))));
+            }
+        }
+    }
+
+    @Test
+    public void behavesLikeAHashMap() {
+        Random random = new Random(61);
+        HashMap<String, ObjectId> expected = new HashMap<>();
+        FileMap map = new FileMap();
+        for (int i = 0; i < 20000; i += 1) {
+            String path = "dir" + random.nextInt(50) + "/f"
+                + random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(path);
+                map.remove(path);
+            } else {
+                ObjectId id = ObjectId.fromHex(Utils.sha1("" + i));
+                expected.put(path, id);
+                map.put(path, id);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (String path : expected.keySet()) {
+            assertEquals(expected.get(path), map.get(path));
+            assertTrue(map.maps(path, expected.get(path)));
+        }
+        for (String path : map.keySet()) {
+            assertTrue(expected.containsKey(path));
+        }
+        assertNull(map.get("missing"));
+    }
+
+    @Test
+    public void copiesAndSerializesIndependently() {
+        FileMap map = new FileMap();
+        map.put("a.txt", ObjectId.fromHex(Utils.sha1("a")));
+        map.put("b.txt", ObjectId.fromHex(Utils.sha1("b")));
+        FileMap copy = new FileMap(map);
+        copy.remove("a.txt");
+        assertEquals(2, map.size());
+        assertEquals(1, copy.size());
+
+        FileMap back = Utils.deserialize(Utils.serialize(map), FileMap.class);
+        assertEquals(map, back);
+        assertEquals(map.toString(), back.toString());
+        assertTrue(back.toString().startsWith("{a.txt="));
+    }
+}
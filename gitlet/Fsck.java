@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Verifies the object store of a repository.  Every blob and commit in
+ *  it is read back and hashed, in parallel over the fork-join pool so
+ *  that the checks run as fast as the disk delivers objects, and its
+ *  hash is compared with its name; a commit must also hash, through
+ *  Commit.hashThisCommit, to its id and be stored exactly as toBytes
+ *  stores it.  Every parent and blob a commit names, every branch head
+ *  and every blob in the staging area must exist, here or in an
+ *  alternate.
+ *
+ *  The report has one problem per line, as a kind followed by fields
+ *  separated by single spaces, with any path last:
+ *  <pre>
+ *    bad-hash blob|commit NAME ACTUAL
+ *    bad-encoding commit NAME
+ *    unreadable blob|commit NAME MESSAGE
+ *    missing-parent COMMIT PARENT
+ *    missing-blob COMMIT BLOB PATH
+ *    missing-commit BRANCH COMMIT
+ *    missing-staged-blob BLOB PATH
+ *    stray blob|commit NAME
+ *  </pre>
+ *  followed by the totals, "blobs N", "commits N" and "errors N".  Stray
+ *  files, such as temporary files left by a crash, are reported but are
+ *  not errors.
+ *  @author Ramon Moreno
+ */
+class Fsck {
+
+    /** A check of the repository whose .gitlet directory is DIR, whose
+     *  branch heads are HEADS and whose staging area is STAGE. */
+    Fsck(File dir, Map<String, String> heads, StagingIndex stage) {
+        _dir = dir;
+        _heads = heads;
+        _stage = stage;
+    }
+
+    /** Runs every check and prints the report on OUT.  Returns the number
+     *  of errors found. */
+    int run(PrintStream out) {
+        List<File> blobs = objects(BLOBS, "blob");
+        List<File> commits = objects(COMMITS, "commit");
+        blobs.parallelStream().forEach(this::checkBlob);
+        commits.parallelStream().forEach(this::checkCommit);
+        _referencedBlobs.keySet().parallelStream()
+            .forEach(this::checkBlobExists);
+        for (Map.Entry<String, String> head : _heads.entrySet()) {
+            if (!Repository.commitFile(_dir, head.getValue()).exists()) {
+                problem("missing-commit", head.getKey(), head.getValue());
+            }
+        }
+        FileMap staged = _stage.additions();
+        for (String path : staged.keySet()) {
+            if (!Repository.blobFile(_dir, staged.get(path)).exists()) {
+                problem("missing-staged-blob", staged.get(path).toHex(), path);
+            }
+        }
+
+        ArrayList<String> lines = new ArrayList<>(_problems);
+        Collections.sort(lines);
+        for (String line : lines) {
+            out.println(line);
+        }
+        out.println("blobs " + blobs.size());
+        out.println("commits " + commits.size());
+        out.println("errors " + _errors.size());
+        return _errors.size();
+    }
+
+    /** Returns the objects in the object directory KIND of _dir, which
+     *  holds objects of type TYPE, reporting any other files as strays. */
+    private List<File> objects(String kind, String type) {
+        ArrayList<File> result = new ArrayList<>();
+        File[] files = Utils.join(_dir, kind).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (isObjectName(file.getName())) {
+                    result.add(file);
+                } else {
+                    _problems.add("stray " + type + " " + file.getName());
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Checks that the blob FILE hashes to its name. */
+    private void checkBlob(File file) {
+        String name = file.getName();
+        try {
+            String actual = Hashing.objectId(file).toHex();
+            if (!actual.equals(name)) {
+                problem("bad-hash", "blob", name, actual);
+            }
+        } catch (IllegalArgumentException excp) {
+            problem("unreadable", "blob", name,
+                    String.valueOf(excp.getMessage()));
+        }
+    }
+
+    /** Checks that the commit FILE hashes to its name and that the
+     *  parents and blobs it names exist. */
+    private void checkCommit(File file) {
+        String name = file.getName();
+        Commit commit;
+        String actual;
+        boolean canonical;
+        try {
+            byte[] bytes = Utils.readContents(file);
+            commit = Commit.fromBytes(bytes);
+            actual = commit.hashThisCommit();
+            canonical = Arrays.equals(bytes, commit.toBytes());
+        } catch (IllegalArgumentException excp) {
+            problem("unreadable", "commit", name,
+                    String.valueOf(excp.getMessage()));
+            return;
+        }
+        if (!actual.equals(name) || !name.equals(commit.getMyUID())) {
+            problem("bad-hash", "commit", name, actual);
+        } else if (!canonical) {
+            problem("bad-encoding", "commit", name);
+        }
+        String[] parents = commit.getAllParents();
+        if (parents != null) {
+            for (String parent : parents) {
+                if (!Repository.commitFile(_dir, parent).exists()) {
+                    problem("missing-parent", name, parent);
+                }
+            }
+        }
+        FileMap files = commit.getMyFiles();
+        for (String path : files.keySet()) {
+            ObjectId id = files.get(path);
+            _referencedBlobs.putIfAbsent(id, name + " " + id.toHex() + " "
+                                         + path);
+        }
+    }
+
+    /** Checks that the blob ID, named by some commit, exists. */
+    private void checkBlobExists(ObjectId id) {
+        if (!Repository.blobFile(_dir, id).exists()) {
+            problem("missing-blob", _referencedBlobs.get(id));
+        }
+    }
+
+    /** Returns true iff NAME is a 40-digit lower-case hexadecimal
+     *  numeral, as the names of objects are. */
+    private static boolean isObjectName(String name) {
+        if (name.length() != Utils.UID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i += 1) {
+            char c = name.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reports the error of kind KIND with FIELDS. */
+    private void problem(String kind, String... fields) {
+        String line = kind + " " + String.join(" ", fields);
+        _problems.add(line);
+        _errors.add(line);
+    }
+
+    /** Name of the blob directory. */
+    private static final String BLOBS = "Blobs";
+    /** Name of the commit directory. */
+    private static final String COMMITS = "Commits";
+
+    /** The .gitlet directory checked. */
+    private final File _dir;
+    /** The branch heads. */
+    private final Map<String, String> _heads;
+    /** The staging area. */
+    private final StagingIndex _stage;
+    /** Every line of the report but the totals. */
+    private final ConcurrentLinkedQueue<String> _problems =
+        new ConcurrentLinkedQueue<>();
+    /** The lines of the report that are errors. */
+    private final ConcurrentLinkedQueue<String> _errors =
+        new ConcurrentLinkedQueue<>();
+    /** For each blob some commit names, the first commit seen naming it,
+     *  the blob and its path, as reported if the blob is missing. */
+    private final ConcurrentHashMap<ObjectId, String> _referencedBlobs =
+        new ConcurrentHashMap<>();
+}
@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Fsck.
+ *  @author Ramon Moreno
+ */
+public class FsckTest {
+
+    /** Stores CONTENTS as the object NAME of kind KIND in DIR. */
+    private static void store(File dir, String kind, String name,
+                              byte[] contents) {
+        Utils.writeContents(Utils.join(dir, kind, name), contents);
+    }
+
+    @Test
+    public void reportsCorruptAndMissingObjects() throws IOException {
+        File dir = Files.createTempDirectory("fsck").toFile();
+        try {
+            Utils.join(dir, "Blobs").mkdir();
+            Utils.join(dir, "Commits").mkdir();
+            byte[] good = "good".getBytes();
+            ObjectId goodId = Hashing.objectId(good);
+            ObjectId lostId = Hashing.objectId("lost".getBytes());
+            store(dir, "Blobs", goodId.toHex(), good);
+            String badName = Hashing.objectId("bad".getBytes()).toHex();
+            store(dir, "Blobs", badName, "not bad".getBytes());
+            store(dir, "Blobs", badName + ".1.tmp", good);
+
+            FileMap files = new FileMap();
+            files.put("good.txt", goodId);
+            files.put("lost.txt", lostId);
+            String parent = Utils.sha1("gone");
+            Commit commit = new Commit(files, new String[] {parent},
+                                       "change", false);
+            String uid = commit.getMyUID();
+            store(dir, "Commits", uid, commit.toBytes());
+            HashMap<String, String> heads = new HashMap<>();
+            heads.put("master", uid);
+            heads.put("other", Utils.sha1("elsewhere"));
+
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+            int errors = new Fsck(dir, heads, StagingIndex.load(dir))
+                .run(new PrintStream(report, true));
+            String expected = String.join("\n",
+                "bad-hash blob " + badName + " "
+                    + Hashing.objectId("not bad".getBytes()).toHex(),
+                "missing-blob " + uid + " " + lostId.toHex() + " lost.txt",
+                "missing-commit other " + Utils.sha1("elsewhere"),
+                "missing-parent " + uid + " " + parent,
+                "stray blob " + badName + ".1.tmp",
+                "blobs 2", "commits 1", "errors 4", "");
+            assertEquals(expected,
+                         report.toString().replace(System.lineSeparator(),
+                                                   "\n"));
+            assertEquals(4, errors);
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
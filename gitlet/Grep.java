@@ -0,0 +1,282 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** A search for lines matching a pattern in the files of any number of
+ *  commits, read straight from the object store.  The blobs of all the
+ *  commits are gathered first, so that a blob shared by many commits or
+ *  paths is searched once, and are then searched in parallel over the
+ *  fork-join pool; the work is proportional to the number of distinct
+ *  blobs, not to commits times files.  A blob of at least MAP_SIZE
+ *  bytes is memory-mapped rather than read.
+ *
+ *  A pattern with no regular-expression metacharacters is searched for
+ *  as bytes, without decoding the blob.  Any other pattern is compiled
+ *  once, in MULTILINE mode, and run over the whole blob decoded as
+ *  UTF-8; each line it finds a match in is then matched on its own, so
+ *  that a match never spans lines.  A blob with a NUL byte among its
+ *  first BINARY_PROBE bytes is binary, and is reported as matching
+ *  rather than line by line.
+ *  @author Ramon Moreno
+ */
+class Grep {
+
+    /** A search for PATTERN in the repository whose .gitlet directory is
+     *  DIR. */
+    Grep(File dir, String pattern) {
+        _dir = dir;
+        if (pattern.chars().anyMatch(c -> METACHARACTERS.indexOf(c) >= 0)) {
+            try {
+                _regex = Pattern.compile(pattern, Pattern.MULTILINE);
+            } catch (PatternSyntaxException excp) {
+                throw Utils.error("Invalid pattern: %s", excp.getDescription());
+            }
+            _literal = null;
+        } else {
+            _regex = null;
+            _literal = pattern.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Searches the files of the commits COMMITS, which maps the name
+     *  to print for each commit to its id, and prints each matching line
+     *  on OUT as NAME:PATH:LINE NUMBER:LINE, by commit and then by path.
+     *  Returns the number of lines printed. */
+    int run(Map<String, String> commits, PrintStream out) {
+        Set<ObjectId> blobs = ConcurrentHashMap.newKeySet();
+        new ArrayList<>(new HashSet<>(commits.values())).parallelStream()
+            .forEach(uid -> commit(uid).forEachFile(id -> {
+                if (!blobs.contains(id)) {
+                    blobs.add(id);
+                }
+                return false;
+            }, null));
+        blobs.parallelStream().forEach(this::search);
+        if (_matches.isEmpty()) {
+            return 0;
+        }
+
+        int printed = 0;
+        for (Map.Entry<String, String> commit : commits.entrySet()) {
+            TreeMap<String, List<String>> files = new TreeMap<>();
+            commit(commit.getValue()).forEachFile(_matches::containsKey,
+                (path, id) -> files.put(path, _matches.get(id)));
+            StringBuilder lines = new StringBuilder();
+            for (Map.Entry<String, List<String>> file : files.entrySet()) {
+                for (String match : file.getValue()) {
+                    if (match == null) {
+                        lines.append("Binary file ").append(commit.getKey())
+                            .append(':').append(file.getKey())
+                            .append(" matches\n");
+                    } else {
+                        lines.append(commit.getKey()).append(':')
+                            .append(file.getKey()).append(':').append(match)
+                            .append('\n');
+                    }
+                    printed += 1;
+                }
+            }
+            out.print(lines);
+        }
+        return printed;
+    }
+
+    /** Returns the commit UID, without its files. */
+    private Commit commit(String uid) {
+        long start = Trace.start();
+        Commit commit = Commit.read(Repository.commitFile(_dir, uid));
+        Trace.record(Trace.Stat.COMMIT_DECODE, start, 0, uid);
+        return commit;
+    }
+
+    /** Searches the blob ID, recording its matches, if any. */
+    private void search(ObjectId id) {
+        File file = Repository.blobFile(_dir, id);
+        long start = Trace.start();
+        ByteBuffer contents;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_SIZE) {
+                contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                contents = ByteBuffer.allocate((int) size);
+                while (contents.hasRemaining()
+                       && channel.read(contents) >= 0) {
+                    continue;
+                }
+                contents.flip();
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.record(Trace.Stat.FILE_READ, start, contents.limit(),
+                     file.getPath());
+
+        List<String> matches = _literal != null ? searchBytes(contents)
+            : searchText(contents);
+        if (!matches.isEmpty()) {
+            _matches.put(id, matches);
+        }
+    }
+
+    /** Returns the matches of the literal pattern in CONTENTS, each as
+     *  the line number and line separated by a colon, or a single null if
+     *  CONTENTS is binary. */
+    private List<String> searchBytes(ByteBuffer contents) {
+        ArrayList<String> result = new ArrayList<>();
+        boolean binary = isBinary(contents);
+        int limit = contents.limit() - _literal.length;
+        byte first = _literal.length == 0 ? 0 : _literal[0];
+        int line = 1;
+        int counted = 0;
+        for (int i = 0; i <= limit; i += 1) {
+            if (_literal.length > 0 && contents.get(i) != first
+                || !matchesAt(contents, i)) {
+                continue;
+            }
+            if (binary) {
+                result.add(null);
+                return result;
+            }
+            int lineStart = lineStart(contents, i);
+            int lineEnd = lineEnd(contents, i);
+            for (; counted < lineStart; counted += 1) {
+                if (contents.get(counted) == '\n') {
+                    line += 1;
+                }
+            }
+            result.add(line + ":" + text(contents, lineStart, lineEnd));
+            i = lineEnd;
+        }
+        return result;
+    }
+
+    /** Returns true iff the literal pattern occurs in CONTENTS at
+     *  POSITION. */
+    private boolean matchesAt(ByteBuffer contents, int position) {
+        for (int k = 1; k < _literal.length; k += 1) {
+            if (contents.get(position + k) != _literal[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the matches of the regular expression in CONTENTS, each
+     *  as the line number and line separated by a colon, or a single null
+     *  if CONTENTS is binary. */
+    private List<String> searchText(ByteBuffer contents) {
+        ArrayList<String> result = new ArrayList<>();
+        boolean binary = isBinary(contents);
+        CharBuffer text = StandardCharsets.UTF_8.decode(contents.duplicate());
+        Matcher matcher = _regex.matcher(text);
+        int line = 1;
+        int counted = 0;
+        int from = 0;
+        while (from <= text.length()) {
+            matcher.region(from, text.length());
+            if (!matcher.find()) {
+                break;
+            }
+            if (binary) {
+                result.add(null);
+                return result;
+            }
+            int lineStart = matcher.start();
+            if (lineStart == text.length()) {
+                break;
+            }
+            while (lineStart > 0 && text.charAt(lineStart - 1) != '\n') {
+                lineStart -= 1;
+            }
+            int lineEnd = lineStart;
+            while (lineEnd < text.length() && text.charAt(lineEnd) != '\n') {
+                lineEnd += 1;
+            }
+            for (; counted < lineStart; counted += 1) {
+                if (text.charAt(counted) == '\n') {
+                    line += 1;
+                }
+            }
+            matcher.region(lineStart, lineEnd);
+            if (matcher.find()) {
+                result.add(line + ":" + text.subSequence(lineStart, lineEnd));
+            }
+            from = lineEnd + 1;
+        }
+        return result;
+    }
+
+    /** Returns true iff CONTENTS has a NUL byte in its first BINARY_PROBE
+     *  bytes. */
+    private static boolean isBinary(ByteBuffer contents) {
+        int end = Math.min(contents.limit(), BINARY_PROBE);
+        for (int i = 0; i < end; i += 1) {
+            if (contents.get(i) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the position of the start of the line in CONTENTS that
+     *  holds POSITION. */
+    private static int lineStart(ByteBuffer contents, int position) {
+        while (position > 0 && contents.get(position - 1) != '\n') {
+            position -= 1;
+        }
+        return position;
+    }
+
+    /** Returns the position of the end of the line in CONTENTS that holds
+     *  POSITION, before its line break. */
+    private static int lineEnd(ByteBuffer contents, int position) {
+        while (position < contents.limit() && contents.get(position) != '\n') {
+            position += 1;
+        }
+        return position;
+    }
+
+    /** Returns the UTF-8 text in CONTENTS from START to END. */
+    private static String text(ByteBuffer contents, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        contents.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** The characters that make a pattern a regular expression. */
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+    /** Size from which a blob is memory-mapped rather than read. */
+    static final int MAP_SIZE = 16 * 1024;
+    /** Number of leading bytes examined for NULs to detect binary
+     *  blobs. */
+    static final int BINARY_PROBE = 8000;
+
+    /** The .gitlet directory of the repository. */
+    private final File _dir;
+    /** The pattern as UTF-8 bytes, if it is a literal, or null. */
+    private final byte[] _literal;
+    /** The pattern, if it is a regular expression, or null. */
+    private final Pattern _regex;
+    /** The matches in each blob that has any. */
+    private final Map<ObjectId, List<String>> _matches =
+        new ConcurrentHashMap<>();
+}
@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Grep.
+ *  @author Ramon Moreno
+ */
+public class GrepTest {
+
+    /** Writes a commit of DIR with message MESSAGE whose files are
+     *  FILES, alternately paths and contents, and returns its id. */
+    private static String commit(File dir, String message, String... files) {
+        FileMap map = new FileMap();
+        for (int i = 0; i < files.length; i += 2) {
+            map.put(files[i], TestUtils.blob(dir, files[i + 1]));
+        }
+        return TestUtils.commit(dir, map, message);
+    }
+
+    /** Returns the output of searching for PATTERN in COMMITS of DIR. */
+    private static String grep(File dir, String pattern,
+                               LinkedHashMap<String, String> commits) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes, true, StandardCharsets.UTF_8);
+        new Grep(dir, pattern).run(commits, out);
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void searchesEachCommitsFiles() throws IOException {
+        File dir = Files.createTempDirectory("grep").toFile();
+        try {
+            String shared = "port=80\nhost=a\n";
+            LinkedHashMap<String, String> commits = new LinkedHashMap<>();
+            commits.put("new", commit(dir, "new", "b.cfg", shared,
+                                      "a.cfg", "host=b\nport=8080\n",
+                                      "bin", "port=\0\n"));
+            commits.put("old", commit(dir, "old", "b.cfg", shared,
+                                      "c.cfg", shared));
+            assertEquals("new:a.cfg:2:port=8080\n"
+                         + "new:b.cfg:1:port=80\n"
+                         + "Binary file new:bin matches\n"
+                         + "old:b.cfg:1:port=80\n"
+                         + "old:c.cfg:1:port=80\n",
+                         grep(dir, "port=", commits));
+            assertEquals("new:a.cfg:2:port=8080\n",
+                         grep(dir, "=(80){2}$", commits));
+            LinkedHashMap<String, String> one = new LinkedHashMap<>();
+            one.put("one", commit(dir, "one",
+                                  "a.cfg", "host=b\nport=8080\n"));
+            assertEquals("one:a.cfg:1:host=b\none:a.cfg:2:port=8080\n",
+                         grep(dir, "^", one));
+            assertEquals("", grep(dir, "absent", commits));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void commitFilesAreVisitedWithoutDecodingUnwantedPaths()
+        throws IOException {
+        File dir = Files.createTempDirectory("grep").toFile();
+        try {
+            String uid = commit(dir, "c", "x", "1\n", "y", "2\n", "z", "1\n");
+            ObjectId one = ObjectId.fromHex(Utils.sha1("1\n"));
+            Commit commit = Commit.read(Repository.commitFile(dir, uid));
+            ArrayList<String> paths = new ArrayList<>();
+            commit.forEachFile(one::equals, (path, id) -> paths.add(path));
+            paths.sort(null);
+            assertEquals(List.of("x", "z"), paths);
+            assertEquals(3, commit.getMyFiles().size());
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
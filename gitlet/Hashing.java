@@ -0,0 +1,358 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/** The hashing engine behind Utils.sha1.  Each thread keeps one reusable
+ *  Hasher per algorithm, with its own MessageDigest, a direct buffer for
+ *  reading files through a FileChannel, and a buffer for encoding Strings
+ *  as UTF-8 without building a byte array per String.  Digests are turned
+ *  into hexadecimal with a lookup table.
+ *  @author Ramon Moreno
+ */
+class Hashing {
+
+    /** The supported hash functions. */
+    enum Algorithm {
+        /** SHA-1, the object format of every Gitlet repository. */
+        SHA1("SHA-1", 20),
+        /** SHA-256. */
+        SHA256("SHA-256", 32);
+
+        /** A hash function called NAME by java.security with digests of
+         *  LENGTH bytes. */
+        Algorithm(String name, int length) {
+            _name = name;
+            _length = length;
+        }
+
+        /** Returns the java.security name of this algorithm. */
+        String javaName() {
+            return _name;
+        }
+
+        /** Returns the length of a digest in bytes. */
+        int length() {
+            return _length;
+        }
+
+        /** Returns the length of a digest as a hexadecimal numeral. */
+        int hexLength() {
+            return 2 * _length;
+        }
+
+        /** Returns the algorithm named NAME, ignoring case and dashes
+         *  ("sha1", "SHA-256", ...). */
+        static Algorithm forName(String name) {
+            String key = name.replace("-", "").toUpperCase();
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name().equals(key)) {
+                    return algorithm;
+                }
+            }
+            throw new IllegalArgumentException("unknown hash algorithm "
+                + name);
+        }
+
+        /** java.security name. */
+        private final String _name;
+        /** Digest length in bytes. */
+        private final int _length;
+    }
+
+    /** Returns the SHA-1 hash, as a hexadecimal numeral, of the
+     *  concatenation of VALS, which may be any mixture of byte arrays,
+     *  Strings and ByteBuffers. */
+    static String sha1(Object... vals) {
+        return hash(Algorithm.SHA1, vals);
+    }
+
+    /** Returns the ALGORITHM hash, as a hexadecimal numeral, of the
+     *  concatenation of VALS, which may be any mixture of byte arrays,
+     *  Strings and ByteBuffers. */
+    static String hash(Algorithm algorithm, Object... vals) {
+        long start = Trace.start();
+        Hasher hasher = hasher(algorithm);
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                hasher.update((byte[]) val);
+            } else if (val instanceof String) {
+                hasher.update((String) val);
+            } else if (val instanceof ByteBuffer) {
+                hasher.update((ByteBuffer) val);
+            } else {
+                hasher.reset();
+                throw new IllegalArgumentException("improper type to sha1");
+            }
+        }
+        long hashed = hasher.count();
+        String result = hasher.hex();
+        Trace.record(Trace.Stat.HASH, start, hashed, null);
+        return result;
+    }
+
+    /** Returns the SHA-1 hash of the contents of FILE, streamed through a
+     *  FileChannel without reading it into memory.  Equal to
+     *  sha1(Utils.readContents(FILE)). */
+    static String sha1(File file) {
+        return hash(Algorithm.SHA1, file);
+    }
+
+    /** Returns the ALGORITHM hash of the contents of FILE, streamed through
+     *  a FileChannel. */
+    static String hash(Algorithm algorithm, File file) {
+        long start = Trace.start();
+        Hasher hasher = stream(algorithm, file);
+        long hashed = hasher.count();
+        String result = hasher.hex();
+        Trace.record(Trace.Stat.HASH, start, hashed, file.getPath());
+        return result;
+    }
+
+    /** Returns the SHA-1 ObjectId of CONTENTS. */
+    static ObjectId objectId(byte[] contents) {
+        long start = Trace.start();
+        Hasher hasher = hasher(Algorithm.SHA1);
+        hasher.update(contents);
+        ObjectId result = ObjectId.fromBytes(hasher.digest(), 0);
+        Trace.record(Trace.Stat.HASH, start, contents.length, null);
+        return result;
+    }
+
+    /** Returns the SHA-1 ObjectId of the contents of FILE, streamed
+     *  through a FileChannel. */
+    static ObjectId objectId(File file) {
+        long start = Trace.start();
+        Hasher hasher = stream(Algorithm.SHA1, file);
+        long hashed = hasher.count();
+        ObjectId result = ObjectId.fromBytes(hasher.digest(), 0);
+        Trace.record(Trace.Stat.HASH, start, hashed, file.getPath());
+        return result;
+    }
+
+    /** Returns this thread's Hasher for ALGORITHM after feeding it the
+     *  contents of FILE through a FileChannel. */
+    private static Hasher stream(Algorithm algorithm, File file) {
+        Hasher hasher = hasher(algorithm);
+        try (FileChannel channel =
+                 FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            hasher.update(channel);
+        } catch (IOException excp) {
+            hasher.reset();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return hasher;
+    }
+
+    /** Returns this thread's Hasher for ALGORITHM, reset and ready for
+     *  input.  It must not be used again after a call on this thread to any
+     *  other method of this class. */
+    static Hasher hasher(Algorithm algorithm) {
+        Hasher[] hashers = HASHERS.get();
+        int k = algorithm.ordinal();
+        if (hashers[k] == null) {
+            hashers[k] = new Hasher(algorithm);
+        }
+        hashers[k].reset();
+        return hashers[k];
+    }
+
+    /** Returns BYTES as a lower-case hexadecimal numeral. */
+    static String toHex(byte[] bytes) {
+        char[] result = new char[2 * bytes.length];
+        for (int i = 0, j = 0; i < bytes.length; i += 1, j += 2) {
+            result[j] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            result[j + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Returns the bytes denoted by the hexadecimal numeral HEX, which
+     *  must have an even number of digits. */
+    static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd-length hex numeral");
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) ((hexValue(hex.charAt(2 * i)) << 4)
+                                | hexValue(hex.charAt(2 * i + 1)));
+        }
+        return result;
+    }
+
+    /** Returns the value of hexadecimal digit C. */
+    static int hexValue(char c) {
+        int value = c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("bad hex digit " + c);
+        }
+        return value;
+    }
+
+    /** An incremental hash computation that reuses its digest and
+     *  buffers from one hash to the next. */
+    static class Hasher {
+        /** A hasher for ALGORITHM. */
+        Hasher(Algorithm algorithm) {
+            _algorithm = algorithm;
+            try {
+                _digest = MessageDigest.getInstance(algorithm.javaName());
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException("System does not support "
+                    + algorithm.javaName());
+            }
+            _encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        /** Adds BYTES to the input. */
+        void update(byte[] bytes) {
+            _digest.update(bytes);
+            _count += bytes.length;
+        }
+
+        /** Adds the remaining bytes of BUFFER to the input, consuming
+         *  them. */
+        void update(ByteBuffer buffer) {
+            _count += buffer.remaining();
+            _digest.update(buffer);
+        }
+
+        /** Adds the UTF-8 encoding of S to the input.  ASCII runs are
+         *  copied straight into the scratch buffer; anything after the first
+         *  other character goes through the reused encoder. */
+        void update(String s) {
+            int n = s.length();
+            int i = 0;
+            while (i < n) {
+                int k = 0;
+                while (i < n && k < _scratch.length) {
+                    char c = s.charAt(i);
+                    if (c >= 0x80) {
+                        break;
+                    }
+                    _scratch[k] = (byte) c;
+                    k += 1;
+                    i += 1;
+                }
+                _digest.update(_scratch, 0, k);
+                _count += k;
+                if (i < n && s.charAt(i) >= 0x80) {
+                    encode(CharBuffer.wrap(s, i, n));
+                    return;
+                }
+            }
+        }
+
+        /** Adds everything remaining in CHANNEL to the input. */
+        void update(FileChannel channel) throws IOException {
+            if (_direct == null) {
+                _direct = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            }
+            _direct.clear();
+            while (channel.read(_direct) >= 0) {
+                _direct.flip();
+                update(_direct);
+                _direct.clear();
+            }
+        }
+
+        /** Returns the number of bytes input since the last reset. */
+        long count() {
+            return _count;
+        }
+
+        /** Returns the digest of the input as raw bytes and resets. */
+        byte[] digest() {
+            _count = 0;
+            return _digest.digest();
+        }
+
+        /** Returns the digest of the input as a hexadecimal numeral and
+         *  resets. */
+        String hex() {
+            return toHex(digest());
+        }
+
+        /** Discards any input. */
+        void reset() {
+            _digest.reset();
+            _count = 0;
+        }
+
+        /** Returns the algorithm of this hasher. */
+        Algorithm algorithm() {
+            return _algorithm;
+        }
+
+        /** Adds the UTF-8 encoding of CHARS to the input. */
+        private void encode(CharBuffer chars) {
+            _encoder.reset();
+            ByteBuffer out = ByteBuffer.wrap(_scratch);
+            while (_encoder.encode(chars, out, true).isOverflow()) {
+                flush(out);
+            }
+            while (_encoder.flush(out).isOverflow()) {
+                flush(out);
+            }
+            flush(out);
+        }
+
+        /** Feeds the encoded bytes in OUT to the digest and clears it. */
+        private void flush(ByteBuffer out) {
+            _digest.update(_scratch, 0, out.position());
+            _count += out.position();
+            out.clear();
+        }
+
+        /** The algorithm. */
+        private final Algorithm _algorithm;
+        /** The reused digest. */
+        private final MessageDigest _digest;
+        /** The reused UTF-8 encoder. */
+        private final CharsetEncoder _encoder;
+        /** Scratch space for encoded Strings. */
+        private final byte[] _scratch = new byte[BUFFER_SIZE];
+        /** Buffer for channel reads, allocated on first use. */
+        private ByteBuffer _direct;
+        /** Bytes input since the last reset. */
+        private long _count;
+    }
+
+    /** Size of the Hasher buffers. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Lower-case hexadecimal digits by value. */
+    private static final char[] HEX_DIGITS =
+        "0123456789abcdef".toCharArray();
+
+    /** Values of hexadecimal digits by character, -1 for non-digits. */
+    private static final byte[] HEX_VALUES = new byte['g' + 1];
+
+    static {
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 10; i += 1) {
+            HEX_VALUES['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i += 1) {
+            HEX_VALUES['a' + i] = (byte) (10 + i);
+            HEX_VALUES['A' + i] = (byte) (10 + i);
+        }
+    }
+
+    /** Each thread's Hashers, indexed by Algorithm ordinal. */
+    private static final ThreadLocal<Hasher[]> HASHERS =
+        ThreadLocal.withInitial(() -> new Hasher[Algorithm.values().length]);
+}
@@ -0,0 +1,84 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the hashing engine.
+ *  @author Ramon Moreno
+ */
+public class HashingTest {
+
+    /** Returns the ALGORITHM digest of BYTES straight from
+     *  java.security. */
+    private static String reference(String algorithm, byte[] bytes) {
+        try {
+            return Hashing.toHex(
+                MessageDigest.getInstance(algorithm).digest(bytes));
+        } catch (NoSuchAlgorithmException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    @Test
+    public void knownDigests() {
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+                     Utils.sha1(""));
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+                     Utils.sha1("abc"));
+        assertEquals("ba7816bf8f01cfea414140de5dae2223"
+                     + "b00361a396177a9cb410ff61f20015ad",
+                     Hashing.hash(Hashing.Algorithm.SHA256, "abc"));
+    }
+
+    @Test
+    public void stringsMatchTheirUtf8Bytes() {
+        char[] longAscii = new char[200_000];
+        Arrays.fill(longAscii, 'x');
+        String[] samples = {"plain", "caf\u00e9 \u4e2d\u6587 \ud83d\ude00",
+            new String(longAscii) + "\u00e9" + new String(longAscii),
+            "unpaired \ud800 surrogate"};
+        for (String sample : samples) {
+            assertEquals(reference("SHA-1",
+                             sample.getBytes(StandardCharsets.UTF_8)),
+                         Utils.sha1(sample));
+        }
+    }
+
+    @Test
+    public void mixedInputsConcatenate() {
+        byte[] bytes = "bytes".getBytes(StandardCharsets.UTF_8);
+        assertEquals(Utils.sha1("string" + "bytes" + "buffer"),
+                     Hashing.sha1("string", bytes, ByteBuffer.wrap(
+                         "buffer".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    public void filesAreStreamed() throws IOException {
+        File file = File.createTempFile("hashing", ".txt");
+        try {
+            byte[] contents = new byte[300_000];
+            for (int i = 0; i < contents.length; i += 1) {
+                contents[i] = (byte) (i * 31);
+            }
+            Utils.writeContents(file, contents);
+            assertEquals(Utils.sha1(contents), Hashing.sha1(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void hexRoundTrip() {
+        String id = Utils.sha1("round trip");
+        assertEquals(id, Hashing.toHex(Hashing.fromHex(id)));
+        assertEquals(id, Hashing.toHex(Hashing.fromHex(id.toUpperCase())));
+    }
+}
@@ -12,30 +12,69 @@ public class Main {
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
+        args = Trace.configure(args);
         try {
             if (args.length == 0) {
                 throw new GitletException("Please enter a command.");
             } else if (!isValid(args[0])) {
                 throw new GitletException("No command with that name exists.");
+            } else if (args[0].equals("maintenance") && isInitialized()) {
+                Repository.checkFormat(Repository.GITLET_DIR);
+                String[] operands = Arrays.copyOfRange(args, 1, args.length);
+                Trace.command(args[0], operands, () ->
+                    Maintenance.command(Repository.GITLET_DIR, operands));
+            } else if (args[0].equals("bisect") && args.length > 1
+                       && args[1].equals("run") && isInitialized()) {
+                String[] operands = Arrays.copyOfRange(args, 1, args.length);
+                Trace.command(args[0], operands, () -> bisectRun(
+                    Arrays.copyOfRange(operands, 1, operands.length)));
             } else if (isInitialized()) {
-                File myRepo = new File(".gitlet/myRepo");
-                myRepository = Utils.readObject(myRepo, Repository.class);
-                completeAction(args[0],
-                        Arrays.copyOfRange(args, 1, args.length));
-                Utils.writeObject(myRepo, myRepository);
+                String command = args[0];
+                String[] operands = Arrays.copyOfRange(args, 1, args.length);
+                boolean readOnly = readOnlyCommands.contains(command);
+                boolean maintain = false;
+                try (RepositoryLock lock = readOnly
+                         ? RepositoryLock.shared(Repository.GITLET_DIR)
+                         : RepositoryLock.exclusive(Repository.GITLET_DIR)) {
+                    File myRepo = Repository.REPO_FILE;
+                    myRepository = Repository.load(Repository.GITLET_DIR);
+                    try {
+                        Trace.command(command, operands,
+                            () -> completeAction(command, operands));
+                    } finally {
+                        ObjectWriter.flush();
+                    }
+                    if (!readOnly) {
+                        Utils.writeObject(myRepo, myRepository);
+                        maintain = Maintenance.save(Repository.GITLET_DIR);
+                    }
+                }
+                if (maintain) {
+                    Maintenance.spawn(Repository.GITLET_DIR);
+                }
             } else if (args[0].equals("init")) {
                 myRepository = new Repository();
-                File myRepo = new File(".gitlet/myRepo");
+                File myRepo = Repository.REPO_FILE;
                 Utils.writeObject(myRepo, myRepository);
                 System.out.println("Gitlet repository initialized.");
+            } else if (args[0].equals("clone")) {
+                boolean shared = args.length == 3 && args[1].equals("--shared");
+                if (args.length != (shared ? 3 : 2)) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                myRepository = Repository.clone(args[args.length - 1], shared);
+                ObjectWriter.flush();
+                Utils.writeObject(Repository.REPO_FILE, myRepository);
             } else {
                 throw new GitletException("Not in an "
                         + "initialized Gitlet directory.");
             }
         } catch (GitletException exception) {
             System.out.println(exception.getMessage());
+            Trace.summarize(System.err);
             System.exit(0);
         }
+        Trace.summarize(System.err);
     }
 
 
@@ -43,16 +82,23 @@ public class Main {
     private static void completeAction(String command, String[] arguments) {
         switch (command) {
         case "init":
+        case "clone":
             throw new GitletException("A Gitlet version-control system "
                     + "already exists in the current directory.");
         case "add":
-            myRepository.add(arguments[0]);
+            for (String fileName : arguments) {
+                myRepository.add(fileName);
+            }
             break;
         case "commit":
             myRepository.commit(arguments[0]);
             break;
         case "log":
-            myRepository.log();
+            if (arguments.length == 2 && arguments[0].equals("--")) {
+                myRepository.log(arguments[1]);
+            } else {
+                myRepository.log();
+            }
             break;
         case "checkout":
             myRepository.checkout(arguments);
@@ -64,7 +110,11 @@ public class Main {
             myRepository.globalLog();
             break;
         case "find":
-            myRepository.find(arguments[0]);
+            if (arguments.length == 3 && arguments[1].equals("--")) {
+                myRepository.find(arguments[0], arguments[2]);
+            } else {
+                myRepository.find(arguments[0]);
+            }
             break;
         case "status":
             myRepository.status();
@@ -82,6 +132,66 @@ public class Main {
             String splitPoint = myRepository.findSplitPoint(arguments[0]);
             myRepository.merge(arguments[0], splitPoint);
             break;
+        case "sparse-checkout":
+            myRepository.sparseCheckout(arguments);
+            break;
+        case "add-remote":
+            myRepository.addRemote(arguments[0], arguments[1]);
+            break;
+        case "rm-remote":
+            myRepository.rmRemote(arguments[0]);
+            break;
+        case "push":
+            myRepository.push(arguments[0], arguments[1]);
+            break;
+        case "fetch":
+            myRepository.fetch(arguments[0], arguments[1]);
+            break;
+        case "pull":
+            myRepository.pull(arguments[0], arguments[1]);
+            break;
+        case "cherry-pick":
+            myRepository.cherryPick(arguments[0]);
+            break;
+        case "rebase":
+            myRepository.rebase(arguments[0]);
+            break;
+        case "rev-list":
+            myRepository.revList(arguments);
+            break;
+        case "fast-import":
+            myRepository.fastImport();
+            break;
+        case "fast-export":
+            myRepository.fastExport(arguments);
+            break;
+        case "archive":
+            myRepository.archive(arguments);
+            break;
+        case "worktree":
+            myRepository.worktree(arguments);
+            break;
+        case "bisect":
+            myRepository.bisect(arguments);
+            break;
+        case "reflog":
+            myRepository.reflog(arguments);
+            break;
+        case "blame":
+            myRepository.blame(arguments);
+            break;
+        case "grep":
+            myRepository.grep(arguments);
+            break;
+        case "fsck":
+            myRepository.fsck();
+            break;
+        case "is-ancestor":
+            if (arguments.length != 2) {
+                throw new GitletException("Incorrect operands.");
+            }
+            myRepository.isAncestor(arguments[0], arguments[1]);
+            break;
         default:
             break;
         }
@@ -89,9 +199,43 @@ public class Main {
 
     /** Returns true if there is a .gitlet directory inside this directory. */
     private static boolean isInitialized() {
-        File tempGitlet = new File(".gitlet");
-        return tempGitlet.exists();
+        return Repository.GITLET_DIR.exists();
+    }
+
+    /** Runs the test COMMAND on each commit that bisect checks out and
+     *  marks the commit good, bad or skipped by its exit status, until
+     *  the first bad commit is found.  The repository is locked only
+     *  while a commit is marked, so COMMAND may run gitlet itself. */
+    private static void bisectRun(String[] command) {
+        if (command.length == 0) {
+            throw new GitletException("Incorrect operands.");
+        }
+        Bisect bisect = Bisect.load(Repository.WORKTREE_DIR);
+        if (bisect == null) {
+            throw new GitletException("You are not bisecting.");
+        } else if (!bisect.ready()) {
+            throw new GitletException("Waiting for both good and bad "
+                                      + "commits.");
+        }
+        boolean done = false;
+        while (!done) {
+            System.out.println("running " + String.join(" ", command));
+            int status = Bisect.test(Repository.CWD, command);
+            String term = Bisect.term(status);
+            if (term == null) {
+                throw Utils.error("The test exited with status %d; "
+                                  + "stopping the bisect.", status);
+            }
+            try (RepositoryLock lock =
+                     RepositoryLock.exclusive(Repository.GITLET_DIR)) {
+                File myRepo = Repository.REPO_FILE;
+                myRepository = Repository.load(Repository.GITLET_DIR);
+                done = myRepository.bisect(new String[] {term});
+                Utils.writeObject(myRepo, myRepository);
+            }
+        }
     }
+
     /** Returns true if COMMAND is a valid Gitlet command. */
     private static boolean isValid(String command) {
         return validCommands.contains(command);
@@ -100,12 +244,24 @@ public class Main {
     /** An array of Strings of all the valid gitlet commands. */
     private static String[] validCommandsArray = new String[] {"init", "add",
         "commit", "rm", "log", "global-log", "find", "status", "checkout",
-        "branch", "rm-branch", "reset", "merge"};
+        "branch", "rm-branch", "reset", "merge", "rev-list", "is-ancestor",
+        "add-remote", "rm-remote", "push", "fetch", "pull", "clone",
+        "sparse-checkout", "cherry-pick", "rebase", "fsck", "maintenance",
+        "fast-import", "fast-export", "archive", "worktree", "bisect",
+        "reflog", "blame", "grep"};
 
     /** A String HashSet of all the valid Gitlet commands. */
     private static HashSet<String> validCommands =
             new HashSet<>(Arrays.asList(validCommandsArray));
 
+    /** The commands that never change the repository, which run under a
+     *  shared lock and do not write it back. */
+    private static HashSet<String> readOnlyCommands =
+            new HashSet<>(Arrays.asList("log", "global-log", "find",
+                                        "status", "fsck", "fast-export",
+                                        "archive", "reflog",
+                                        "blame", "grep"));
+
     /** A Gitlet repository. */
     private static Repository myRepository;
 
@@ -0,0 +1,455 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Housekeeping of a repository that commands leave for later, run in
+ *  a separate process so that no command waits for it.  Commands that
+ *  change the repository only bump counters, kept in .gitlet/maintenance:
+ *  <ul>
+ *  <li> dead-blobs, the staged blobs that were replaced or unstaged.
+ *       They are no longer deleted on the spot, since a commit may use
+ *       the same contents; the prune task deletes every blob that no
+ *       commit uses and that is not staged.
+ *  <li> unindexed-commits, the commits that a command had to add to the
+ *       commit graph as it went, as in repositories made before it
+ *       existed.  The commit-graph task adds all that are missing.
+ *  <li> objects, the objects written.  The clean task deletes the
+ *       temporary files that interrupted writes leave behind.
+ *  <li> loose-refs, the branch updates written as loose refs.  The
+ *       pack-refs task folds them back into packed-refs.
+ *  </ul>
+ *  When a counter reaches the threshold of its task, the command, after
+ *  releasing the repository lock, starts "gitlet maintenance run --auto"
+ *  as a detached process at low priority, and does not wait for it.
+ *  That process holds .gitlet/maintenance.lock, so only one runs at a
+ *  time.  It reads the object store without the repository lock, which
+ *  is safe because objects never change once written, and takes the
+ *  exclusive lock only for the short step that changes anything.
+ *  Setting GITLET_AUTO_MAINTENANCE to 0 turns automatic runs off.
+ *  @author Ramon Moreno
+ */
+class Maintenance {
+
+    /** The counters, each driving one task. */
+    enum Counter {
+        /** Staged blobs given up, which prune may delete. */
+        DEAD_BLOBS("dead-blobs", "prune", 64),
+        /** Commits added to the commit graph lazily. */
+        UNINDEXED_COMMITS("unindexed-commits", "commit-graph", 32),
+        /** Objects written, which may have left temporary files. */
+        OBJECTS("objects", "clean", 4096),
+        /** Branch updates written as loose refs. */
+        LOOSE_REFS("loose-refs", "pack-refs", 256);
+
+        /** A counter named NAME that makes TASK due once it reaches
+         *  THRESHOLD. */
+        Counter(String name, String task, int threshold) {
+            _name = name;
+            _task = task;
+            _threshold = threshold;
+        }
+
+        /** Name of this counter. */
+        private final String _name;
+        /** Name of the task this counter makes due. */
+        private final String _task;
+        /** Value at which the task becomes due. */
+        private final int _threshold;
+    }
+
+    /** Adds N to COUNTER for the current command.  The counts are added
+     *  to those in the repository by save(). */
+    static synchronized void count(Counter counter, int n) {
+        PENDING[counter.ordinal()] += n;
+    }
+
+    /** Adds the counts of the current command to the counters of the
+     *  repository whose .gitlet directory is DIR, which the caller has
+     *  locked exclusively.  Returns true iff a task is now due and no
+     *  automatic run has been started recently, in which case the
+     *  caller should start one with spawn(). */
+    static synchronized boolean save(File dir) {
+        boolean changed = false;
+        for (int count : PENDING) {
+            changed |= count != 0;
+        }
+        if (!changed) {
+            return false;
+        }
+        Maintenance state = load(dir);
+        for (Counter counter : Counter.values()) {
+            state._counts[counter.ordinal()] += PENDING[counter.ordinal()];
+        }
+        Arrays.fill(PENDING, 0);
+        long now = System.currentTimeMillis();
+        boolean start = !state.due().isEmpty() && autoEnabled()
+            && now - state._spawned >= RESPAWN_MS;
+        if (start) {
+            state._spawned = now;
+        }
+        state.write(dir);
+        return start;
+    }
+
+    /** Starts "gitlet maintenance run --auto" on the repository whose
+     *  .gitlet directory is DIR in a process of its own, at the lowest
+     *  priority where the system allows it, and returns at once.  The
+     *  process outlives this one and its output is discarded. */
+    static void spawn(File dir) {
+        ArrayList<String> command = new ArrayList<>();
+        if (NICE.canExecute()) {
+            command.addAll(Arrays.asList(NICE.getPath(), "-n", "19"));
+        }
+        command.addAll(Arrays.asList(
+            Paths.get(System.getProperty("java.home"), "bin", "java")
+                .toString(),
+            "-XX:+UseSerialGC", "-cp", System.getProperty("java.class.path"),
+            Main.class.getName(), "maintenance", "run", "--auto"));
+        try {
+            new ProcessBuilder(command)
+                .directory(dir.getAbsoluteFile().getParentFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        } catch (IOException excp) {
+            /* Maintenance is only an optimization; try again later. */
+        }
+    }
+
+    /** Carries out "maintenance ARGS" on the repository whose .gitlet
+     *  directory is DIR: "run" runs every task, "run --auto" only those
+     *  that are due, and "status" prints the counters. */
+    static void command(File dir, String... args) {
+        if (args.length == 1 && args[0].equals("status")) {
+            status(dir, System.out);
+        } else if (args.length == 1 && args[0].equals("run")) {
+            run(dir, false, System.out);
+        } else if (args.length == 2 && args[0].equals("run")
+                   && args[1].equals("--auto")) {
+            run(dir, true, System.out);
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Prints the counters of the repository whose .gitlet directory is
+     *  DIR on OUT, one line per task giving its counter, the counter's
+     *  value and the threshold at which the task is due, then when
+     *  maintenance last ran and whether it is running now. */
+    static void status(File dir, PrintStream out) {
+        Maintenance state;
+        try (RepositoryLock lock = RepositoryLock.shared(dir)) {
+            state = load(dir);
+        }
+        for (Counter counter : Counter.values()) {
+            out.println(counter._task + " " + counter._name + " "
+                        + state._counts[counter.ordinal()] + " "
+                        + counter._threshold);
+        }
+        out.println("last-run " + (state._lastRun == 0 ? "never"
+                    : new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z")
+                        .format(new Date(state._lastRun))));
+        boolean running;
+        try (RepositoryLock lock =
+                 RepositoryLock.acquire(dir, LOCK_FILE, true, 0)) {
+            running = false;
+        } catch (GitletException excp) {
+            running = true;
+        }
+        out.println("running " + (running ? "yes" : "no"));
+    }
+
+    /** Runs the maintenance tasks of the repository whose .gitlet
+     *  directory is DIR, only those that are due if AUTO, and reports
+     *  what they did on OUT.  Does nothing if AUTO and another run is
+     *  under way. */
+    static void run(File dir, boolean auto, PrintStream out) {
+        RepositoryLock running;
+        try {
+            running = RepositoryLock.acquire(dir, LOCK_FILE, false, 0);
+        } catch (GitletException excp) {
+            if (auto) {
+                return;
+            }
+            throw new GitletException("Maintenance is already running.");
+        }
+        try (RepositoryLock held = running) {
+            Set<String> tasks = new HashSet<>();
+            if (auto) {
+                try (RepositoryLock lock = RepositoryLock.shared(dir)) {
+                    tasks.addAll(load(dir).due());
+                }
+            } else {
+                for (Counter counter : Counter.values()) {
+                    tasks.add(counter._task);
+                }
+            }
+            if (tasks.isEmpty()) {
+                return;
+            }
+            Prune prune = tasks.contains(Counter.DEAD_BLOBS._task)
+                ? new Prune(dir) : null;
+            try (RepositoryLock lock = RepositoryLock.exclusive(dir)) {
+                Maintenance state = load(dir);
+                if (prune != null) {
+                    out.println("prune: deleted " + prune.finish()
+                                + " unused blobs");
+                    state._counts[Counter.DEAD_BLOBS.ordinal()] = 0;
+                }
+                if (tasks.contains(Counter.UNINDEXED_COMMITS._task)) {
+                    out.println("commit-graph: added " + indexCommits(dir)
+                                + " commits");
+                    state._counts[Counter.UNINDEXED_COMMITS.ordinal()] = 0;
+                }
+                if (tasks.contains(Counter.OBJECTS._task)) {
+                    out.println("clean: deleted " + cleanTemporaryFiles(dir)
+                                + " temporary files");
+                    state._counts[Counter.OBJECTS.ordinal()] = 0;
+                }
+                if (tasks.contains(Counter.LOOSE_REFS._task)) {
+                    out.println("pack-refs: packed " + new Refs(dir).pack()
+                                + " loose refs");
+                    state._counts[Counter.LOOSE_REFS.ordinal()] = 0;
+                }
+                state._lastRun = System.currentTimeMillis();
+                state._spawned = 0;
+                Arrays.fill(PENDING, 0);
+                state.write(dir);
+            }
+        }
+    }
+
+    /** The prune task.  It is made in two steps: the constructor finds
+     *  the blobs no commit uses without holding the repository lock, and
+     *  finish(), under the exclusive lock, rechecks them against the
+     *  commits written meanwhile and the staging area before deleting
+     *  them. */
+    private static class Prune {
+
+        /** Finds the unused blobs of the repository whose .gitlet
+         *  directory is DIR. */
+        Prune(File dir) {
+            _dir = dir;
+            List<String> blobs = Utils.plainFilenamesIn(
+                Utils.join(dir, Repository.BLOBS_DIR.getName()));
+            if (blobs != null) {
+                _unused.addAll(blobs);
+            }
+            unmark(commitIDs(dir));
+        }
+
+        /** Deletes the blobs that are still unused, by commits or by the
+         *  staging area of any working tree, which the caller has locked
+         *  the repository for, along with their cached blame, and returns
+         *  how many there were. */
+        int finish() {
+            ArrayList<String> added = new ArrayList<>(commitIDs(_dir));
+            added.removeAll(_seen);
+            unmark(added);
+            ArrayList<File> worktrees = new ArrayList<>();
+            worktrees.add(_dir);
+            Worktree.prune(_dir);
+            for (Worktree worktree : Worktree.list(_dir)) {
+                worktrees.add(worktree.admin());
+            }
+            for (File worktree : worktrees) {
+                FileMap staged = StagingIndex.load(worktree).additions();
+                for (String path : staged.keySet()) {
+                    _unused.remove(staged.get(path).toHex());
+                }
+            }
+            int deleted = 0;
+            for (String blob : _unused) {
+                File file =
+                    Utils.join(_dir, Repository.BLOBS_DIR.getName(), blob);
+                if (blob.length() == Utils.UID_LENGTH && file.delete()) {
+                    deleted += 1;
+                }
+            }
+            Blame.prune(_dir);
+            return deleted;
+        }
+
+        /** Removes the blobs used by the commits UIDS from the unused
+         *  ones, reading the commits in parallel. */
+        private void unmark(List<String> uids) {
+            _seen.addAll(uids);
+            uids.parallelStream().forEach(uid -> {
+                FileMap files =
+                    Commit.read(Repository.commitFile(_dir, uid)).getMyFiles();
+                for (String path : files.keySet()) {
+                    _unused.remove(files.get(path).toHex());
+                }
+            });
+        }
+
+        /** The .gitlet directory of the repository pruned. */
+        private final File _dir;
+        /** The commits read so far. */
+        private final HashSet<String> _seen = new HashSet<>();
+        /** The local blobs no commit read so far uses. */
+        private final Set<String> _unused = ConcurrentHashMap.newKeySet();
+    }
+
+    /** Adds every commit of the repository whose .gitlet directory is DIR
+     *  that the commit graph lacks to it.  Returns the number added. */
+    private static int indexCommits(File dir) {
+        CommitGraph graph = CommitGraph.load(dir);
+        int before = graph.size();
+        for (String uid : commitIDs(dir)) {
+            graph.position(uid);
+        }
+        return graph.size() - before;
+    }
+
+    /** Deletes the temporary files in the repository whose .gitlet
+     *  directory is DIR and in its object, loose ref and blame cache
+     *  directories, which only an interrupted write leaves behind while
+     *  the caller holds the exclusive lock.  Returns the number deleted. */
+    private static int cleanTemporaryFiles(File dir) {
+        int deleted = 0;
+        for (File directory : new File[] {
+                dir, Utils.join(dir, Repository.BLOBS_DIR.getName()),
+                Utils.join(dir, Repository.COMMITS_DIR.getName()),
+                Utils.join(dir, Refs.LOOSE_DIR),
+                Utils.join(dir, Blame.CACHE_DIR) }) {
+            File[] files = directory.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".tmp")
+                    && file.delete()) {
+                    deleted += 1;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /** Returns the ids of the commits of the repository whose .gitlet
+     *  directory is DIR and of its alternates. */
+    private static List<String> commitIDs(File dir) {
+        HashSet<String> ids = new HashSet<>();
+        ArrayList<File> stores = new ArrayList<>();
+        stores.add(dir);
+        stores.addAll(Repository.alternates(dir));
+        for (File store : stores) {
+            List<String> names = Utils.plainFilenamesIn(
+                Utils.join(store, Repository.COMMITS_DIR.getName()));
+            if (names != null) {
+                for (String name : names) {
+                    if (name.length() == Utils.UID_LENGTH) {
+                        ids.add(name);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Returns the counters of the repository whose .gitlet directory is
+     *  DIR, all zero if it has none. */
+    private static Maintenance load(File dir) {
+        Maintenance state = new Maintenance();
+        File file = Utils.join(dir, STATE_FILE);
+        if (!file.exists()) {
+            return state;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(Utils.readContents(file)))) {
+            if (in.readInt() != MAGIC) {
+                return state;
+            }
+            state._lastRun = in.readLong();
+            state._spawned = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                String name = in.readUTF();
+                int value = in.readInt();
+                for (Counter counter : Counter.values()) {
+                    if (counter._name.equals(name)) {
+                        state._counts[counter.ordinal()] = value;
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            return new Maintenance();
+        }
+        return state;
+    }
+
+    /** Writes these counters to the repository whose .gitlet directory
+     *  is DIR.  They are only hints, so the file is not forced to
+     *  disk. */
+    private void write(File dir) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeLong(_lastRun);
+            out.writeLong(_spawned);
+            out.writeInt(Counter.values().length);
+            for (Counter counter : Counter.values()) {
+                out.writeUTF(counter._name);
+                out.writeInt(_counts[counter.ordinal()]);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.writeContents(Utils.join(dir, STATE_FILE), bytes.toByteArray());
+    }
+
+    /** Returns the names of the tasks whose counters have reached their
+     *  thresholds. */
+    private Set<String> due() {
+        HashSet<String> result = new HashSet<>();
+        for (Counter counter : Counter.values()) {
+            if (_counts[counter.ordinal()] >= counter._threshold) {
+                result.add(counter._task);
+            }
+        }
+        return result;
+    }
+
+    /** Returns false iff GITLET_AUTO_MAINTENANCE is 0. */
+    private static boolean autoEnabled() {
+        String value = System.getenv("GITLET_AUTO_MAINTENANCE");
+        return value == null || !value.trim().equals("0");
+    }
+
+    /** Name of the file holding the counters. */
+    static final String STATE_FILE = "maintenance";
+    /** Name of the file locked while maintenance runs. */
+    static final String LOCK_FILE = "maintenance.lock";
+    /** First int of the counters file. */
+    private static final int MAGIC = 0x474d4e31;
+    /** Time after starting an automatic run before another is started
+     *  while tasks are still due, in milliseconds. */
+    private static final long RESPAWN_MS = 10 * 60 * 1000;
+    /** The program that lowers the priority of the automatic run. */
+    private static final File NICE = new File("/usr/bin/nice");
+    /** The counts of the current command, not yet saved. */
+    private static final int[] PENDING = new int[Counter.values().length];
+
+    /** The value of each counter. */
+    private final int[] _counts = new int[Counter.values().length];
+    /** When maintenance last ran, in milliseconds since the epoch, or 0. */
+    private long _lastRun;
+    /** When the last automatic run was started, or 0 once it is done. */
+    private long _spawned;
+}
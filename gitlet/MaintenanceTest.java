@@ -0,0 +1,53 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Maintenance.
+ *  @author Ramon Moreno
+ */
+public class MaintenanceTest {
+
+    @Test
+    public void runDeletesOnlyUnusedBlobsAndTemporaryFiles()
+        throws IOException {
+        File dir = Files.createTempDirectory("maintenance").toFile();
+        try {
+            Utils.join(dir, "Blobs").mkdir();
+            Utils.join(dir, "Commits").mkdir();
+            ObjectId used = TestUtils.blob(dir, "used");
+            ObjectId staged = TestUtils.blob(dir, "staged");
+            ObjectId dead = TestUtils.blob(dir, "dead");
+            FileMap files = new FileMap();
+            files.put("a.txt", used);
+            Commit commit = new Commit(files, null, "root", false);
+            Utils.writeContents(Repository.commitFile(dir, commit.getMyUID()),
+                                commit.toBytes());
+            StagingIndex.load(dir).add("b.txt", staged, null);
+            File temp = Utils.tempFile(Repository.blobFile(dir, used));
+            Utils.writeContents(temp, "partial");
+
+            ByteArrayOutputStream report = new ByteArrayOutputStream();
+            Maintenance.run(dir, false, new PrintStream(report, true));
+            assertTrue(report.toString().contains("prune: deleted 1 "));
+            assertTrue(report.toString().contains("commit-graph: added 1 "));
+            assertTrue(Repository.blobFile(dir, used).exists());
+            assertTrue(Repository.blobFile(dir, staged).exists());
+            assertFalse(Repository.blobFile(dir, dead).exists());
+            assertFalse(temp.exists());
+
+            ByteArrayOutputStream status = new ByteArrayOutputStream();
+            Maintenance.status(dir, new PrintStream(status, true));
+            assertTrue(status.toString().contains("prune dead-blobs 0 64"));
+            assertFalse(status.toString().contains("last-run never"));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
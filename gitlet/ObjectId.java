@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/** The 20-byte SHA-1 name of a blob or commit, held as three primitive
+ *  words instead of a 40-character String.  ObjectIds order the same way
+ *  as their hexadecimal numerals.
+ *  @author Ramon Moreno
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** Length of an id in bytes. */
+    static final int LENGTH = 20;
+
+    /** Number of ints needed to hold an id. */
+    static final int INTS = LENGTH / 4;
+
+    /** The id whose bytes are packed, big-endian, into W0, W1 and the top
+     *  half of W2. */
+    private ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the id denoted by the 40-digit hexadecimal numeral HEX. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != 2 * LENGTH) {
+            throw new IllegalArgumentException("not an object id: " + hex);
+        }
+        return new ObjectId(hexWord(hex, 0, 16), hexWord(hex, 16, 16),
+                            (int) hexWord(hex, 32, 8));
+    }
+
+    /** Returns the id held in BYTES[OFFSET .. OFFSET + LENGTH - 1]. */
+    static ObjectId fromBytes(byte[] bytes, int offset) {
+        return new ObjectId(word(bytes, offset, 8), word(bytes, offset + 8, 8),
+                            (int) word(bytes, offset + 16, 4));
+    }
+
+    /** Returns the id held in INTS[OFFSET .. OFFSET + INTS - 1], as
+     *  written there by copyTo. */
+    static ObjectId fromInts(int[] ints, int offset) {
+        return new ObjectId(((long) ints[offset] << 32)
+                            | (ints[offset + 1] & 0xffffffffL),
+                            ((long) ints[offset + 2] << 32)
+                            | (ints[offset + 3] & 0xffffffffL),
+                            ints[offset + 4]);
+    }
+
+    /** Stores this id in INTS[OFFSET .. OFFSET + INTS - 1]. */
+    void copyTo(int[] ints, int offset) {
+        ints[offset] = (int) (_w0 >>> 32);
+        ints[offset + 1] = (int) _w0;
+        ints[offset + 2] = (int) (_w1 >>> 32);
+        ints[offset + 3] = (int) _w1;
+        ints[offset + 4] = _w2;
+    }
+
+    /** Stores this id in BYTES[OFFSET .. OFFSET + LENGTH - 1]. */
+    void copyTo(byte[] bytes, int offset) {
+        for (int i = 0; i < 8; i += 1) {
+            bytes[offset + i] = (byte) (_w0 >>> (56 - 8 * i));
+            bytes[offset + 8 + i] = (byte) (_w1 >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i += 1) {
+            bytes[offset + 16 + i] = (byte) (_w2 >>> (24 - 8 * i));
+        }
+    }
+
+    /** Returns true iff the id stored in INTS at OFFSET is this one. */
+    boolean equalsAt(int[] ints, int offset) {
+        return ints[offset] == (int) (_w0 >>> 32)
+            && ints[offset + 1] == (int) _w0
+            && ints[offset + 2] == (int) (_w1 >>> 32)
+            && ints[offset + 3] == (int) _w1
+            && ints[offset + 4] == _w2;
+    }
+
+    /** Returns the bytes of this id. */
+    byte[] toBytes() {
+        byte[] result = new byte[LENGTH];
+        copyTo(result, 0);
+        return result;
+    }
+
+    /** Returns this id as a 40-digit hexadecimal numeral. */
+    String toHex() {
+        return Hashing.toHex(toBytes());
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int c = Long.compareUnsigned(_w0, other._w0);
+        if (c == 0) {
+            c = Long.compareUnsigned(_w1, other._w1);
+        }
+        if (c == 0) {
+            c = Integer.compareUnsigned(_w2, other._w2);
+        }
+        return c;
+    }
+
+    /** Returns the big-endian value of the N bytes at BYTES[OFFSET]. */
+    private static long word(byte[] bytes, int offset, int n) {
+        long result = 0;
+        for (int i = 0; i < n; i += 1) {
+            result = (result << 8) | (bytes[offset + i] & 0xff);
+        }
+        return result;
+    }
+
+    /** Returns the value of the N hexadecimal digits at HEX[OFFSET]. */
+    private static long hexWord(String hex, int offset, int n) {
+        long result = 0;
+        for (int i = 0; i < n; i += 1) {
+            result = (result << 4) | Hashing.hexValue(hex.charAt(offset + i));
+        }
+        return result;
+    }
+
+    /** Bytes 0-7. */
+    private final long _w0;
+    /** Bytes 8-15. */
+    private final long _w1;
+    /** Bytes 16-19. */
+    private final int _w2;
+}
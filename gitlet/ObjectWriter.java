@@ -0,0 +1,234 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/** Writes blobs and commits to the object store in the background.  A
+ *  command hands each new object to write, which returns as soon as the
+ *  object is queued, and calls flush once at the end to wait until
+ *  everything it queued is on disk.  Worker threads take queued objects
+ *  in batches.  Each object is written to a temporary file, forced to
+ *  disk and renamed into place, so a crash never leaves a partial object
+ *  under its real name; then the directories of the whole batch are
+ *  forced once, so that many objects share one directory sync.  The
+ *  queue is bounded, so a command producing objects faster than they
+ *  can be written waits for the workers instead of holding them all in
+ *  memory.
+ *
+ *  An object is visible under its real name once renamed, before it is
+ *  durable.  Code looking an object up calls await first, so that an
+ *  object queued earlier in the same command is always found.
+ *  @author Ramon Moreno
+ */
+class ObjectWriter {
+
+    /** Queues CONTENTS to be written to FILE, unless FILE is already
+     *  queued. */
+    static void write(File file, byte[] contents) {
+        File key = file.getAbsoluteFile();
+        CountDownLatch written = new CountDownLatch(1);
+        if (PENDING.putIfAbsent(key, written) != null) {
+            return;
+        }
+        start();
+        Maintenance.count(Maintenance.Counter.OBJECTS, 1);
+        synchronized (ObjectWriter.class) {
+            _unsynced += 1;
+        }
+        try {
+            QUEUE.put(new Job(key, contents, written));
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("interrupted writing "
+                                               + file.getPath());
+        }
+    }
+
+    /** Returns true iff FILE is queued and not yet in place. */
+    static boolean pending(File file) {
+        return PENDING.containsKey(file.getAbsoluteFile());
+    }
+
+    /** Waits until FILE, if it is queued, is in place under its name. */
+    static void await(File file) {
+        if (PENDING.isEmpty()) {
+            return;
+        }
+        CountDownLatch written = PENDING.get(file.getAbsoluteFile());
+        if (written == null) {
+            return;
+        }
+        try {
+            written.await();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("interrupted reading "
+                                               + file.getPath());
+        }
+    }
+
+    /** Waits until every object queued so far is durable.  Throws
+     *  IllegalArgumentException if any of them could not be written. */
+    static synchronized void flush() {
+        try {
+            while (_unsynced > 0) {
+                ObjectWriter.class.wait();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException("interrupted flushing "
+                                               + "objects");
+        }
+        if (_failure != null) {
+            String message = _failure;
+            _failure = null;
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    /** Starts the workers if they are not running yet. */
+    private static synchronized void start() {
+        if (_started) {
+            return;
+        }
+        _started = true;
+        for (int i = 0; i < WORKERS; i += 1) {
+            Thread worker = new Thread(ObjectWriter::work,
+                                       "gitlet-object-writer-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /** The loop of a worker: takes the queued jobs in batches and writes
+     *  them. */
+    private static void work() {
+        ArrayList<Job> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(QUEUE.take());
+            } catch (InterruptedException excp) {
+                return;
+            }
+            QUEUE.drainTo(batch, BATCH_SIZE - 1);
+            String failure = writeBatch(batch);
+            synchronized (ObjectWriter.class) {
+                _unsynced -= batch.size();
+                if (failure != null && _failure == null) {
+                    _failure = failure;
+                }
+                ObjectWriter.class.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /** Writes the objects of BATCH and forces them and their directories
+     *  to disk.  Returns null on success, or a message describing the
+     *  first failure. */
+    private static String writeBatch(ArrayList<Job> batch) {
+        String failure = null;
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (Job job : batch) {
+            try {
+                if (!job._file.exists()) {
+                    writeDurably(job._file, job._contents);
+                    dirs.add(job._file.getParentFile());
+                }
+            } catch (IOException excp) {
+                if (failure == null) {
+                    failure = "cannot write " + job._file.getPath() + ": "
+                        + excp.getMessage();
+                }
+            } finally {
+                PENDING.remove(job._file);
+                job._written.countDown();
+            }
+        }
+        for (File dir : dirs) {
+            Utils.syncDirectory(dir);
+        }
+        return failure;
+    }
+
+    /** Writes CONTENTS to a temporary file beside FILE, forces it to disk
+     *  and renames it to FILE. */
+    private static void writeDurably(File file, byte[] contents)
+        throws IOException {
+        long start = Trace.start();
+        File temp = Utils.tempFile(file);
+        try {
+            try (FileChannel channel = FileChannel.open(
+                     temp.toPath(), StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(contents);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temp.delete();
+        }
+        Trace.record(Trace.Stat.FILE_WRITE, start, contents.length,
+                     file.getPath());
+    }
+
+    /** One queued object. */
+    private static class Job {
+        /** An object with contents CONTENTS to go in FILE, whose latch
+         *  WRITTEN is released once it is in place. */
+        Job(File file, byte[] contents, CountDownLatch written) {
+            _file = file;
+            _contents = contents;
+            _written = written;
+        }
+
+        /** Where the object goes. */
+        private final File _file;
+        /** Its contents. */
+        private final byte[] _contents;
+        /** Released once _file is in place. */
+        private final CountDownLatch _written;
+    }
+
+    /** Number of worker threads. */
+    private static final int WORKERS =
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /** Most objects written by one worker between directory syncs. */
+    private static final int BATCH_SIZE = 64;
+    /** Most objects waiting to be written. */
+    private static final int QUEUE_CAPACITY = 256;
+
+    /** The queued objects. */
+    private static final BlockingQueue<Job> QUEUE =
+        new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    /** Latch of each queued object not yet in place, by absolute file. */
+    private static final ConcurrentHashMap<File, CountDownLatch> PENDING =
+        new ConcurrentHashMap<>();
+    /** Whether the workers are running. */
+    private static boolean _started;
+    /** Number of queued objects not yet durable. */
+    private static int _unsynced;
+    /** The first failure not yet reported by flush, or null. */
+    private static String _failure;
+}
@@ -0,0 +1,89 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of ObjectWriter.
+ *  @author Ramon Moreno
+ */
+public class ObjectWriterTest {
+
+    /** Returns every file under DIR whose name ends in ".tmp". */
+    private static ArrayList<File> temporaries(File dir) {
+        ArrayList<File> result = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    result.addAll(temporaries(file));
+                } else if (file.getName().endsWith(".tmp")) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void queuedObjectsAreReadableAndDurable() throws IOException {
+        File dir = Files.createTempDirectory("objects").toFile();
+        try {
+            ArrayList<File> files = new ArrayList<>();
+            for (int i = 0; i < 1000; i += 1) {
+                File sub = Utils.join(dir, String.format("%02x", i % 16));
+                sub.mkdir();
+                File file = Utils.join(sub, "object" + i);
+                ObjectWriter.write(file,
+                                   ("contents " + i)
+                                   .getBytes(StandardCharsets.UTF_8));
+                files.add(file);
+            }
+            for (int i = 0; i < files.size(); i += 1) {
+                ObjectWriter.await(files.get(i));
+                assertFalse(ObjectWriter.pending(files.get(i)));
+                assertEquals("contents " + i,
+                             Utils.readContentsAsString(files.get(i)));
+            }
+
+            ObjectWriter.write(files.get(0),
+                               "other".getBytes(StandardCharsets.UTF_8));
+            ObjectWriter.flush();
+            for (int i = 0; i < files.size(); i += 1) {
+                assertFalse(ObjectWriter.pending(files.get(i)));
+                assertEquals("contents " + i,
+                             Utils.readContentsAsString(files.get(i)));
+            }
+            assertTrue(temporaries(dir).isEmpty());
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void flushReportsAFailedWrite() throws IOException {
+        File dir = Files.createTempDirectory("objects").toFile();
+        try {
+            File missing = Utils.join(dir, "missing", "object");
+            ObjectWriter.write(missing,
+                               "contents".getBytes(StandardCharsets.UTF_8));
+            try {
+                ObjectWriter.flush();
+                fail("expected the failed write to be reported");
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().contains(missing.getPath()));
+            }
+            assertFalse(ObjectWriter.pending(missing));
+            assertFalse(missing.exists());
+            ObjectWriter.flush();
+            assertTrue(temporaries(dir).isEmpty());
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
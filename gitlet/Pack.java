@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** Transfers objects between two repositories on the same machine.  The
+ *  sending side negotiates with its commit graph: the receiver names the
+ *  commits it has, and only the commits reachable from the wanted one but
+ *  from none of those are sent, together with the blobs they introduced
+ *  that the receiver lacks.  Everything travels as one compressed pack
+ *  file, written into the receiving .gitlet directory and unpacked
+ *  there, so the work done is proportional to the size of the change.
+ *  @author Ramon Moreno
+ */
+class Pack {
+
+    /** Sends the commits reachable from WANT but from none of HAVES, and
+     *  the blobs they need, from the repository whose .gitlet directory
+     *  is SOURCE to the one whose .gitlet directory is TARGET.  Commits
+     *  in HAVES that SOURCE does not know are ignored.  Returns the number
+     *  of commits sent. */
+    static int send(File source, File target, String want,
+                    Collection<String> haves) {
+        ReachabilityIndex index =
+            ReachabilityIndex.load(CommitGraph.load(source));
+        CommitGraph graph = index.graph();
+        Bitmap missing = index.reachable(want);
+        for (String have : haves) {
+            if (graph.contains(have)) {
+                missing.andNot(index.reachable(have));
+            }
+        }
+        int[] positions = missing.toDescendingArray();
+        if (positions.length == 0) {
+            return 0;
+        }
+        File pack = Utils.join(target, PACK_NAME);
+        try {
+            write(pack, source, target, graph, positions);
+            unpack(pack, target);
+        } finally {
+            pack.delete();
+        }
+        return positions.length;
+    }
+
+    /** Writes to PACK the commits at POSITIONS of GRAPH, newest first, in
+     *  the repository whose .gitlet directory is SOURCE, followed by the
+     *  blobs those commits introduced that TARGET does not have. */
+    private static void write(File pack, File source, File target,
+                              CommitGraph graph, int[] positions) {
+        TreeSet<ObjectId> blobs = new TreeSet<>();
+        try (DataOutputStream out = new DataOutputStream(
+                 new DeflaterOutputStream(new BufferedOutputStream(
+                     new FileOutputStream(pack))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(positions.length);
+            for (int k = positions.length - 1; k >= 0; k -= 1) {
+                String uid = graph.uid(positions[k]);
+                byte[] contents =
+                    Utils.readContents(Repository.commitFile(source, uid));
+                Commit commit = Commit.fromBytes(contents);
+                FileMap files = commit.getMyFiles();
+                FileMap parentFiles = new FileMap();
+                if (commit.parent1UID() != null) {
+                    parentFiles = Commit.read(
+                        Repository.commitFile(source, commit.parent1UID()))
+                        .getMyFiles();
+                }
+                TreeSet<String> changed =
+                    CommitGraph.changedPaths(files, parentFiles);
+                for (String path : changed) {
+                    ObjectId id = files.get(path);
+                    if (id != null
+                        && !Repository.blobFile(target, id).exists()) {
+                        blobs.add(id);
+                    }
+                }
+                out.writeUTF(uid);
+                out.writeInt(changed.size());
+                for (String path : changed) {
+                    out.writeUTF(path);
+                }
+                out.writeInt(contents.length);
+                out.write(contents);
+            }
+            out.writeInt(blobs.size());
+            for (ObjectId id : blobs) {
+                byte[] contents =
+                    Utils.readContents(Repository.blobFile(source, id));
+                out.write(id.toBytes());
+                out.writeInt(contents.length);
+                out.write(contents);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Stores the objects in PACK in the repository whose .gitlet
+     *  directory is TARGET.  Blobs are queued before the commits that use
+     *  them, and commits parents first, and the commits are added to the
+     *  commit graph only once every object is durable, so an interrupted
+     *  unpack never leaves a commit whose history is incomplete. */
+    private static void unpack(File pack, File target) {
+        try (DataInputStream in = new DataInputStream(
+                 new InflaterInputStream(new BufferedInputStream(
+                     new FileInputStream(pack))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("corrupt pack");
+            }
+            int commitCount = in.readInt();
+            ArrayList<String> uids = new ArrayList<>();
+            ArrayList<ArrayList<String>> changes = new ArrayList<>();
+            ArrayList<byte[]> commits = new ArrayList<>();
+            for (int i = 0; i < commitCount; i += 1) {
+                uids.add(in.readUTF());
+                int changedCount = in.readInt();
+                ArrayList<String> changed = new ArrayList<>(changedCount);
+                for (int j = 0; j < changedCount; j += 1) {
+                    changed.add(in.readUTF());
+                }
+                changes.add(changed);
+                byte[] contents = new byte[in.readInt()];
+                in.readFully(contents);
+                commits.add(contents);
+            }
+            int blobCount = in.readInt();
+            byte[] id = new byte[ObjectId.LENGTH];
+            for (int i = 0; i < blobCount; i += 1) {
+                in.readFully(id);
+                byte[] contents = new byte[in.readInt()];
+                in.readFully(contents);
+                File blob = Repository.blobFile(target,
+                                                ObjectId.fromBytes(id, 0));
+                if (!blob.exists()) {
+                    ObjectWriter.write(blob, contents);
+                }
+            }
+            HashSet<String> stored = new HashSet<>();
+            ArrayList<Integer> added = new ArrayList<>();
+            for (int i = 0; i < commitCount; i += 1) {
+                File commitFile = Repository.commitFile(target, uids.get(i));
+                if (commitFile.exists() || !stored.add(uids.get(i))) {
+                    continue;
+                }
+                ObjectWriter.write(commitFile, commits.get(i));
+                added.add(i);
+            }
+            ObjectWriter.flush();
+            CommitGraph.Appender graph = new CommitGraph.Appender(target);
+            for (int i : added) {
+                graph.add(Commit.fromBytes(commits.get(i)), changes.get(i));
+            }
+            graph.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Name of a pack file while it is being transferred. */
+    private static final String PACK_NAME = "incoming.pack";
+    /** First int of a pack. */
+    private static final int MAGIC = 0x47504b31;
+}
@@ -0,0 +1,299 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** A list of path patterns in the style of .gitignore, used for
+ *  .gitletignore files and to choose which paths are in a sparse
+ *  checkout.  Paths use forward slashes and are relative to the working
+ *  directory.  In a pattern, * matches any characters but a slash, **
+ *  any characters at all, and ? any one character but a slash.  A
+ *  pattern without a slash (other than a trailing one) matches the last
+ *  component of a path at any depth; otherwise it is anchored at the
+ *  working directory.  A trailing slash makes a pattern match everything
+ *  inside the directories it names, and a leading ! excludes what the
+ *  pattern matches.  When several patterns match a path, the last one
+ *  decides.
+ *
+ *  All the patterns are compiled together into one automaton: an NFA
+ *  with a handful of states per pattern, turned into a DFA lazily, one
+ *  state and transition at a time as paths are matched.  Matching a
+ *  path therefore costs one table lookup per character, however many
+ *  patterns there are.
+ *  @author Ramon Moreno
+ */
+class PathPatterns {
+
+    /** The patterns PATTERNS, in order.  Blank lines and lines starting
+     *  with # are ignored. */
+    PathPatterns(List<String> patterns) {
+        for (String line : patterns) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean negated = pattern.startsWith("!");
+            if (negated) {
+                pattern = pattern.substring(1);
+            }
+            _negated.add(negated);
+            compile(pattern, _negated.size() - 1);
+        }
+        _start = state(closure(new int[] {}, _starts));
+    }
+
+    /** Returns true iff PATH is matched by these patterns. */
+    boolean matches(String path) {
+        int state = _start;
+        for (int i = 0; i < path.length() && state != _dead; i += 1) {
+            state = step(state, path.charAt(i));
+        }
+        int decision = _decisions.get(state);
+        return decision >= 0 && !_negated.get(decision);
+    }
+
+    /** Returns true iff the directory DIR is matched by these patterns,
+     *  so that nothing inside it needs to be looked at. */
+    boolean matchesDirectory(String dir) {
+        return matches(dir + "/");
+    }
+
+    /** Returns the number of patterns. */
+    int size() {
+        return _negated.size();
+    }
+
+    /* NFA CONSTRUCTION.  Each NFA state may have a self loop, one edge to
+     * the next state and epsilon edges to later states. */
+
+    /** Adds the NFA of PATTERN, the INDEXth pattern. */
+    private void compile(String pattern, int index) {
+        boolean directory = pattern.endsWith("/");
+        if (directory) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        _starts = Arrays.copyOf(_starts, _starts.length + 1);
+        _starts[_starts.length - 1] = _loops.size();
+        if (!anchored) {
+            anySubdirectory();
+        }
+        for (int i = 0; i < pattern.length(); i += 1) {
+            char c = pattern.charAt(i);
+            if (c == '*' && i + 1 < pattern.length()
+                && pattern.charAt(i + 1) == '*') {
+                i += 1;
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '/') {
+                    i += 1;
+                    anySubdirectory();
+                } else {
+                    addState(ANY, NONE, (char) 0, true, -1);
+                }
+            } else if (c == '*') {
+                addState(NOT_SLASH, NONE, (char) 0, true, -1);
+            } else if (c == '?') {
+                addState(NONE, NOT_SLASH, (char) 0, false, -1);
+            } else {
+                addState(NONE, CHAR, c, false, -1);
+            }
+        }
+        if (directory) {
+            addState(NONE, CHAR, '/', false, -1);
+            addState(ANY, NONE, (char) 0, false, index);
+        } else {
+            addState(NONE, CHAR, '/', false, index);
+            addState(ANY, NONE, (char) 0, false, index);
+        }
+    }
+
+    /** Adds states matching (.../)?, that is, nothing or anything
+     *  ending in a slash.  The first state skips either to the state after
+     *  both or to the second, which loops on anything and leaves only on
+     *  a slash. */
+    private void anySubdirectory() {
+        int s = _loops.size();
+        addState(NONE, NONE, (char) 0, new int[] {s + 1, s + 2}, -1);
+        addState(ANY, CHAR, '/', false, -1);
+    }
+
+    /** Adds an NFA state with self loop LOOP, an edge of kind EDGE (on
+     *  character C if EDGE is CHAR) to the next state, an epsilon edge to
+     *  the next state iff EPSILON, and accepting for pattern ACCEPT, or
+     *  for none if ACCEPT is -1. */
+    private void addState(int loop, int edge, char c, boolean epsilon,
+                          int accept) {
+        int next = _loops.size() + 1;
+        addState(loop, edge, c, epsilon ? new int[] {next} : new int[] {},
+                 accept);
+    }
+
+    /** Adds an NFA state as for addState(LOOP, EDGE, C, _, ACCEPT), with
+     *  epsilon edges to the states EPSILONS. */
+    private void addState(int loop, int edge, char c, int[] epsilons,
+                          int accept) {
+        _loops.add(loop);
+        _edges.add(edge);
+        _edgeChars.add(c);
+        _epsilons.add(epsilons);
+        _accepts.add(accept);
+    }
+
+    /** Returns true iff an edge of kind KIND on character C (for CHAR)
+     *  accepts the character X. */
+    private static boolean accepts(int kind, char c, char x) {
+        switch (kind) {
+        case ANY:
+            return true;
+        case NOT_SLASH:
+            return x != '/';
+        case CHAR:
+            return x == c;
+        default:
+            return false;
+        }
+    }
+
+    /* DFA CONSTRUCTION. */
+
+    /** Returns the sorted set of NFA states in SET together with STARTS
+     *  and every state reachable from them by epsilon edges. */
+    private int[] closure(int[] set, int[] starts) {
+        boolean[] in = new boolean[_loops.size()];
+        ArrayList<Integer> pending = new ArrayList<>();
+        for (int s : set) {
+            pending.add(s);
+        }
+        for (int s : starts) {
+            pending.add(s);
+        }
+        while (!pending.isEmpty()) {
+            int s = pending.remove(pending.size() - 1);
+            if (s >= in.length || in[s]) {
+                continue;
+            }
+            in[s] = true;
+            for (int t : _epsilons.get(s)) {
+                pending.add(t);
+            }
+        }
+        int count = 0;
+        for (boolean b : in) {
+            count += b ? 1 : 0;
+        }
+        int[] result = new int[count];
+        int n = 0;
+        for (int s = 0; s < in.length; s += 1) {
+            if (in[s]) {
+                result[n] = s;
+                n += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the DFA state for the set of NFA states SET, creating it if
+     *  needed. */
+    private int state(int[] set) {
+        String key = Arrays.toString(set);
+        Integer state = _states.get(key);
+        if (state != null) {
+            return state;
+        }
+        state = _sets.size();
+        _states.put(key, state);
+        _sets.add(set);
+        int decision = -1;
+        for (int s : set) {
+            decision = Math.max(decision, _accepts.get(s));
+        }
+        _decisions.add(decision);
+        int[] table = new int[ASCII];
+        Arrays.fill(table, UNKNOWN);
+        _tables.add(table);
+        _others.add(new HashMap<>());
+        if (set.length == 0) {
+            _dead = state;
+        }
+        return state;
+    }
+
+    /** Returns the DFA state reached from STATE on character X. */
+    private int step(int state, char x) {
+        if (x < ASCII) {
+            int next = _tables.get(state)[x];
+            if (next == UNKNOWN) {
+                next = move(state, x);
+                _tables.get(state)[x] = next;
+            }
+            return next;
+        }
+        Integer next = _others.get(state).get(x);
+        if (next == null) {
+            next = move(state, x);
+            _others.get(state).put(x, next);
+        }
+        return next;
+    }
+
+    /** Computes the DFA state reached from STATE on character X. */
+    private int move(int state, char x) {
+        int[] set = _sets.get(state);
+        int[] next = new int[2 * set.length];
+        int n = 0;
+        for (int s : set) {
+            if (accepts(_loops.get(s), (char) 0, x)) {
+                next[n] = s;
+                n += 1;
+            }
+            if (accepts(_edges.get(s), _edgeChars.get(s), x)) {
+                next[n] = s + 1;
+                n += 1;
+            }
+        }
+        return state(closure(Arrays.copyOf(next, n), new int[] {}));
+    }
+
+    /** Edge kinds. */
+    private static final int NONE = 0, CHAR = 1, NOT_SLASH = 2, ANY = 3;
+    /** Characters below this have a transition table entry. */
+    private static final int ASCII = 128;
+    /** Marks a transition not computed yet. */
+    private static final int UNKNOWN = -1;
+
+    /** Whether each pattern is negated. */
+    private final ArrayList<Boolean> _negated = new ArrayList<>();
+
+    /** First NFA state of each pattern. */
+    private int[] _starts = {};
+    /** Self loop kind of each NFA state. */
+    private final ArrayList<Integer> _loops = new ArrayList<>();
+    /** Kind of the edge from each NFA state to the next. */
+    private final ArrayList<Integer> _edges = new ArrayList<>();
+    /** Character of each CHAR edge. */
+    private final ArrayList<Character> _edgeChars = new ArrayList<>();
+    /** Targets of the epsilon edges of each NFA state. */
+    private final ArrayList<int[]> _epsilons = new ArrayList<>();
+    /** Pattern accepted by each NFA state, or -1. */
+    private final ArrayList<Integer> _accepts = new ArrayList<>();
+
+    /** DFA state of each set of NFA states, keyed by the set's text. */
+    private final HashMap<String, Integer> _states = new HashMap<>();
+    /** Set of NFA states of each DFA state. */
+    private final ArrayList<int[]> _sets = new ArrayList<>();
+    /** Last pattern matching at each DFA state, or -1. */
+    private final ArrayList<Integer> _decisions = new ArrayList<>();
+    /** Transitions on ASCII characters of each DFA state. */
+    private final ArrayList<int[]> _tables = new ArrayList<>();
+    /** Transitions on other characters of each DFA state. */
+    private final ArrayList<HashMap<Character, Integer>> _others =
+        new ArrayList<>();
+    /** The DFA start state. */
+    private final int _start;
+    /** The DFA state with no NFA states, or -1 if not built yet. */
+    private int _dead = -1;
+}
@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of PathPatterns.
+ *  @author Ramon Moreno
+ */
+public class PathPatternsTest {
+
+    /** Returns the patterns PATTERNS. */
+    private static PathPatterns of(String... patterns) {
+        return new PathPatterns(Arrays.asList(patterns));
+    }
+
+    @Test
+    public void wildcards() {
+        PathPatterns p = of("*.o", "/top.txt", "doc/*.md", "a/**/z", "?.c");
+        assertTrue(p.matches("main.o"));
+        assertTrue(p.matches("src/deep/main.o"));
+        assertFalse(p.matches("main.oo"));
+        assertTrue(p.matches("top.txt"));
+        assertFalse(p.matches("src/top.txt"));
+        assertTrue(p.matches("doc/readme.md"));
+        assertFalse(p.matches("doc/sub/readme.md"));
+        assertFalse(p.matches("src/doc/readme.md"));
+        assertTrue(p.matches("a/z"));
+        assertTrue(p.matches("a/b/c/z"));
+        assertFalse(p.matches("a/bz"));
+        assertTrue(p.matches("x.c"));
+        assertFalse(p.matches("xy.c"));
+    }
+
+    @Test
+    public void directoriesAndNegation() {
+        PathPatterns p = of("build/", "logs", "!logs/keep.txt", "# comment",
+                            "");
+        assertEquals(3, p.size());
+        assertTrue(p.matchesDirectory("build"));
+        assertTrue(p.matchesDirectory("sub/build"));
+        assertTrue(p.matches("build/out/a.class"));
+        assertFalse(p.matches("build"));
+        assertTrue(p.matches("logs"));
+        assertTrue(p.matches("logs/today.txt"));
+        assertFalse(p.matches("logs/keep.txt"));
+        assertFalse(p.matches("src/Main.java"));
+    }
+
+    @Test
+    public void noPatternsMatchNothing() {
+        PathPatterns p = of();
+        assertFalse(p.matches("a.txt"));
+        assertFalse(p.matchesDirectory("dir"));
+    }
+}
@@ -0,0 +1,26 @@
+package gitlet;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The process-wide table of interned file paths.  Every FileMap that is
+ *  decoded stores its paths through here, so a path tracked by thousands
+ *  of commits is held in memory once.
+ *  @author Ramon Moreno
+ */
+class PathTable {
+
+    /** Returns the canonical copy of PATH. */
+    static String intern(String path) {
+        String canonical = PATHS.putIfAbsent(path, path);
+        return canonical == null ? path : canonical;
+    }
+
+    /** Returns the number of distinct paths interned so far. */
+    static int size() {
+        return PATHS.size();
+    }
+
+    /** The interned paths, each mapped to itself. */
+    private static final ConcurrentHashMap<String, String> PATHS =
+        new ConcurrentHashMap<>();
+}
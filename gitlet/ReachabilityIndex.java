@@ -0,0 +1,124 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Precomputed reachability bitmaps of recent branch heads, kept in
+ *  .gitlet/bitmaps.  For each of up to LIMIT commits it records the
+ *  commit-graph position and the Bitmap of positions reachable from it,
+ *  so that questions about ancestry become set operations.  The index is
+ *  keyed by commit rather than by branch, so its size does not grow with
+ *  the number of branches: whenever a branch head moves, the bitmap of
+ *  the new head is remembered, computed by walking from it only until
+ *  the walk meets a commit whose bitmap is already known, and the least
+ *  recently remembered bitmap is dropped once there are more than LIMIT.
+ *  @author Ramon Moreno
+ */
+class ReachabilityIndex {
+
+    /** Returns the index of GRAPH's repository over GRAPH, or an
+     *  empty index if there is none yet. */
+    static ReachabilityIndex load(CommitGraph graph) {
+        ReachabilityIndex index = new ReachabilityIndex(graph);
+        File file = file(graph.dir());
+        if (!file.exists()) {
+            return index;
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new ByteArrayInputStream(Utils.readContents(file)))) {
+            if (in.readInt() != MAGIC) {
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i += 1) {
+                int head = in.readInt();
+                Bitmap reachable = Bitmap.read(in);
+                if (head < graph.size()) {
+                    index._bitmaps.put(head, reachable);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return index;
+    }
+
+    /** An empty index over GRAPH. */
+    private ReachabilityIndex(CommitGraph graph) {
+        _graph = graph;
+    }
+
+    /** Remembers the bitmap of the commit with id UID, a new branch head.
+     *  Returns true iff the index changed. */
+    boolean remember(String uid) {
+        int head = _graph.position(uid);
+        Bitmap known = _bitmaps.remove(head);
+        _bitmaps.put(head, known != null ? known : reachable(head));
+        if (_bitmaps.size() > LIMIT) {
+            Integer eldest = _bitmaps.keySet().iterator().next();
+            _bitmaps.remove(eldest);
+        }
+        return known == null;
+    }
+
+    /** Returns the set of positions of the commits reachable from the
+     *  commit with id UID, itself included.  The result may be changed
+     *  freely. */
+    Bitmap reachable(String uid) {
+        return reachable(_graph.position(uid));
+    }
+
+    /** Returns the set of positions reachable from position POS. */
+    private Bitmap reachable(int pos) {
+        Bitmap exact = _bitmaps.get(pos);
+        if (exact != null) {
+            return new Bitmap(exact);
+        }
+        return _graph.reachable(pos, _bitmaps);
+    }
+
+    /** Returns the commit graph this index is over. */
+    CommitGraph graph() {
+        return _graph;
+    }
+
+    /** Writes this index to its file. */
+    void save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(_bitmaps.size());
+            for (Map.Entry<Integer, Bitmap> entry : _bitmaps.entrySet()) {
+                out.writeInt(entry.getKey());
+                entry.getValue().write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.replaceContents(file(_graph.dir()), bytes.toByteArray());
+    }
+
+    /** Returns the file holding the index of the repository whose .gitlet
+     *  directory is DIR. */
+    static File file(File dir) {
+        return Utils.join(dir, "bitmaps");
+    }
+
+    /** First int of the index file. */
+    private static final int MAGIC = 0x47424d32;
+    /** Most bitmaps kept. */
+    private static final int LIMIT = 64;
+
+    /** The commit graph whose positions the bitmaps hold. */
+    private final CommitGraph _graph;
+    /** Reachable set of each remembered head position, least recently
+     *  remembered first. */
+    private final LinkedHashMap<Integer, Bitmap> _bitmaps =
+        new LinkedHashMap<>();
+}
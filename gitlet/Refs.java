@@ -0,0 +1,325 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The branches of a repository and the history of each.  Most branches
+ *  live in .gitlet/packed-refs, one line per branch giving the id of its
+ *  head and its name, sorted by name, and are looked up by binary search
+ *  over the mapped file.  A branch created, moved or deleted since the
+ *  file was last written is a loose ref instead: a small file of its own
+ *  in .gitlet/refs, named by the branch's name with every character but
+ *  letters, digits, - and _ escaped, and replaced atomically on each
+ *  update.  A deleted branch that is still packed leaves a loose ref
+ *  saying so.  Every operation on one branch therefore costs the same
+ *  however many branches there are; maintenance folds the loose refs
+ *  back into packed-refs from time to time.
+ *
+ *  Each change to a branch is also appended to its reflog in
+ *  .gitlet/logs, one line per change giving the old and new heads, the
+ *  time and what made the change, so that an earlier head can be found
+ *  again.  A branch's reflog is deleted with it.
+ *  @author Ramon Moreno
+ */
+class Refs {
+
+    /** The branches of the repository whose .gitlet directory is DIR. */
+    Refs(File dir) {
+        _dir = dir;
+    }
+
+    /** Returns the id of the head of BRANCH, or null if there is no such
+     *  branch. */
+    String get(String branch) {
+        File loose = looseFile(branch);
+        if (loose.isFile()) {
+            String contents = Utils.readContentsAsString(loose).trim();
+            return contents.equals(DELETED) ? null : contents;
+        }
+        return packed(branch);
+    }
+
+    /** Returns true iff BRANCH exists. */
+    boolean contains(String branch) {
+        return get(branch) != null;
+    }
+
+    /** Points BRANCH at the commit UID, creating BRANCH if needed, and
+     *  records the change in its reflog with the reason MESSAGE.  Objects
+     *  still being written are made durable first, so that a branch never
+     *  names a commit a crash could lose. */
+    void put(String branch, String uid, String message) {
+        ObjectWriter.flush();
+        String old = get(branch);
+        Utils.join(_dir, LOOSE_DIR).mkdirs();
+        Utils.replaceContents(looseFile(branch), uid + "\n");
+        Maintenance.count(Maintenance.Counter.LOOSE_REFS, 1);
+        log(branch, old, uid, message);
+    }
+
+    /** Deletes BRANCH and its reflog. */
+    void remove(String branch) {
+        if (packed(branch) != null) {
+            Utils.join(_dir, LOOSE_DIR).mkdirs();
+            Utils.replaceContents(looseFile(branch), DELETED + "\n");
+            Maintenance.count(Maintenance.Counter.LOOSE_REFS, 1);
+        } else {
+            looseFile(branch).delete();
+        }
+        logFile(branch).delete();
+    }
+
+    /** Returns every branch and the id of its head, in order of name. */
+    Map<String, String> all() {
+        TreeMap<String, String> loose = loose();
+        LinkedHashMap<String, String> result = new LinkedHashMap<>();
+        for (String line : packedLines()) {
+            String name = line.substring(ID_WIDTH + 1);
+            while (!loose.isEmpty() && loose.firstKey().compareTo(name) < 0) {
+                addLoose(result, loose.pollFirstEntry());
+            }
+            if (!loose.containsKey(name)) {
+                result.put(name, line.substring(0, ID_WIDTH));
+            }
+        }
+        while (!loose.isEmpty()) {
+            addLoose(result, loose.pollFirstEntry());
+        }
+        return result;
+    }
+
+    /** Adds ENTRY, a loose ref, to BRANCHES unless it marks a deleted
+     *  branch. */
+    private static void addLoose(Map<String, String> branches,
+                                 Map.Entry<String, String> entry) {
+        if (!entry.getValue().equals(DELETED)) {
+            branches.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /** Replaces every branch with BRANCHES, which maps each name to the id
+     *  of its head, writing them straight to packed-refs.  Used to set up
+     *  a cloned repository, without reflogs. */
+    void replaceAll(Map<String, String> branches) {
+        ObjectWriter.flush();
+        writePacked(new TreeMap<>(branches));
+        File[] loose = Utils.join(_dir, LOOSE_DIR).listFiles();
+        if (loose != null) {
+            for (File file : loose) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Folds the loose refs into packed-refs and deletes them, under a
+     *  lock on the repository held by the caller.  Returns the number of
+     *  loose refs folded. */
+    int pack() {
+        TreeMap<String, String> loose = loose();
+        if (loose.isEmpty()) {
+            return 0;
+        }
+        TreeMap<String, String> branches = new TreeMap<>(all());
+        writePacked(branches);
+        for (String branch : loose.keySet()) {
+            looseFile(branch).delete();
+        }
+        return loose.size();
+    }
+
+    /** Returns the changes recorded in the reflog of BRANCH, oldest
+     *  first, each as its old head, new head, time in milliseconds and
+     *  reason.  The old head of a branch's first change is null. */
+    List<String[]> log(String branch) {
+        ArrayList<String[]> result = new ArrayList<>();
+        File file = logFile(branch);
+        if (!file.exists()) {
+            return result;
+        }
+        for (String line : Utils.readContentsAsString(file).split("\n")) {
+            String[] fields = line.split(" ", 4);
+            if (fields.length == 4) {
+                if (fields[0].equals(NO_COMMIT)) {
+                    fields[0] = null;
+                }
+                result.add(fields);
+            }
+        }
+        return result;
+    }
+
+    /** Appends the change of BRANCH from OLD, or from nothing if OLD is
+     *  null, to NEW for the reason MESSAGE to BRANCH's reflog. */
+    private void log(String branch, String old, String now, String message) {
+        File file = logFile(branch);
+        file.getParentFile().mkdirs();
+        String line = (old == null ? NO_COMMIT : old) + " " + now + " "
+            + System.currentTimeMillis() + " "
+            + message.replace('\n', ' ') + "\n";
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the head of BRANCH according to packed-refs, or null. */
+    private String packed(String branch) {
+        File file = packedFile(_dir);
+        if (!file.exists()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] name = branch.getBytes(StandardCharsets.UTF_8);
+            int lo = 0;
+            int hi = buffer.limit();
+            while (lo < hi) {
+                int start = (lo + hi) >>> 1;
+                while (start > lo && buffer.get(start - 1) != '\n') {
+                    start -= 1;
+                }
+                int end = start;
+                while (end < buffer.limit() && buffer.get(end) != '\n') {
+                    end += 1;
+                }
+                int cmp = compare(buffer, start + ID_WIDTH + 1, end, name);
+                if (cmp == 0) {
+                    byte[] id = new byte[ID_WIDTH];
+                    buffer.get(start, id);
+                    return new String(id, StandardCharsets.US_ASCII);
+                } else if (cmp < 0) {
+                    lo = end + 1;
+                } else {
+                    hi = start;
+                }
+            }
+            return null;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Compares the name held in BUFFER from START to END with NAME, both
+     *  UTF-8, in the order of the Strings they encode. */
+    private static int compare(MappedByteBuffer buffer, int start, int end,
+                               byte[] name) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8)
+            .compareTo(new String(name, StandardCharsets.UTF_8));
+    }
+
+    /** Returns the lines of packed-refs. */
+    private String[] packedLines() {
+        File file = packedFile(_dir);
+        if (!file.exists() || file.length() == 0) {
+            return new String[0];
+        }
+        return Utils.readContentsAsString(file).split("\n");
+    }
+
+    /** Writes BRANCHES, sorted by name, to packed-refs. */
+    private void writePacked(TreeMap<String, String> branches) {
+        StringBuilder contents = new StringBuilder();
+        for (Map.Entry<String, String> entry : branches.entrySet()) {
+            contents.append(entry.getValue()).append(' ')
+                .append(entry.getKey()).append('\n');
+        }
+        Utils.replaceContents(packedFile(_dir), contents.toString());
+    }
+
+    /** Returns the loose refs, each mapped to its head or DELETED. */
+    private TreeMap<String, String> loose() {
+        TreeMap<String, String> result = new TreeMap<>();
+        File[] files = Utils.join(_dir, LOOSE_DIR).listFiles();
+        if (files == null) {
+            return result;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            if (!file.getName().endsWith(".tmp")) {
+                result.put(decode(file.getName()),
+                           Utils.readContentsAsString(file).trim());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the loose ref file of BRANCH. */
+    private File looseFile(String branch) {
+        return Utils.join(_dir, LOOSE_DIR, encode(branch));
+    }
+
+    /** Returns the reflog file of BRANCH. */
+    private File logFile(String branch) {
+        return Utils.join(_dir, LOGS_DIR, encode(branch));
+    }
+
+    /** Returns the file name standing for the branch NAME. */
+    static String encode(String name) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || c == '-'
+                             || c == '_')) {
+                result.append(c);
+            } else {
+                result.append(String.format("%%%02X", b & 0xff));
+            }
+        }
+        return result.toString();
+    }
+
+    /** Returns the branch name that the file name NAME stands for. */
+    static String decode(String name) {
+        byte[] bytes = new byte[name.length()];
+        int n = 0;
+        for (int i = 0; i < name.length(); i += 1) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 2 < name.length()) {
+                bytes[n] = (byte) Integer.parseInt(
+                    name.substring(i + 1, i + 3), 16);
+                i += 2;
+            } else {
+                bytes[n] = (byte) c;
+            }
+            n += 1;
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the packed-refs file of the repository whose .gitlet
+     *  directory is DIR. */
+    static File packedFile(File dir) {
+        return Utils.join(dir, "packed-refs");
+    }
+
+    /** Name of the directory of loose refs. */
+    static final String LOOSE_DIR = "refs";
+    /** Name of the directory of reflogs. */
+    static final String LOGS_DIR = "logs";
+    /** Contents of the loose ref of a deleted packed branch. */
+    private static final String DELETED = "deleted";
+    /** Stands for no commit in a reflog. */
+    private static final String NO_COMMIT =
+        "0000000000000000000000000000000000000000";
+    /** Width of a commit id. */
+    private static final int ID_WIDTH = Utils.UID_LENGTH;
+
+    /** The .gitlet directory of the repository. */
+    private final File _dir;
+}
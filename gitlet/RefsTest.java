@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Refs.
+ *  @author Ramon Moreno
+ */
+public class RefsTest {
+
+    /** Returns a commit id made of the digit D. */
+    private static String id(char d) {
+        return String.valueOf(d).repeat(Utils.UID_LENGTH);
+    }
+
+    @Test
+    public void looseRefsOverlayPackedOnes() throws IOException {
+        File dir = Files.createTempDirectory("refs").toFile();
+        try {
+            Refs refs = new Refs(dir);
+            TreeMap<String, String> packed = new TreeMap<>();
+            for (int i = 0; i < 100; i += 1) {
+                packed.put(String.format("b%03d", i), id('1'));
+            }
+            packed.put("origin/master", id('2'));
+            refs.replaceAll(packed);
+            for (String name : packed.keySet()) {
+                assertEquals(packed.get(name), refs.get(name));
+            }
+            assertNull(refs.get("b100"));
+            assertNull(refs.get("a"));
+
+            refs.put("b050", id('3'), "commit: moved");
+            refs.put("a new one", id('4'), "branch: Created");
+            refs.remove("b010");
+            refs.remove("a new one");
+            refs.put("z", id('5'), "branch: Created");
+            assertEquals(id('3'), refs.get("b050"));
+            assertNull(refs.get("b010"));
+            assertNull(refs.get("a new one"));
+
+            Map<String, String> all = refs.all();
+            assertEquals(101, all.size());
+            assertEquals(new ArrayList<>(new TreeMap<>(all).keySet()),
+                         new ArrayList<>(all.keySet()));
+            assertEquals(3, refs.pack());
+            assertEquals(0, refs.pack());
+            assertEquals(all, refs.all());
+            assertEquals(id('3'), refs.get("b050"));
+            assertNull(refs.get("b010"));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+
+    @Test
+    public void reflogRecordsEveryMove() throws IOException {
+        File dir = Files.createTempDirectory("refs").toFile();
+        try {
+            Refs refs = new Refs(dir);
+            refs.put("topic/x", id('1'), "branch: Created from master");
+            refs.put("topic/x", id('2'), "commit: two");
+            refs.put("topic/x", id('1'), "reset: moving to 111");
+            List<String[]> log = refs.log("topic/x");
+            assertEquals(3, log.size());
+            assertNull(log.get(0)[0]);
+            assertEquals(id('1'), log.get(1)[0]);
+            assertEquals(id('2'), log.get(1)[1]);
+            assertEquals("reset: moving to 111", log.get(2)[3]);
+            refs.remove("topic/x");
+            assertTrue(refs.log("topic/x").isEmpty());
+            assertEquals("topic/x", Refs.decode(Refs.encode("topic/x")));
+            assertEquals("caf\u00e9 .tmp",
+                         Refs.decode(Refs.encode("caf\u00e9 .tmp")));
+        } finally {
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of fetching from and pulling from remotes.
+ *  @author Ramon Moreno
+ */
+public class RemoteTest {
+
+    @Test
+    public void fastForwardPullChecksOutTheNewHead() throws IOException {
+        File root = Files.createTempDirectory("remote").toFile();
+        File upstream = Utils.join(root, "upstream");
+        File local = Utils.join(root, "local");
+        upstream.mkdir();
+        local.mkdir();
+        try {
+            Repository.setWorkingDirectory(upstream);
+            Repository origin = new Repository();
+            TestUtils.commit(origin, "a.txt", "one\n", "one");
+
+            Repository.setWorkingDirectory(local);
+            Repository copy = Repository.clone(upstream.getPath(), false);
+            ObjectWriter.flush();
+            Utils.writeObject(Repository.REPO_FILE, copy);
+            String before = copy.headCommitUID();
+
+            Repository.setWorkingDirectory(upstream);
+            Utils.writeContents(Repository.workingFile("b.txt"), "new\n");
+            origin.add("b.txt");
+            TestUtils.commit(origin, "a.txt", "two\n", "two");
+            String head = origin.headCommitUID();
+
+            Repository.setWorkingDirectory(local);
+            copy.pull("origin", "master");
+            assertNotEquals(before, copy.headCommitUID());
+            assertEquals(head, copy.headCommitUID());
+            assertEquals("two\n", Utils.readContentsAsString(
+                Repository.workingFile("a.txt")));
+            assertEquals("new\n", Utils.readContentsAsString(
+                Repository.workingFile("b.txt")));
+            assertTrue(StagingIndex.load().isEmpty());
+        } finally {
+            Repository.setWorkingDirectory(
+                new File(System.getProperty("user.dir")));
+            TestUtils.delete(root);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/** Replays commits on top of another commit entirely in memory, for
+ *  cherry-pick and rebase.  Each commit is replayed by a three-way merge
+ *  of file maps: the change the commit made relative to its first parent
+ *  is applied to the files of the commit being built on, path by path,
+ *  and a path that both sides changed differently is a conflict.  The
+ *  new commits are only collected here; nothing is written to the object
+ *  store or the working directory, so a replay that stops at a conflict
+ *  leaves no trace.
+ *  @author Ramon Moreno
+ */
+class Replay {
+
+    /** A replay building on the commit with id ONTO and files FILES. */
+    Replay(String onto, FileMap files) {
+        _head = onto;
+        _files = new FileMap(files);
+    }
+
+    /** Replays COMMIT, whose first parent has the files PARENTFILES, on
+     *  top of the last commit built, unless it conflicts.  A commit whose
+     *  change is already present is dropped rather than replayed empty.
+     *  Returns false on a conflict, which is then named by conflict(). */
+    boolean pick(Commit commit, FileMap parentFiles) {
+        FileMap theirs = commit.getMyFiles();
+        TreeSet<String> changed =
+            CommitGraph.changedPaths(theirs, parentFiles);
+        FileMap result = new FileMap(_files);
+        TreeSet<String> applied = new TreeSet<>();
+        for (String path : changed) {
+            ObjectId base = parentFiles.get(path);
+            ObjectId mine = _files.get(path);
+            ObjectId wanted = theirs.get(path);
+            if (Objects.equals(mine, wanted)) {
+                continue;
+            } else if (!Objects.equals(mine, base)) {
+                _conflict = path;
+                _conflictCommit = commit.getMyUID();
+                return false;
+            }
+            if (wanted == null) {
+                result.remove(path);
+            } else {
+                result.put(path, wanted);
+            }
+            applied.add(path);
+        }
+        if (applied.isEmpty()) {
+            return true;
+        }
+        Commit replayed = new Commit(result, new String[] {_head},
+                                     commit.getMyMessage(), false);
+        _commits.add(replayed);
+        _changes.add(applied);
+        _head = replayed.getMyUID();
+        _files = result;
+        return true;
+    }
+
+    /** Returns the id of the last commit built, or of the commit built
+     *  on if none was. */
+    String head() {
+        return _head;
+    }
+
+    /** Returns the files of head(). */
+    FileMap files() {
+        return _files;
+    }
+
+    /** Returns the commits built, in order. */
+    List<Commit> commits() {
+        return _commits;
+    }
+
+    /** Returns the paths each commit in commits() changed relative to its
+     *  parent. */
+    List<TreeSet<String>> changes() {
+        return _changes;
+    }
+
+    /** Returns the path that conflicted, or null if none did. */
+    String conflict() {
+        return _conflict;
+    }
+
+    /** Returns the id of the commit that conflicted, or null. */
+    String conflictCommit() {
+        return _conflictCommit;
+    }
+
+    /** Id of the last commit built. */
+    private String _head;
+    /** Files of _head. */
+    private FileMap _files;
+    /** The commits built. */
+    private final ArrayList<Commit> _commits = new ArrayList<>();
+    /** Paths changed by each of _commits. */
+    private final ArrayList<TreeSet<String>> _changes = new ArrayList<>();
+    /** The conflicting path, or null. */
+    private String _conflict;
+    /** The conflicting commit, or null. */
+    private String _conflictCommit;
+}
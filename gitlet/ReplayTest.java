@@ -0,0 +1,65 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Replay.
+ *  @author Ramon Moreno
+ */
+public class ReplayTest {
+
+    /** Returns the id of the blob with contents TEXT. */
+    private static ObjectId id(String text) {
+        return Hashing.objectId(text.getBytes());
+    }
+
+    /** Returns a FileMap of PATHSANDTEXTS, alternating paths and blob
+     *  contents. */
+    private static FileMap files(String... pathsAndTexts) {
+        FileMap result = new FileMap();
+        for (int i = 0; i < pathsAndTexts.length; i += 2) {
+            result.put(pathsAndTexts[i], id(pathsAndTexts[i + 1]));
+        }
+        return result;
+    }
+
+    @Test
+    public void appliesEachChangeOnTop() {
+        FileMap parent = files("a", "1", "b", "1");
+        Commit change = new Commit(files("a", "2", "c", "1"),
+                                   new String[] {"p"}, "change", false);
+        Replay replay = new Replay("onto", files("a", "1", "b", "1",
+                                                  "d", "1"));
+        assertTrue(replay.pick(change, parent));
+        FileMap result = replay.files();
+        assertTrue(result.maps("a", id("2")));
+        assertFalse(result.containsKey("b"));
+        assertTrue(result.maps("c", id("1")));
+        assertTrue(result.maps("d", id("1")));
+        assertEquals(1, replay.commits().size());
+        assertEquals("change", replay.commits().get(0).getMyMessage());
+        assertEquals("onto", replay.commits().get(0).parent1UID());
+        assertEquals(replay.commits().get(0).getMyUID(), replay.head());
+    }
+
+    @Test
+    public void dropsChangesAlreadyPresent() {
+        Commit change = new Commit(files("a", "2"), new String[] {"p"},
+                                   "change", false);
+        Replay replay = new Replay("onto", files("a", "2"));
+        assertTrue(replay.pick(change, files("a", "1")));
+        assertTrue(replay.commits().isEmpty());
+        assertEquals("onto", replay.head());
+    }
+
+    @Test
+    public void stopsAtAConflict() {
+        Commit change = new Commit(files("a", "2"), new String[] {"p"},
+                                   "change", false);
+        Replay replay = new Replay("onto", files("a", "3"));
+        assertFalse(replay.pick(change, files("a", "1")));
+        assertEquals("a", replay.conflict());
+        assertEquals(change.getMyUID(), replay.conflictCommit());
+        assertTrue(replay.commits().isEmpty());
+    }
+}
@@ -1,7 +1,15 @@
 package gitlet;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 import static gitlet.Utils.*;
@@ -14,88 +22,234 @@ public class Repository implements Serializable {
     /** Initializes a new gitlet repository in the current directory. */
     public Repository() {
         Commit initialCommit = new Commit(null, null, "initial commit", true);
-        File gitletDir = new File(".gitlet");
-        gitletDir.mkdir();
-        File commitDir = new File(".gitlet/Commits");
-        commitDir.mkdir();
-        File blobDir = new File(".gitlet/Blobs");
-        blobDir.mkdir();
+        GITLET_DIR.mkdir();
+        COMMITS_DIR.mkdir();
+        BLOBS_DIR.mkdir();
+        writeContents(FORMAT_FILE, FORMAT_VERSION + "\n");
 
-        File commitFile = new File(".gitlet/Commits/"
-                + initialCommit.getMyUID());
-        Utils.writeContents(commitFile, Utils.serialize(initialCommit));
+        writeCommit(initialCommit, Collections.emptyList());
 
         _currentBranch = "master";
-        _stagedForAdd = new HashMap<>();
-        _branchHeads = new HashMap<>();
-        _stagedForRM = new HashSet<>();
-        _branchHeads.put("master", initialCommit.getMyUID());
+        refs().put("master", initialCommit.getMyUID(),
+                "commit (initial): initial commit");
+    }
+
+    /** A repository with the branches BRANCHES and the current branch
+     * of SOURCE, an empty staging area, and the remote origin at
+     * SOURCEPATH. */
+    private Repository(Repository source, Map<String, String> branches,
+                       String sourcePath) {
+        _currentBranch = source._currentBranch;
+        writeContents(FORMAT_FILE, FORMAT_VERSION + "\n");
+        refs().replaceAll(branches);
+        remotes().put("origin", sourcePath);
+    }
+
+    /** Creates a repository in the current directory that is a copy of
+     * the one at SOURCE, which is either a working directory or its
+     * .gitlet directory, and checks out the head of its current branch.
+     * Commits and blobs never change once written, so they are hard
+     * linked rather than copied wherever the file system allows it. If
+     * SHARED, they are not linked either: SOURCE and its alternates
+     * become alternates of the new repository, which reads their
+     * objects in place and writes only new objects of its own. */
+    public static Repository clone(String source, boolean shared) {
+        File sourceDir = new File(source.replace("/", File.separator));
+        if (!sourceDir.isAbsolute()) {
+            sourceDir = join(CWD, sourceDir.getPath());
+        }
+        if (!join(sourceDir, REPO_FILE.getName()).exists()) {
+            sourceDir = join(sourceDir, GITLET_DIR.getName());
+        }
+        if (!join(sourceDir, REPO_FILE.getName()).exists()) {
+            throw error("Source repository not found.");
+        }
+        sourceDir = sourceDir.toPath().toAbsolutePath().normalize().toFile();
+        Repository original = load(sourceDir);
+        Map<String, String> branches = new Refs(sourceDir).all();
+        FileMap headFiles = Commit.read(commitFile(sourceDir,
+                branches.get(original._currentBranch))).getMyFiles();
+        for (String fileName : headFiles.keySet()) {
+            if (workingFile(fileName).exists()) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it or add it first.");
+            }
+        }
+
+        GITLET_DIR.mkdir();
+        COMMITS_DIR.mkdir();
+        BLOBS_DIR.mkdir();
+        List<File> stores = new ArrayList<>();
+        stores.add(sourceDir);
+        stores.addAll(alternates(sourceDir));
+        if (shared) {
+            StringBuilder paths = new StringBuilder();
+            for (File store : stores) {
+                paths.append(store.getAbsolutePath()).append('\n');
+            }
+            writeContents(join(GITLET_DIR, ALTERNATES_FILE),
+                    paths.toString());
+            ALTERNATES.remove(GITLET_DIR);
+        } else {
+            for (File store : stores) {
+                linkObjects(join(store, COMMITS_DIR.getName()), COMMITS_DIR);
+                linkObjects(join(store, BLOBS_DIR.getName()), BLOBS_DIR);
+            }
+        }
+        copyIfPresent(CommitGraph.file(sourceDir),
+                CommitGraph.file(GITLET_DIR));
+        copyIfPresent(ReachabilityIndex.file(sourceDir),
+                ReachabilityIndex.file(GITLET_DIR));
+
+        Repository result = new Repository(original, branches,
+                sourceDir.getPath());
+        for (String fileName : headFiles.keySet()) {
+            writeWorkingFile(fileName,
+                    readContents(blobFile(headFiles.get(fileName))));
+        }
+        return result;
+    }
+
+    /** Returns the repository whose .gitlet directory is DIR, as saved
+     * by the last command that changed it. A repository written in an
+     * older format, or by a build whose saved form no longer reads, is
+     * refused rather than misread. */
+    static Repository load(File dir) {
+        checkFormat(dir);
+        try {
+            return readObject(join(dir, REPO_FILE.getName()),
+                    Repository.class);
+        } catch (IllegalArgumentException | ClassCastException excp) {
+            throw error("Repository format too old; re-clone.");
+        }
+    }
+
+    /** Checks that the repository whose .gitlet directory is DIR was
+     * written in the current format, FORMAT_VERSION. Repositories from
+     * before the format was recorded have no format file. */
+    static void checkFormat(File dir) {
+        File file = join(dir, FORMAT_FILE.getName());
+        int version;
+        try {
+            version = file.isFile()
+                ? Integer.parseInt(readContentsAsString(file).trim()) : 0;
+        } catch (NumberFormatException excp) {
+            version = 0;
+        }
+        if (version < FORMAT_VERSION) {
+            throw error("Repository format too old; re-clone.");
+        } else if (version > FORMAT_VERSION) {
+            throw error("Repository format %d is newer than this gitlet "
+                    + "supports.", version);
+        }
+    }
+
+    /** Hard links every object in the directory FROM into the directory
+     * TO, unless TO has it already, copying it where linking fails. */
+    private static void linkObjects(File from, File to) {
+        List<String> names = plainFilenamesIn(from);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            Path target = join(to, name).toPath();
+            Path object = join(from, name).toPath();
+            if (Files.exists(target)) {
+                continue;
+            }
+            try {
+                Files.createLink(target, object);
+            } catch (IOException | UnsupportedOperationException excp) {
+                try {
+                    Files.copy(object, target);
+                } catch (IOException copyExcp) {
+                    throw error(copyExcp.getMessage());
+                }
+            }
+        }
+    }
+
+    /** Copies the file FROM to TO if FROM exists. */
+    private static void copyIfPresent(File from, File to) {
+        if (from.exists()) {
+            writeContents(to, readContents(from));
+        }
     }
 
     /** Adds the file in the working directory by the name of FILENAME to the
      * staging area. */
     public void add(String fileName) {
-        File thisFile = new File(fileName);
+        File thisFile = workingFile(fileName);
 
         if (!thisFile.exists()) {
             throw error("File does not exist.");
         }
+        StagingIndex stage = stage();
+        if (stage.unchanged(fileName, thisFile)) {
+            return;
+        }
 
-        String fileHashCode = Utils.sha1(Utils.readContentsAsString(thisFile));
+        byte[] thisFileContents = readContents(thisFile);
+        ObjectId fileHashCode = Hashing.objectId(thisFileContents);
 
         Commit latestCommit = uidToACommit(headCommitUID());
         //commitFiles maps file names to file hashcodes
-        HashMap<String, String> commitFiles = latestCommit.getMyFiles();
-        File blobFile = new File(".gitlet/Blobs/" + fileHashCode);
+        FileMap commitFiles = latestCommit.getMyFiles();
+        File blobFile = blobFile(fileHashCode);
+
+        ObjectId staged = stage.added(fileName);
 
         if (commitFiles.size() == 0 || !commitFiles.containsKey(fileName)
                 || !fileHashCode.equals(commitFiles.get(fileName))) {
-            if (_stagedForAdd.containsKey(fileName)) {
-                File blob = new File(".gitlet/Blobs/"
-                        + _stagedForAdd.get(fileName));
-                blob.delete();
+            if (staged != null && !staged.equals(fileHashCode)) {
+                discardBlob();
             }
 
-            _stagedForAdd.put(fileName, fileHashCode);
-            String thisFileContents = readContentsAsString(thisFile);
-            writeContents(blobFile, thisFileContents);
-        } else if (_stagedForAdd.containsKey(fileName)) {
-            File blob = new File(".gitlet/Blobs/"
-                    + _stagedForAdd.get(fileName));
-            blob.delete();
-            _stagedForAdd.remove(fileName);
+            stage.add(fileName, fileHashCode, thisFile);
+            if (!blobFile.exists()) {
+                ObjectWriter.write(blobFile, thisFileContents);
+            }
+        } else {
+            if (staged != null) {
+                discardBlob();
+            }
+            stage.unstage(fileName);
         }
-        _stagedForRM.remove(fileName);
     }
 
     /** Creates a commit or snapshot of the files in the staging area with
      * the message MESSAGE. */
     public void commit(String message) {
+        checkNotBisecting();
         if (message.trim().equals("")) {
             throw error("Please enter a commit message.");
         }
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> filesTracked = latestCommit.getMyFiles();
+        FileMap filesTracked = latestCommit.getMyFiles();
+
+        StagingIndex stage = stage();
+        FileMap stagedForAdd = stage.additions();
+        List<String> stagedForRM = stage.removedPaths();
 
-        if (_stagedForAdd.size() == 0 && _stagedForRM.size() == 0) {
+        if (stagedForAdd.size() == 0 && stagedForRM.size() == 0) {
             throw error("No changes added to the commit.");
         } else {
-            for (String name : _stagedForAdd.keySet()) {
-                filesTracked.put(name, _stagedForAdd.get(name));
+            for (String name : stagedForAdd.keySet()) {
+                filesTracked.put(name, stagedForAdd.get(name));
             }
-            for (String name : _stagedForRM) {
+            for (String name : stagedForRM) {
                 filesTracked.remove(name);
             }
         }
         String[] myParent = {latestCommit.getMyUID()};
         Commit newCommit = new Commit(filesTracked, myParent, message, false);
-        String newCommitID = newCommit.getMyUID();
-        File newCommitFile = new File(".gitlet/Commits/" + newCommitID);
-        writeObject(newCommitFile, newCommit);
+        TreeSet<String> changed = new TreeSet<>(stagedForAdd.keySet());
+        changed.addAll(stagedForRM);
+        writeCommit(newCommit, changed);
 
-        _stagedForAdd = new HashMap<>();
-        _stagedForRM = new HashSet<>();
-        _branchHeads.put(_currentBranch, newCommit.getMyUID());
+        stage.clear();
+        moveBranch(currentBranch(), newCommit.getMyUID(),
+                "commit: " + message);
     }
 
     /** Removes the file with name FILENAME from the working
@@ -103,16 +257,15 @@ public class Repository implements Serializable {
      * removes it from the staging area if it is staged. */
     public void rm(String fileName) {
         boolean staged = false;
-        if (_stagedForAdd.containsKey(fileName)) {
+        ObjectId stagedID = stage().added(fileName);
+        if (stagedID != null) {
             staged = true;
-            File blob = new File(".gitlet/Blobs/"
-                    + _stagedForAdd.get(fileName));
-            blob.delete();
-            _stagedForAdd.remove(fileName);
+            discardBlob();
+            stage().unstage(fileName);
         }
 
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> commitFiles = latestCommit.getMyFiles();
+        FileMap commitFiles = latestCommit.getMyFiles();
         boolean tracked = commitFiles.containsKey(fileName);
 
         if (!staged && !tracked) {
@@ -120,9 +273,8 @@ public class Repository implements Serializable {
         }
 
         if (tracked) {
-            _stagedForRM.add(fileName);
-            File thisFile = new File(fileName);
-            restrictedDelete(thisFile);
+            stage().remove(fileName);
+            deleteWorkingFile(fileName);
         }
     }
 
@@ -143,6 +295,43 @@ public class Repository implements Serializable {
         }
     }
 
+    /** Like log, but displays only the commits that changed the file
+     * FILENAME relative to their first parent. Commits whose
+     * changed-path filters rule the file out are skipped without being
+     * decoded. */
+    public void log(String fileName) {
+        CommitGraph graph = CommitGraph.load();
+        int pos = graph.position(headCommitUID());
+        while (pos >= 0) {
+            if (graph.mayHaveChanged(pos, fileName)) {
+                String commitID = graph.uid(pos);
+                Commit currentCommit = uidToACommit(commitID);
+                if (changes(currentCommit, fileName)) {
+                    String[] parents = currentCommit.getAllParents();
+                    if (parents != null && parents.length == 2) {
+                        printM(commitID);
+                    } else {
+                        print(commitID);
+                    }
+                }
+            }
+            int[] parents = graph.parents(pos);
+            pos = parents.length == 0 ? -1 : parents[0];
+        }
+    }
+
+    /** Returns true if COMMIT changed the file FILENAME relative to its
+     * first parent. */
+    private boolean changes(Commit commit, String fileName) {
+        ObjectId mine = commit.getMyFiles().get(fileName);
+        ObjectId theirs = null;
+        if (commit.parent1UID() != null) {
+            theirs = uidToACommit(commit.parent1UID()).getMyFiles()
+                    .get(fileName);
+        }
+        return !Objects.equals(mine, theirs);
+    }
+
     /** Prints the log out for merge commits with the uid ID. */
     public void printM(String id) {
         Commit currentCommit = uidToACommit(id);
@@ -168,8 +357,7 @@ public class Repository implements Serializable {
 
     /** Prints out all commits ever made. */
     public void globalLog() {
-        File allCommits = new File(".gitlet/Commits");
-        List<String> commitHashes = plainFilenamesIn(allCommits);
+        List<String> commitHashes = allCommitIDs();
         for (String commitID : commitHashes) {
             print(commitID);
         }
@@ -178,8 +366,7 @@ public class Repository implements Serializable {
     /** Prints out the HashCodes of all commits with the log message
      *  MESSAGE. */
     public void find(String message) {
-        File allCommits = new File(".gitlet/Commits");
-        List<String> commitHashes = plainFilenamesIn(allCommits);
+        List<String> commitHashes = allCommitIDs();
         boolean found = false;
         for (String commitID : commitHashes) {
             Commit currentCommit = uidToACommit(commitID);
@@ -193,13 +380,35 @@ public class Repository implements Serializable {
         }
     }
 
+    /** Like find, but prints only the commits with the log message
+     *  MESSAGE that changed the file FILENAME relative to their first
+     *  parent. */
+    public void find(String message, String fileName) {
+        CommitGraph graph = CommitGraph.load();
+        List<String> commitHashes = allCommitIDs();
+        boolean found = false;
+        for (String commitID : commitHashes) {
+            if (!graph.mayHaveChanged(graph.position(commitID), fileName)) {
+                continue;
+            }
+            Commit currentCommit = uidToACommit(commitID);
+            if (currentCommit.getMyMessage().equals(message)
+                    && changes(currentCommit, fileName)) {
+                System.out.println(commitID);
+                found = true;
+            }
+        }
+        if (!found) {
+            throw error("Found no commit with that message.");
+        }
+    }
+
     /** Prints out information about tracked files, modified files,
      *  deleted files, and untracked files in the terminal. */
     public void status() {
         System.out.println("=== Branches ===");
-        TreeSet<String> sortedBranches = new TreeSet<>(_branchHeads.keySet());
-        for (String branch : sortedBranches) {
-            if (branch.equals(_currentBranch)) {
+        for (String branch : refs().all().keySet()) {
+            if (branch.equals(currentBranch())) {
                 System.out.println("*" + branch);
             } else {
                 System.out.println(branch);
@@ -208,14 +417,16 @@ public class Repository implements Serializable {
         System.out.println();
 
         System.out.println("=== Staged Files ===");
-        TreeSet<String> sortedStage = new TreeSet<>(_stagedForAdd.keySet());
+        StagingIndex stage = stage();
+        FileMap stagedForAdd = stage.additions();
+        List<String> sortedStage = stage.addedPaths();
         for (String fileName : sortedStage) {
             System.out.println(fileName);
         }
         System.out.println();
 
         System.out.println("=== Removed Files ===");
-        TreeSet<String> sortedRemoved = new TreeSet<>(_stagedForRM);
+        List<String> sortedRemoved = stage.removedPaths();
         for (String fileName : sortedRemoved) {
             System.out.println(fileName);
         }
@@ -223,28 +434,32 @@ public class Repository implements Serializable {
 
         System.out.println("=== Modifications Not Staged For Commit ===");
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> commitFiles = latestCommit.getMyFiles();
+        FileMap commitFiles = latestCommit.getMyFiles();
         List<String> workingFiles =
-                plainFilenamesIn(System.getProperty("user.dir"));
+                WorkingTree.list(CWD);
         for (String fileName : workingFiles) {
-            boolean staged = _stagedForAdd.containsKey(fileName);
+            boolean staged = stagedForAdd.containsKey(fileName);
             boolean tracked = commitFiles.containsKey(fileName);
             if (tracked && isDifferent(fileName, commitFiles) && !staged) {
                 System.out.println(fileName + " (modified)");
-            } else if (staged && isDifferent(fileName, _stagedForAdd)) {
+            } else if (staged
+                    && !stage.unchanged(fileName, workingFile(fileName))
+                    && isDifferent(fileName, stagedForAdd)) {
                 System.out.println(fileName + " (modified)");
             }
         }
 
         for (String fileName : sortedStage) {
-            if (!exists(fileName)) {
+            if (inSparseCheckout(fileName) && !exists(fileName)) {
                 System.out.println(fileName + " (deleted)");
             }
         }
 
+        HashSet<String> removed = new HashSet<>(sortedRemoved);
         TreeSet<String> trackedFiles = new TreeSet<>(commitFiles.keySet());
         for (String fileName : trackedFiles) {
-            if (!_stagedForRM.contains(fileName) && !exists(fileName)) {
+            if (!removed.contains(fileName)
+                    && inSparseCheckout(fileName) && !exists(fileName)) {
                 System.out.println(fileName + " (deleted)");
             }
         }
@@ -276,46 +491,51 @@ public class Repository implements Serializable {
             }
             writeToFile(fileName, commitID);
         } else if (args.length == 1) {
+            checkNotBisecting();
             String branchName = args[0];
-            if (!_branchHeads.containsKey(branchName)) {
+            String commitID = refs().get(branchName);
+            if (commitID == null) {
                 throw error("No such branch exists.");
-            } else if (branchName.equals(_currentBranch)) {
+            } else if (branchName.equals(currentBranch())) {
                 throw error("No need to checkout the current branch.");
+            } else if (checkedOutElsewhere().contains(branchName)) {
+                throw error("That branch is checked out in another "
+                        + "working tree.");
             } else {
-                String commitID = _branchHeads.get(branchName);
                 Commit headCommit = uidToACommit(commitID);
-                HashMap<String, String> headFiles = headCommit.getMyFiles();
+                FileMap headFiles = headCommit.getMyFiles();
                 ArrayList<String> untrackedFiles = untrackedFiles();
 
                 for (String fileName : headFiles.keySet()) {
-                    if (untrackedFiles.contains(fileName)) {
+                    if (untrackedFiles.contains(fileName)
+                            && inSparseCheckout(fileName)) {
                         throw error("There is an untracked file in the way; "
                                 + "delete it or add it first.");
                     }
                 }
 
                 Commit latestCommit = uidToACommit(headCommitUID());
-                HashMap<String, String> previousFiles =
+                FileMap previousFiles =
                         latestCommit.getMyFiles();
 
                 for (String fileName : headFiles.keySet()) {
-                    File checkoutFile = new File(".gitlet/Blobs/"
-                            + headFiles.get(fileName));
+                    if (!inSparseCheckout(fileName)) {
+                        continue;
+                    }
+                    File checkoutFile = blobFile(headFiles.get(fileName));
                     String fileContents = readContentsAsString(checkoutFile);
-                    File workingFile = new File(fileName);
-                    writeContents(workingFile, fileContents);
+                    writeWorkingFile(fileName, fileContents);
                 }
 
                 for (String fileName : previousFiles.keySet()) {
-                    if (!headFiles.containsKey(fileName)) {
-                        File fileToDelete = new File(fileName);
-                        restrictedDelete(fileToDelete);
+                    if (!headFiles.containsKey(fileName)
+                            && inSparseCheckout(fileName)) {
+                        deleteWorkingFile(fileName);
                     }
                 }
 
-                _currentBranch = branchName;
-                _stagedForRM = new HashSet<>();
-                _stagedForAdd = new HashMap<>();
+                setCurrentBranch(branchName);
+                stage().clear();
             }
         } else {
             throw error("Incorrect operands.");
@@ -324,76 +544,86 @@ public class Repository implements Serializable {
 
     /** Creates a new branch pointer with the name BRANCHNAME. */
     public void branch(String branchName) {
-        if (_branchHeads.containsKey(branchName)) {
+        if (refs().contains(branchName)) {
             throw error("A branch with that name already exists.");
         } else {
-            _branchHeads.put(branchName, headCommitUID());
+            moveBranch(branchName, headCommitUID(),
+                    "branch: Created from " + currentBranch());
         }
     }
 
     /** Removes the branch pointer with the name BRANCHNAME, but
      *  it does not delete the commits on that branch. */
     public void rmBranch(String branchName) {
-        if (!_branchHeads.containsKey(branchName)) {
+        if (!refs().contains(branchName)) {
             throw error("A branch with that name does not exist.");
-        } else if (branchName.equals(_currentBranch)) {
+        } else if (branchName.equals(currentBranch())) {
             throw error("Cannot remove the current branch.");
+        } else if (checkedOutElsewhere().contains(branchName)) {
+            throw error("That branch is checked out in another "
+                    + "working tree.");
         } else {
-            _branchHeads.remove(branchName);
+            refs().remove(branchName);
         }
     }
 
     /** Will reset the working directory to the versions of the files
-     * in the commit with commit id COMMITID. */
+     * in the commit with commit id COMMITID, which may also be an entry
+     * of a reflog such as master@{1}. */
     public void reset(String commitID) {
+        checkNotBisecting();
         String id = commitID;
-        if (id.length() < UID_LENGTH) {
+        if (id.contains("@{")) {
+            id = resolveRevision(id);
+        } else if (id.length() < UID_LENGTH) {
             id = fullSizeID(id);
         }
         Commit desiredCommit = uidToACommit(id);
-        HashMap<String, String> resetFiles = desiredCommit.getMyFiles();
+        FileMap resetFiles = desiredCommit.getMyFiles();
         ArrayList<String> untrackedFiles = untrackedFiles();
         for (String fileName : resetFiles.keySet()) {
-            if (untrackedFiles.contains(fileName)) {
+            if (untrackedFiles.contains(fileName)
+                    && inSparseCheckout(fileName)) {
                 throw error("There is an untracked file "
                         + "in the way; delete it or add it first.");
             }
         }
 
         for (String fileName : resetFiles.keySet()) {
-            File checkoutFile = new File(".gitlet/Blobs/"
-                    + resetFiles.get(fileName));
+            if (!inSparseCheckout(fileName)) {
+                continue;
+            }
+            File checkoutFile = blobFile(resetFiles.get(fileName));
             String fileContents = readContentsAsString(checkoutFile);
-            File workingFile = new File(fileName);
-            writeContents(workingFile, fileContents);
+            writeWorkingFile(fileName, fileContents);
         }
 
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> trackedFiles = latestCommit.getMyFiles();
+        FileMap trackedFiles = latestCommit.getMyFiles();
         for (String fileName : trackedFiles.keySet()) {
-            if (!resetFiles.containsKey(fileName)) {
-                File fileToDelete = new File(fileName);
-                restrictedDelete(fileToDelete);
+            if (!resetFiles.containsKey(fileName)
+                    && inSparseCheckout(fileName)) {
+                deleteWorkingFile(fileName);
             }
         }
-        _branchHeads.put(_currentBranch, commitID);
-        _stagedForAdd = new HashMap<>();
-        _stagedForRM = new HashSet<>();
+        moveBranch(currentBranch(), id, "reset: moving to " + id);
+        stage().clear();
     }
 
     /** Takes in a split point SPLITPOINTCOMMITID and a branch name
      * GIVENBRANCHNAME. This branch is merged into the current branch. */
     public void merge(String givenBranchName, String splitPointCommitID) {
-        if (_stagedForAdd.size() != 0 || _stagedForRM.size() != 0) {
+        checkNotBisecting();
+        if (!stage().isEmpty()) {
             throw error("You have uncommitted changes.");
         }
 
-        String gBranch_HeadCommitID = _branchHeads.get(givenBranchName);
+        String gBranch_HeadCommitID = refs().get(givenBranchName);
         if (gBranch_HeadCommitID == null) {
             throw error("A branch with that name does not exist.");
         }
 
-        if (_currentBranch.equals(givenBranchName)) {
+        if (currentBranch().equals(givenBranchName)) {
             throw error("Cannot merge a branch with itself.");
         }
 
@@ -403,7 +633,9 @@ public class Repository implements Serializable {
         }
 
         if (splitPointCommitID.equals(headCommitUID())) {
-            _branchHeads.put(_currentBranch, gBranch_HeadCommitID);
+            checkoutFiles(gBranch_HeadCommitID);
+            moveBranch(currentBranch(), gBranch_HeadCommitID,
+                    "merge " + givenBranchName + ": Fast-forward");
             System.out.println("Current branch fast-forwarded.");
             return;
         }
@@ -423,13 +655,15 @@ public class Repository implements Serializable {
         Commit splitPointCommit = uidToACommit(splitPointCommitID);
         Commit currentBranch_HeadCommit = uidToACommit(headCommitUID());
 
-        HashMap<String, String> givenBranch_HeadCommitFiles = givenBranch_HeadCommit.getMyFiles();
-        HashMap<String, String> splitPointCommitFiles = splitPointCommit.getMyFiles();
-        HashMap<String, String> currentBranch_HeadCommitFiles = currentBranch_HeadCommit.getMyFiles();
+        FileMap givenBranch_HeadCommitFiles =
+                givenBranch_HeadCommit.getMyFiles();
+        FileMap splitPointCommitFiles = splitPointCommit.getMyFiles();
+        FileMap currentBranch_HeadCommitFiles =
+                currentBranch_HeadCommit.getMyFiles();
 
-        String gBHC_FileHashCode;
-        String sPC_FileHashCode;
-        String cBHC_FileHashCode;
+        ObjectId gBHC_FileHashCode;
+        ObjectId sPC_FileHashCode;
+        ObjectId cBHC_FileHashCode;
 
         for (String fileName : splitPointCommitFiles.keySet()) {
             gBHC_FileHashCode = givenBranch_HeadCommitFiles.get(fileName);
@@ -455,10 +689,10 @@ public class Repository implements Serializable {
                         throw error("There is an untracked file in the way; delete it or add it first.");
                     }
 
-                    cBHC_File = new File(".gitlet/Blobs/" + cBHC_FileHashCode);
+                    cBHC_File = blobFile(cBHC_FileHashCode);
                     cBHC_FileContents = readContentsAsString(cBHC_File);
 
-                    gBHC_File = new File(".gitlet/Blobs/" + gBHC_FileHashCode);
+                    gBHC_File = blobFile(gBHC_FileHashCode);
                     gBHC_FileContents = readContentsAsString(gBHC_File);
 
                     String[] setOfArgs = {fileName, cBHC_FileContents, gBHC_FileContents};
@@ -482,7 +716,7 @@ public class Repository implements Serializable {
                     throw error("There is an untracked file in the way; delete it or add it first.");
                 }
 
-                cBHC_File = new File(".gitlet/Blobs/" + cBHC_FileHashCode);
+                cBHC_File = blobFile(cBHC_FileHashCode);
                 cBHC_FileContents = readContentsAsString(cBHC_File);
 
                 String[] setOfArgs = {fileName, cBHC_FileContents, ""};
@@ -495,7 +729,7 @@ public class Repository implements Serializable {
                     throw error("There is an untracked file in the way; delete it or add it first.");
                 }
 
-                gBHC_File = new File(".gitlet/Blobs/" + gBHC_FileHashCode);
+                gBHC_File = blobFile(gBHC_FileHashCode);
                 gBHC_FileContents = readContentsAsString(gBHC_File);
 
                 String[] setOfArgs = {fileName, "", gBHC_FileContents};
@@ -525,10 +759,10 @@ public class Repository implements Serializable {
                     throw error("There is an untracked file in the way; delete it or add it first.");
                 }
 
-                cBHC_File = new File(".gitlet/Blobs/" + cBHC_FileHashCode);
+                cBHC_File = blobFile(cBHC_FileHashCode);
                 cBHC_FileContents = readContentsAsString(cBHC_File);
 
-                gBHC_File = new File(".gitlet/Blobs/" + gBHC_FileHashCode);
+                gBHC_File = blobFile(gBHC_FileHashCode);
                 gBHC_FileContents = readContentsAsString(gBHC_File);
 
                 String[] setOfArgs = {fileName, cBHC_FileContents, gBHC_FileContents};
@@ -540,6 +774,11 @@ public class Repository implements Serializable {
 
         String[] arguments = {gBranch_HeadCommitID, "--", ""};
         for (String fileName : filesToCheckoutAndStage) {
+            if (!inSparseCheckout(fileName)) {
+                stage().add(fileName,
+                        givenBranch_HeadCommitFiles.get(fileName), null);
+                continue;
+            }
             arguments[2] = fileName;
             checkout(arguments);
             add(fileName);
@@ -557,7 +796,8 @@ public class Repository implements Serializable {
             rm(fileName);
         }
 
-        String message = "Merged " + givenBranchName + " into " + _currentBranch + ".";
+        String message = "Merged " + givenBranchName + " into "
+                + currentBranch() + ".";
         String[] parents = {headCommitUID(), gBranch_HeadCommitID};
         mergeCommit(message, parents);
 
@@ -570,7 +810,7 @@ public class Repository implements Serializable {
      * and the current branch. */
     public String findSplitPoint(String givenBranchName) {
         ArrayList<String> givenBranch_CommitIDs = new ArrayList<>();
-        String gBranch_HeadCommitID = _branchHeads.get(givenBranchName);
+        String gBranch_HeadCommitID = refs().get(givenBranchName);
 
         givenBranch_CommitIDs.add(gBranch_HeadCommitID);
         Commit currentCommit = uidToACommit(gBranch_HeadCommitID);
@@ -625,8 +865,7 @@ public class Repository implements Serializable {
 
         fileContents += ">>>>>>>";
 
-        File workingFile = new File(fileName);
-        writeContents(workingFile, fileContents);
+        writeWorkingFile(fileName, fileContents);
         add(fileName);
     }
 
@@ -638,26 +877,847 @@ public class Repository implements Serializable {
             throw error("Please enter a commit message.");
         }
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> filesTracked = latestCommit.getMyFiles();
+        FileMap filesTracked = latestCommit.getMyFiles();
 
-        if (_stagedForAdd.size() == 0 && _stagedForRM.size() == 0) {
+        StagingIndex stage = stage();
+        FileMap stagedForAdd = stage.additions();
+        List<String> stagedForRM = stage.removedPaths();
+
+        if (stagedForAdd.size() == 0 && stagedForRM.size() == 0) {
             throw error("No changes added to the commit.");
         } else {
-            for (String name : _stagedForAdd.keySet()) {
-                filesTracked.put(name, _stagedForAdd.get(name));
+            for (String name : stagedForAdd.keySet()) {
+                filesTracked.put(name, stagedForAdd.get(name));
             }
-            for (String name : _stagedForRM) {
+            for (String name : stagedForRM) {
                 filesTracked.remove(name);
             }
         }
         Commit newCommit = new Commit(filesTracked, parents, message, false);
-        String newCommitID = newCommit.getMyUID();
-        File newCommitFile = new File(".gitlet/Commits/" + newCommitID);
-        writeObject(newCommitFile, newCommit);
+        TreeSet<String> changed = new TreeSet<>(stagedForAdd.keySet());
+        changed.addAll(stagedForRM);
+        writeCommit(newCommit, changed);
+
+        stage.clear();
+        moveBranch(currentBranch(), newCommit.getMyUID(),
+                "commit (merge): " + message);
+    }
+
+    /** Applies the change made by the commit named by REVISION, relative
+     * to its first parent, on top of the current head as a new commit
+     * with the same message. The commit is built in memory and the
+     * working directory is updated once; if the change conflicts with the
+     * current head, nothing is changed. */
+    public void cherryPick(String revision) {
+        checkNotBisecting();
+        if (!stage().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        Commit commit = uidToACommit(resolveRevision(revision));
+        if (commit.parent1UID() == null) {
+            throw error("Cannot cherry-pick the initial commit.");
+        }
+        String head = headCommitUID();
+        Replay replay = new Replay(head, uidToACommit(head).getMyFiles());
+        if (!replay.pick(commit,
+                uidToACommit(commit.parent1UID()).getMyFiles())) {
+            throw conflictError(replay);
+        }
+        if (replay.commits().isEmpty()) {
+            throw error("No changes added to the commit.");
+        }
+        finishReplay(replay, "cherry-pick: " + commit.getMyMessage());
+    }
+
+    /** Replays the commits of the current branch that are not in the
+     * history of the branch BRANCHNAME on top of its head, oldest first,
+     * and points the current branch at the result. Merge commits are
+     * left out, as are commits whose change the branch already has. Every
+     * commit is built in memory and the working directory is updated
+     * once, at the end; if any commit conflicts, nothing is changed. */
+    public void rebase(String branchName) {
+        checkNotBisecting();
+        if (!stage().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        String upstream = refs().get(branchName);
+        if (upstream == null) {
+            throw error("A branch with that name does not exist.");
+        } else if (branchName.equals(currentBranch())) {
+            throw error("Cannot rebase a branch onto itself.");
+        }
+        String head = headCommitUID();
+        ReachabilityIndex index = reachabilityIndex();
+        CommitGraph graph = index.graph();
+        Bitmap ours = index.reachable(head);
+        Bitmap theirs = index.reachable(upstream);
+        if (ours.contains(graph.position(upstream))) {
+            System.out.println("Current branch is up to date.");
+            return;
+        } else if (theirs.contains(graph.position(head))) {
+            finishReplay(new Replay(upstream,
+                    uidToACommit(upstream).getMyFiles()),
+                    "rebase: Fast-forward to " + branchName);
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
+        ours.andNot(theirs);
+        Replay replay = new Replay(upstream,
+                uidToACommit(upstream).getMyFiles());
+        int[] positions = ours.toDescendingArray();
+        for (int k = positions.length - 1; k >= 0; k -= 1) {
+            Commit commit = uidToACommit(graph.uid(positions[k]));
+            String[] parents = commit.getAllParents();
+            if (parents == null || parents.length != 1) {
+                continue;
+            }
+            if (!replay.pick(commit,
+                    uidToACommit(parents[0]).getMyFiles())) {
+                throw conflictError(replay);
+            }
+        }
+        finishReplay(replay, "rebase: onto " + branchName);
+    }
+
+    /** Returns the error reporting the conflict that stopped REPLAY. */
+    private GitletException conflictError(Replay replay) {
+        return error("Encountered a merge conflict in %s replaying commit "
+                + "%s; nothing was changed.", replay.conflict(),
+                replay.conflictCommit());
+    }
+
+    /** Writes the commits built by REPLAY, points the current branch at
+     * its head for the reason REASON, and brings the working directory
+     * from the files of the old head to the files of the new one, writing
+     * only files that changed. */
+    private void finishReplay(Replay replay, String reason) {
+        FileMap oldFiles = uidToACommit(headCommitUID()).getMyFiles();
+        FileMap newFiles = replay.files();
+        ArrayList<String> untrackedFiles = untrackedFiles();
+        for (String fileName : untrackedFiles) {
+            if (newFiles.containsKey(fileName)
+                    && inSparseCheckout(fileName)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it or add it first.");
+            }
+        }
+        for (int i = 0; i < replay.commits().size(); i += 1) {
+            writeCommit(replay.commits().get(i), replay.changes().get(i));
+        }
+        updateWorkingFiles(oldFiles, newFiles);
+        moveBranch(currentBranch(), replay.head(), reason);
+    }
+
+    /** Takes in an array of Strings ARGS, a subcommand and its operands,
+     * and searches the history for the commit that introduced a change.
+     * "start [BAD [GOOD ...]]" begins, "bad [REV]", "good [REV ...]" and
+     * "skip [REV ...]" mark commits, the current one by default, and
+     * "reset" checks the current branch out again. Once a bad and a good
+     * commit are known, each mark checks out the next commit to test,
+     * detached from the current branch, which never moves, until the
+     * first bad commit is found. Returns true iff it has been. */
+    public boolean bisect(String[] args) {
+        if (args.length == 0) {
+            throw error("Incorrect operands.");
+        }
+        List<String> revisions = Arrays.asList(args).subList(1, args.length);
+        Bisect bisect = Bisect.load(WORKTREE_DIR);
+        if (args[0].equals("start")) {
+            if (bisect != null) {
+                throw error("A bisect is already in progress.");
+            } else if (!stage().isEmpty()) {
+                throw error("You have uncommitted changes.");
+            }
+            bisect = Bisect.start(WORKTREE_DIR, currentBranch(),
+                    headCommitUID());
+            for (int i = 0; i < revisions.size(); i += 1) {
+                bisect.mark(i == 0 ? Bisect.BAD : Bisect.GOOD,
+                        resolveRevision(revisions.get(i)));
+            }
+            return bisectNext(bisect);
+        } else if (bisect == null) {
+            throw error("You are not bisecting.");
+        }
+        switch (args[0]) {
+        case Bisect.BAD:
+        case Bisect.GOOD:
+        case Bisect.SKIP:
+            if (args[0].equals(Bisect.BAD) && revisions.size() > 1) {
+                throw error("Incorrect operands.");
+            } else if (revisions.isEmpty()) {
+                bisect.mark(args[0], headCommitUID());
+            }
+            for (String revision : revisions) {
+                bisect.mark(args[0], resolveRevision(revision));
+            }
+            return bisectNext(bisect);
+        case "reset":
+            checkoutFiles(refs().get(bisect.branch()));
+            bisect.delete();
+            return true;
+        default:
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Saves BISECT and, once it knows a bad and a good commit, checks
+     * out the next commit to test or reports the first bad commit.
+     * Returns true iff that has been found. */
+    private boolean bisectNext(Bisect bisect) {
+        if (!bisect.ready()) {
+            bisect.save();
+            System.out.println("Waiting for both good and bad commits.");
+            return false;
+        }
+        ReachabilityIndex index = reachabilityIndex();
+        Bitmap candidates = bisect.candidates(index);
+        if (candidates.isEmpty()) {
+            throw error("The bad commit is an ancestor of a good commit.");
+        }
+        int next = bisect.choose(index.graph(), candidates);
+        bisect.save();
+        if (next == -1 && candidates.cardinality() == 1) {
+            System.out.println(bisect.bad() + " is the first bad commit");
+            print(bisect.bad());
+            return true;
+        } else if (next == -1) {
+            System.out.println("There are only skipped commits left to "
+                    + "test. The first bad commit could be any of:");
+            for (int pos : candidates.toDescendingArray()) {
+                System.out.println(index.graph().uid(pos));
+            }
+            return true;
+        }
+        String uid = index.graph().uid(next);
+        checkoutFiles(uid);
+        bisect.checkout(uid);
+        bisect.save();
+        int left = bisect.left();
+        System.out.printf("Bisecting: %d revisions left to test after this "
+                + "(roughly %d steps)%n", left,
+                31 - Integer.numberOfLeadingZeros(left + 1));
+        System.out.println("[" + uid + "] " + uidToACommit(uid).getMyMessage());
+        return false;
+    }
+
+    /** Brings the working directory from the files of the head commit
+     * to those of the commit ID, writing only files that changed, without
+     * moving any branch. */
+    private void checkoutFiles(String id) {
+        if (!stage().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        FileMap oldFiles = uidToACommit(headCommitUID()).getMyFiles();
+        FileMap newFiles = uidToACommit(id).getMyFiles();
+        for (String fileName : newFiles.keySet()) {
+            if (!oldFiles.containsKey(fileName) && exists(fileName)
+                    && inSparseCheckout(fileName)) {
+                throw error("There is an untracked file in the way; "
+                        + "delete it or add it first.");
+            }
+        }
+        updateWorkingFiles(oldFiles, newFiles);
+    }
+
+    /** Brings the working directory from the tracked files OLDFILES to
+     * NEWFILES, writing only the files that differ and deleting those
+     * that NEWFILES does not track. */
+    private void updateWorkingFiles(FileMap oldFiles, FileMap newFiles) {
+        for (String fileName : newFiles.keySet()) {
+            ObjectId id = newFiles.get(fileName);
+            if (!oldFiles.maps(fileName, id) && inSparseCheckout(fileName)) {
+                writeWorkingFile(fileName, readContents(blobFile(id)));
+            }
+        }
+        for (String fileName : oldFiles.keySet()) {
+            if (!newFiles.containsKey(fileName)
+                    && inSparseCheckout(fileName)) {
+                deleteWorkingFile(fileName);
+            }
+        }
+    }
+
+    /** Takes in an array of Strings ARGS, an optional --count followed
+     * by a revision range, and prints the ids of the commits in the range,
+     * newest first, or with --count only how many there are. A range
+     * A..B holds the commits reachable from B but not from A; a single
+     * revision B holds every commit reachable from B. */
+    public void revList(String[] args) {
+        boolean count = args.length == 2 && args[0].equals("--count");
+        if (args.length != (count ? 2 : 1)) {
+            throw error("Incorrect operands.");
+        }
+        String range = args[args.length - 1];
+        ReachabilityIndex index = reachabilityIndex();
+        Bitmap commits;
+        int dots = range.indexOf("..");
+        if (dots >= 0) {
+            commits = index.reachable(resolveRevision(
+                    range.substring(dots + 2)));
+            commits.andNot(index.reachable(resolveRevision(
+                    range.substring(0, dots))));
+        } else {
+            commits = index.reachable(resolveRevision(range));
+        }
+
+        if (count) {
+            System.out.println(commits.cardinality());
+        } else {
+            CommitGraph graph = index.graph();
+            for (int pos : commits.toDescendingArray()) {
+                System.out.println(graph.uid(pos));
+            }
+        }
+    }
+
+    /** Prints true if the commit named by ANCESTOR is reachable from the
+     * commit named by DESCENDANT, and false otherwise. */
+    public void isAncestor(String ancestor, String descendant) {
+        ReachabilityIndex index = reachabilityIndex();
+        String ancestorID = resolveRevision(ancestor);
+        Bitmap reachable = index.reachable(resolveRevision(descendant));
+        System.out.println(
+                reachable.contains(index.graph().position(ancestorID)));
+    }
+
+    /** Reads a fast-import stream, as described in FastImport, from the
+     * standard input and adds the commits it describes, moving the
+     * branches it names. The working directory and the staging area are
+     * not touched. */
+    public void fastImport() {
+        FastImport importer = new FastImport(GITLET_DIR, refs().all());
+        importer.run(System.in);
+        ReachabilityIndex index = reachabilityIndex();
+        boolean changed = false;
+        for (Map.Entry<String, String> branch
+                : importer.branches().entrySet()) {
+            if (!branch.getValue().equals(refs().get(branch.getKey()))) {
+                refs().put(branch.getKey(), branch.getValue(), "fast-import");
+                changed |= index.remember(branch.getValue());
+            }
+        }
+        if (changed) {
+            index.save();
+        }
+        System.out.printf("Imported %d blobs and %d commits.%n",
+                          importer.blobs(), importer.commits());
+    }
+
+    /** Writes the history of BRANCHES, or of every branch if there are
+     * none, to the standard output as a stream that fast-import reads
+     * back. */
+    public void fastExport(String[] branches) {
+        TreeMap<String, String> heads = new TreeMap<>();
+        if (branches.length == 0) {
+            heads.putAll(refs().all());
+        }
+        for (String branch : branches) {
+            String head = refs().get(branch);
+            if (head == null) {
+                throw error("A branch with that name does not exist.");
+            }
+            heads.put(branch, head);
+        }
+        new FastExport(reachabilityIndex(), heads).run(System.out);
+    }
+
+    /** Takes in an array of Strings ARGS, a revision, an optional
+     * --format=tar or --format=zip and an optional -o followed by a file
+     * name, and writes the files of the commit named by the revision as
+     * an archive in that format to that file, or to the standard output
+     * if none is given. The format defaults to zip for a file name
+     * ending in .zip and to tar otherwise. The working directory is not
+     * touched, and the file appears only once it is complete. */
+    public void archive(String[] args) {
+        String revision = null;
+        String format = null;
+        String output = null;
+        for (int i = 0; i < args.length; i += 1) {
+            if (args[i].startsWith("--format=")) {
+                format = args[i].substring("--format=".length());
+            } else if (args[i].equals("-o") && i + 1 < args.length) {
+                i += 1;
+                output = args[i];
+            } else if (revision == null && !args[i].startsWith("-")) {
+                revision = args[i];
+            } else {
+                throw error("Incorrect operands.");
+            }
+        }
+        if (format == null) {
+            format = output != null && output.endsWith(".zip")
+                ? Archive.ZIP : Archive.TAR;
+        }
+        if (revision == null
+                || !(format.equals(Archive.TAR)
+                     || format.equals(Archive.ZIP))) {
+            throw error("Incorrect operands.");
+        }
+        Archive archive = new Archive(GITLET_DIR,
+                uidToACommit(resolveRevision(revision)));
+        try {
+            if (output == null) {
+                archive.write(format,
+                        new FileOutputStream(FileDescriptor.out).getChannel());
+                return;
+            }
+            File file = new File(output);
+            if (!file.isAbsolute()) {
+                file = join(CWD, output);
+            }
+            File temp = tempFile(file);
+            try (FileChannel out = FileChannel.open(temp.toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                archive.write(format, out);
+            } catch (IOException excp) {
+                temp.delete();
+                throw excp;
+            }
+            Files.move(temp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Verifies every object in the repository and prints a report of
+     *  any that are corrupt or missing, as described in Fsck. */
+    public void fsck() {
+        new Fsck(GITLET_DIR, refs().all(), stage()).run(System.out);
+    }
+
+    /** Returns the full commit id named by REVISION, which is a branch
+     * name, HEAD, BRANCH@{N} for the commit BRANCH was at N changes ago
+     * according to its reflog, or a possibly abbreviated commit id. */
+    public String resolveRevision(String revision) {
+        String head = refs().get(revision);
+        if (head != null) {
+            return head;
+        } else if (revision.equals("HEAD")) {
+            return headCommitUID();
+        } else if (revision.matches(".*@\\{\\d+}")) {
+            int at = revision.lastIndexOf("@{");
+            return reflogEntry(revision.substring(0, at),
+                    Integer.parseInt(revision.substring(at + 2,
+                            revision.length() - 1)));
+        }
+        String id = revision;
+        if (id.length() < UID_LENGTH) {
+            id = fullSizeID(id);
+        }
+        if (!commitFile(id).exists()) {
+            throw error("No commit with that id exists.");
+        }
+        return id;
+    }
+
+    /** Returns the reachability index. */
+    private ReachabilityIndex reachabilityIndex() {
+        return ReachabilityIndex.load(CommitGraph.load());
+    }
+
+    /** Points the branch BRANCH at the commit UID, creating it if
+     * needed, records REASON in its reflog, and remembers the
+     * reachability bitmap of UID. Called whenever a branch head
+     * changes. */
+    private void moveBranch(String branch, String uid, String reason) {
+        refs().put(branch, uid, reason);
+        ReachabilityIndex index = reachabilityIndex();
+        if (index.remember(uid)) {
+            index.save();
+        }
+    }
+
+    /** Returns the branches of this repository. */
+    private Refs refs() {
+        if (_refs == null) {
+            _refs = new Refs(GITLET_DIR);
+        }
+        return _refs;
+    }
+
+    /** Takes in an array of Strings ARGS, an optional branch name, and
+     * prints the reflog of that branch, or of the current branch, newest
+     * change first. Each line gives the commit the branch was moved to,
+     * the name by which resolveRevision finds it, and the reason. */
+    public void reflog(String[] args) {
+        if (args.length > 1) {
+            throw error("Incorrect operands.");
+        }
+        String branch = args.length == 1 ? args[0] : currentBranch();
+        if (!refs().contains(branch)) {
+            throw error("A branch with that name does not exist.");
+        }
+        List<String[]> entries = refs().log(branch);
+        for (int i = entries.size() - 1; i >= 0; i -= 1) {
+            String[] entry = entries.get(i);
+            System.out.println(entry[1] + " " + branch + "@{"
+                    + (entries.size() - 1 - i) + "}: " + entry[3]);
+        }
+    }
+
+    /** Returns the commit that the branch BRANCH was at N changes ago,
+     * according to its reflog. */
+    private String reflogEntry(String branch, int n) {
+        List<String[]> entries = refs().log(branch);
+        if (n >= entries.size()) {
+            throw error("Log for %s only has %d entries.", branch,
+                    entries.size());
+        }
+        return entries.get(entries.size() - 1 - n)[1];
+    }
+
+    /** Takes in an array of Strings ARGS, a pattern followed by any
+     * number of revisions, and prints the lines of the files of each
+     * revision, or of the head commit, that match the pattern, read
+     * straight from the object store. */
+    public void grep(String[] args) {
+        if (args.length == 0 || args[0].isEmpty()) {
+            throw error("Incorrect operands.");
+        }
+        LinkedHashMap<String, String> commits = new LinkedHashMap<>();
+        if (args.length == 1) {
+            commits.put("HEAD", headCommitUID());
+        }
+        for (int i = 1; i < args.length; i += 1) {
+            commits.put(args[i], resolveRevision(args[i]));
+        }
+        new Grep(GITLET_DIR, args[0]).run(commits, System.out);
+    }
+
+    /** Takes in an array of Strings ARGS, a file name optionally preceded
+     * by a revision and "--", and prints each line of that file in the
+     * revision, or in the head commit, after the id, abbreviated, and
+     * date of the commit that introduced it and its line number. */
+    public void blame(String[] args) {
+        String revision;
+        String fileName;
+        if (args.length == 1) {
+            revision = headCommitUID();
+            fileName = args[0];
+        } else if (args.length == 3 && args[1].equals("--")) {
+            revision = resolveRevision(args[0]);
+            fileName = args[2];
+        } else {
+            throw error("Incorrect operands.");
+        }
+        Blame blame = new Blame(GITLET_DIR, fileName);
+        String[] commits = blame.annotate(revision);
+        if (commits == null) {
+            throw error("File does not exist in that commit.");
+        }
+        String[] lines = Blame.split(readContentsAsString(
+                blobFile(blame.blob(revision))));
+        String format = "%s (%s %" + String.valueOf(lines.length).length()
+                + "d) %s%n";
+        HashMap<String, String> dates = new HashMap<>();
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < lines.length; i += 1) {
+            String date = dates.computeIfAbsent(commits[i],
+                    uid -> uidToACommit(uid).getTimeOfCommit());
+            out.append(String.format(format, commits[i].substring(0, 8),
+                    date, i + 1, lines[i]));
+        }
+        System.out.print(out);
+    }
+
+    /** Takes in an array of Strings ARGS, a subcommand and its operands,
+     * and manages the sparse checkout. "set" replaces the patterns
+     * choosing which tracked files are written to the working directory
+     * and considered by status, "add" appends to them, "list" prints
+     * them and "disable" writes every tracked file again. Commits still
+     * carry every tracked file. */
+    public void sparseCheckout(String[] args) {
+        if (args.length == 0) {
+            throw error("Incorrect operands.");
+        }
+        List<String> operands = Arrays.asList(args).subList(1, args.length);
+        switch (args[0]) {
+        case "list":
+            if (sparsePatterns() != null) {
+                for (String pattern : sparsePatterns()) {
+                    System.out.println(pattern);
+                }
+            }
+            return;
+        case "set":
+            changeSparseCheckout(new ArrayList<>(operands));
+            return;
+        case "add":
+            ArrayList<String> patterns = new ArrayList<>();
+            if (sparsePatterns() != null) {
+                patterns.addAll(sparsePatterns());
+            }
+            patterns.addAll(operands);
+            changeSparseCheckout(patterns);
+            return;
+        case "disable":
+            changeSparseCheckout(null);
+            return;
+        default:
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Replaces the sparse-checkout patterns with PATTERNS, or ends the
+     * sparse checkout if PATTERNS is null, and brings the working
+     * directory in line: tracked files that leave the checkout are
+     * deleted unless they have been modified, and those that enter it
+     * are written. */
+    private void changeSparseCheckout(ArrayList<String> patterns) {
+        if (!stage().isEmpty()) {
+            throw error("You have uncommitted changes.");
+        }
+        FileMap headFiles = uidToACommit(headCommitUID()).getMyFiles();
+        HashSet<String> before = new HashSet<>();
+        for (String fileName : headFiles.keySet()) {
+            if (inSparseCheckout(fileName)) {
+                before.add(fileName);
+            }
+        }
+
+        setSparsePatterns(patterns);
+        for (String fileName : headFiles.keySet()) {
+            boolean wanted = inSparseCheckout(fileName);
+            if (wanted && !before.contains(fileName) && !exists(fileName)) {
+                writeWorkingFile(fileName,
+                        readContents(blobFile(headFiles.get(fileName))));
+            } else if (!wanted && before.contains(fileName)
+                    && exists(fileName)
+                    && !isDifferent(fileName, headFiles)) {
+                deleteWorkingFile(fileName);
+            }
+        }
+    }
+
+    /** Returns true if the tracked file FILENAME belongs in the working
+     * directory, which is always the case unless a sparse checkout
+     * excludes it.  The .gitletignore file is never excluded, since
+     * status needs it to tell ignored files from untracked ones. */
+    public boolean inSparseCheckout(String fileName) {
+        if (!_sparseRead) {
+            ArrayList<String> patterns = sparsePatterns();
+            _sparse = patterns == null ? null : new PathPatterns(patterns);
+            _sparseRead = true;
+        }
+        return _sparse == null || fileName.equals(WorkingTree.IGNORE_FILE)
+            || _sparse.matches(fileName);
+    }
+
+    /** Takes in an array of Strings ARGS, a subcommand and its operands,
+     * and manages the linked working trees of this repository. "add PATH
+     * BRANCH" makes PATH, which must be new or an empty directory, a
+     * working tree with BRANCH checked out, and "list" prints every
+     * working tree with its branch. Each working tree has its own staging
+     * area; the commits, blobs and branches are shared, and a branch can
+     * be checked out in only one working tree at a time. Working trees
+     * whose directories are gone are forgotten first. */
+    public void worktree(String[] args) {
+        Worktree.prune(GITLET_DIR);
+        if (args.length == 3 && args[0].equals("add")) {
+            addWorktree(args[1], args[2]);
+        } else if (args.length == 1 && args[0].equals("list")) {
+            System.out.println(GITLET_DIR.getParentFile().getPath() + " "
+                    + _currentBranch);
+            for (Worktree worktree : Worktree.list(GITLET_DIR)) {
+                System.out.println(worktree.path().getPath() + " "
+                        + worktree.branch());
+            }
+        } else {
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Makes the directory PATH a working tree with the branch BRANCHNAME
+     * checked out, and writes the files of its head commit there. */
+    private void addWorktree(String path, String branchName) {
+        String head = refs().get(branchName);
+        if (head == null) {
+            throw error("No such branch exists.");
+        } else if (branchName.equals(currentBranch())
+                || checkedOutElsewhere().contains(branchName)) {
+            throw error("That branch is already checked out.");
+        }
+        File dir = new File(path.replace("/", File.separator));
+        if (!dir.isAbsolute()) {
+            dir = join(CWD, dir.getPath());
+        }
+        dir = dir.toPath().toAbsolutePath().normalize().toFile();
+        String[] existing = dir.list();
+        if (dir.exists() && (existing == null || existing.length > 0)) {
+            throw error("That path already exists.");
+        }
+        Worktree.create(GITLET_DIR, dir, branchName);
+        FileMap files = uidToACommit(head).getMyFiles();
+        try {
+            for (String fileName : files.keySet()) {
+                Path target = join(dir, fileName).toPath();
+                Files.createDirectories(target.getParent());
+                Files.copy(blobFile(files.get(fileName)).toPath(), target,
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Saves the .gitlet directory DIRECTORY of another repository under
+     * the name REMOTENAME. Forward slashes in DIRECTORY are read as the
+     * local file separator. */
+    public void addRemote(String remoteName, String directory) {
+        if (remotes().containsKey(remoteName)) {
+            throw error("A remote with that name already exists.");
+        }
+        remotes().put(remoteName,
+                directory.replace("/", File.separator));
+    }
+
+    /** Removes the remote named REMOTENAME. */
+    public void rmRemote(String remoteName) {
+        if (!remotes().containsKey(remoteName)) {
+            throw error("A remote with that name does not exist.");
+        }
+        remotes().remove(remoteName);
+    }
+
+    /** Appends the commits of the current branch that the remote
+     * REMOTENAME does not have to its branch REMOTEBRANCHNAME, and moves
+     * that branch to the current head. The remote's branch must be in the
+     * history of the current head. */
+    public void push(String remoteName, String remoteBranchName) {
+        File remoteDir = remoteDirectory(remoteName);
+        try (RepositoryLock lock = RepositoryLock.exclusive(remoteDir)) {
+            Refs remoteRefs = new Refs(remoteDir);
+            String remoteHead = remoteRefs.get(remoteBranchName);
+
+            if (remoteHead != null) {
+                ReachabilityIndex index = reachabilityIndex();
+                if (!index.graph().contains(remoteHead)
+                        || !index.reachable(headCommitUID())
+                        .contains(index.graph().position(remoteHead))) {
+                    throw error("Please pull down remote changes before "
+                            + "pushing.");
+                }
+            }
+            Pack.send(GITLET_DIR, remoteDir, headCommitUID(),
+                    remoteRefs.all().values());
+            remoteRefs.put(remoteBranchName, headCommitUID(),
+                    "push: from " + CWD.getPath());
+        }
+    }
 
-        _stagedForAdd = new HashMap<>();
-        _stagedForRM = new HashSet<>();
-        _branchHeads.put(_currentBranch, newCommit.getMyUID());
+    /** Copies the commits of the branch REMOTEBRANCHNAME of the remote
+     * REMOTENAME that this repository does not have, and points the
+     * local branch REMOTENAME/REMOTEBRANCHNAME at its head. */
+    public void fetch(String remoteName, String remoteBranchName) {
+        File remoteDir = remoteDirectory(remoteName);
+        String remoteHead;
+        try (RepositoryLock lock = RepositoryLock.shared(remoteDir)) {
+            remoteHead = new Refs(remoteDir).get(remoteBranchName);
+            if (remoteHead == null) {
+                throw error("That remote does not have that branch.");
+            }
+            Pack.send(remoteDir, GITLET_DIR, remoteHead,
+                    refs().all().values());
+        }
+        moveBranch(remoteName + "/" + remoteBranchName, remoteHead,
+                "fetch: from " + remoteName);
+    }
+
+    /** Fetches the branch REMOTEBRANCHNAME of the remote REMOTENAME and
+     * merges it into the current branch. */
+    public void pull(String remoteName, String remoteBranchName) {
+        checkNotBisecting();
+        fetch(remoteName, remoteBranchName);
+        String fetched = remoteName + "/" + remoteBranchName;
+        merge(fetched, findSplitPoint(fetched));
+    }
+
+    /** Returns the .gitlet directory of the remote REMOTENAME, resolved
+     * against the working directory. */
+    private File remoteDirectory(String remoteName) {
+        String directory = remotes().get(remoteName);
+        if (directory == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        File remoteDir = new File(directory);
+        if (!remoteDir.isAbsolute()) {
+            remoteDir = join(CWD, directory);
+        }
+        if (!join(remoteDir, REPO_FILE.getName()).exists()) {
+            throw error("Remote directory not found.");
+        }
+        checkFormat(remoteDir);
+        return remoteDir;
+    }
+
+    /** Returns true iff CWD is a linked working tree rather than the
+     *  working directory that holds the repository. */
+    private static boolean linkedWorktree() {
+        return !WORKTREE_DIR.equals(GITLET_DIR);
+    }
+
+    /** Returns the name of the branch checked out in CWD. */
+    private String currentBranch() {
+        return linkedWorktree() ? Worktree.head(WORKTREE_DIR) : _currentBranch;
+    }
+
+    /** Makes BRANCH the branch checked out in CWD. */
+    private void setCurrentBranch(String branch) {
+        if (linkedWorktree()) {
+            Worktree.setHead(WORKTREE_DIR, branch);
+        } else {
+            _currentBranch = branch;
+        }
+    }
+
+    /** Returns the branches checked out in working trees other than
+     *  CWD. */
+    private HashSet<String> checkedOutElsewhere() {
+        HashSet<String> result = new HashSet<>();
+        if (linkedWorktree()) {
+            result.add(_currentBranch);
+        }
+        for (Worktree worktree : Worktree.list(GITLET_DIR)) {
+            if (!worktree.admin().equals(WORKTREE_DIR)) {
+                result.add(worktree.branch());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the sparse-checkout patterns of CWD, or null if every
+     *  tracked file is checked out. */
+    private ArrayList<String> sparsePatterns() {
+        return linkedWorktree() ? Worktree.sparsePatterns(WORKTREE_DIR)
+                                : _sparsePatterns;
+    }
+
+    /** Makes PATTERNS the sparse-checkout patterns of CWD, or ends its
+     *  sparse checkout if PATTERNS is null. */
+    private void setSparsePatterns(ArrayList<String> patterns) {
+        if (linkedWorktree()) {
+            Worktree.setSparsePatterns(WORKTREE_DIR, patterns);
+        } else {
+            _sparsePatterns = patterns;
+        }
+        _sparseRead = false;
+    }
+
+    /** Returns the staging area of this repository. */
+    private StagingIndex stage() {
+        if (_stage == null) {
+            _stage = StagingIndex.load();
+        }
+        return _stage;
+    }
+
+    /** Returns the remotes of this repository, by name. */
+    private HashMap<String, String> remotes() {
+        if (_remotes == null) {
+            _remotes = new HashMap<>();
+        }
+        return _remotes;
     }
 
     /** Returns an ArrayList of Strings of
@@ -665,16 +1725,19 @@ public class Repository implements Serializable {
      * in the working directory that are untracked. */
     public ArrayList<String> untrackedFiles() {
         List<String> workingFiles =
-                plainFilenamesIn(System.getProperty("user.dir"));
+                WorkingTree.list(CWD);
         Commit latestCommit = uidToACommit(headCommitUID());
-        HashMap<String, String> trackedFiles = latestCommit.getMyFiles();
+        FileMap trackedFiles = latestCommit.getMyFiles();
         ArrayList<String> untrackedFiles = new ArrayList<>();
+        StagingIndex stage = stage();
+        FileMap stagedForAdd = stage.additions();
+        HashSet<String> stagedForRM = new HashSet<>(stage.removedPaths());
 
         for (String file : workingFiles) {
-            if (!_stagedForAdd.containsKey(file)
+            if (!stagedForAdd.containsKey(file)
                     && !trackedFiles.containsKey(file)) {
                 untrackedFiles.add(file);
-            } else if (_stagedForRM.contains(file)) {
+            } else if (stagedForRM.contains(file)) {
                 untrackedFiles.add(file);
             }
         }
@@ -687,49 +1750,48 @@ public class Repository implements Serializable {
      * the id COMMITID. */
     public void writeToFile(String fileName, String commitID) {
         Commit desiredCommit = uidToACommit(commitID);
-        HashMap<String, String> commitBlobs = desiredCommit.getMyFiles();
+        FileMap commitBlobs = desiredCommit.getMyFiles();
 
         if (commitBlobs.containsKey(fileName)) {
-            File checkoutFile = new File(".gitlet/Blobs/"
-                    + commitBlobs.get(fileName));
+            File checkoutFile = blobFile(commitBlobs.get(fileName));
             String fileContents = readContentsAsString(checkoutFile);
-            File workingFile = new File(fileName);
-            writeContents(workingFile, fileContents);
+            writeWorkingFile(fileName, fileContents);
         } else {
             throw error("File does not exist in that commit.");
         }
     }
 
     /** Checks if two versions of a file have different contents. Takes
-     *  in two file hash codes, FILEHASHCODE1 and FILEHASHCODE2, and the name of the file FILENAME.
+     *  in two file hash codes, FILEHASHCODE1 and FILEHASHCODE2, and the
+     *  name of the file FILENAME.
      *  @return boolean */
-    public boolean modified(String fileName, String fileHashCode1, String fileHashCode2) {
+    public boolean modified(String fileName, ObjectId fileHashCode1,
+                            ObjectId fileHashCode2) {
         return !fileHashCode2.equals(fileHashCode1);
     }
 
     /** Takes in a file name FILENAME of a file in the working directory
      * and returns
      * true if it is different from the version of the file stored
-     * in the HashMap
+     * in the FileMap
      * FILES. */
-    public boolean isDifferent(String fileName, HashMap<String, String> files) {
-        File workingFile = new File(fileName);
-        String fileHashCode = sha1(readContentsAsString(workingFile));
-        return !fileHashCode.equals(files.get(fileName));
+    public boolean isDifferent(String fileName, FileMap files) {
+        File workingFile = workingFile(fileName);
+        ObjectId fileHashCode = Hashing.objectId(workingFile);
+        return !files.maps(fileName, fileHashCode);
     }
 
     /** Returns true if the file with name FILENAME
      * exists in the working directory. */
     public boolean exists(String fileName) {
-        File thisFile = new File(fileName);
+        File thisFile = workingFile(fileName);
         return thisFile.exists();
     }
 
     /** Takes in a shortened commit UID and returns the full sized UID. Returns
      * an error if SHORTID is not valid. */
     public String fullSizeID(String shortID) {
-        File commitsDir = new File(".gitlet/Commits");
-        List<String> commitNames = plainFilenamesIn(commitsDir);
+        List<String> commitNames = allCommitIDs();
         for (String name : commitNames) {
             if (name.contains(shortID)) {
                 return name;
@@ -740,9 +1802,12 @@ public class Repository implements Serializable {
 
     /** Takes in a commit id, UID, and returns the corresponding commit. */
     public Commit uidToACommit(String uid) {
-        File commitFile = new File(".gitlet/Commits/" + uid);
+        File commitFile = commitFile(uid);
         if (commitFile.exists()) {
-            return readObject(commitFile, Commit.class);
+            long start = Trace.start();
+            Commit commit = Commit.read(commitFile);
+            Trace.record(Trace.Stat.COMMIT_DECODE, start, 0, uid);
+            return commit;
         } else {
             throw error("No commit with that id exists.");
         }
@@ -750,22 +1815,223 @@ public class Repository implements Serializable {
 
     /** Returns the UID of the head commit in the current branch. */
     public String headCommitUID() {
-        return _branchHeads.get(_currentBranch);
+        Bisect bisect = Bisect.load(WORKTREE_DIR);
+        if (bisect != null) {
+            return bisect.head();
+        }
+        return refs().get(currentBranch());
+    }
+
+    /** Refuses to move the current branch while a bisect is in progress
+     *  in CWD, which has its own commit checked out. */
+    private static void checkNotBisecting() {
+        if (Bisect.file(WORKTREE_DIR).exists()) {
+            throw error("You are bisecting; run bisect reset first.");
+        }
     }
 
+    /** Points branch BRANCHNAME at the commit COMMITID, creating the
+     *  branch if needed, without touching the working directory. */
+    void setBranchHead(String branchName, String commitID) {
+        refs().put(branchName, commitID, "branch: set");
+    }
 
+    /** Writes COMMIT, which changed the paths CHANGED relative to its
+     *  first parent, to the object store and records it in the commit
+     *  graph. */
+    static void writeCommit(Commit commit, Collection<String> changed) {
+        File commitFile = join(COMMITS_DIR, commit.getMyUID());
+        if (!commitFile.exists()) {
+            ObjectWriter.write(commitFile, commit.toBytes());
+        }
+        CommitGraph.append(commit, changed);
+    }
+
+    /** Returns the file holding the serialized commit with id UID. */
+    static File commitFile(String uid) {
+        return commitFile(GITLET_DIR, uid);
+    }
+
+    /** Returns the file holding the serialized commit with id UID in the
+     *  repository whose .gitlet directory is DIR. */
+    static File commitFile(File dir, String uid) {
+        return objectFile(dir, COMMITS_DIR.getName(), uid);
+    }
+
+    /** Returns the file holding the blob ID in the repository whose
+     *  .gitlet directory is DIR. */
+    static File blobFile(File dir, ObjectId id) {
+        return objectFile(dir, BLOBS_DIR.getName(), id.toHex());
+    }
+
+    /** Returns the file holding the blob with hash code ID. */
+    static File blobFile(String id) {
+        return objectFile(GITLET_DIR, BLOBS_DIR.getName(), id);
+    }
+
+    /** Returns the file holding the object NAME in the object directory
+     *  KIND (Commits or Blobs) of the repository whose .gitlet directory
+     *  is DIR. If DIR does not have it, its alternates are searched; if
+     *  none has it either, returns the file in DIR where it belongs. */
+    private static File objectFile(File dir, String kind, String name) {
+        File local = join(dir, kind, name);
+        ObjectWriter.await(local);
+        if (!local.exists()) {
+            for (File alternate : alternates(dir)) {
+                File shared = join(alternate, kind, name);
+                if (shared.exists()) {
+                    return shared;
+                }
+            }
+        }
+        return local;
+    }
+
+    /** Returns the .gitlet directories whose objects the repository with
+     *  .gitlet directory DIR may use but never writes, as listed one per
+     *  line in its alternates file. */
+    static List<File> alternates(File dir) {
+        List<File> result = ALTERNATES.get(dir);
+        if (result == null) {
+            result = new ArrayList<>();
+            File file = join(dir, ALTERNATES_FILE);
+            if (file.exists()) {
+                for (String line : readContentsAsString(file).split("\n")) {
+                    if (!line.trim().isEmpty()) {
+                        File alternate = new File(line.trim());
+                        result.add(alternate.isAbsolute() ? alternate
+                                : join(dir, line.trim()));
+                    }
+                }
+            }
+            ALTERNATES.put(dir, result);
+        }
+        return result;
+    }
+
+    /** Returns the ids of all commits in this repository and its
+     * alternates, in order. */
+    static List<String> allCommitIDs() {
+        TreeSet<String> ids = new TreeSet<>(plainFilenamesIn(COMMITS_DIR));
+        for (File alternate : alternates(GITLET_DIR)) {
+            List<String> shared =
+                    plainFilenamesIn(join(alternate, COMMITS_DIR.getName()));
+            if (shared != null) {
+                ids.addAll(shared);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Notes that a staged blob is no longer staged. It is not deleted
+     * here, since a commit may hold the same contents, but left for the
+     * prune task of Maintenance. */
+    private static void discardBlob() {
+        Maintenance.count(Maintenance.Counter.DEAD_BLOBS, 1);
+    }
+
+    /** Returns the file holding the blob ID. */
+    static File blobFile(ObjectId id) {
+        return blobFile(id.toHex());
+    }
+
+    /** Returns the file named FILENAME in the working directory. */
+    static File workingFile(String fileName) {
+        return join(CWD, fileName);
+    }
+
+    /** Writes CONTENTS to the file named FILENAME in the working
+     *  directory, creating the directories it is in if needed. */
+    static void writeWorkingFile(String fileName, Object... contents) {
+        File file = workingFile(fileName);
+        file.getParentFile().mkdirs();
+        writeContents(file, contents);
+    }
+
+    /** Deletes the file named FILENAME in the working directory, if it
+     *  exists, and then each directory it was in that is left empty. */
+    static void deleteWorkingFile(String fileName) {
+        File file = workingFile(fileName);
+        if (file.isDirectory() || !file.delete()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        while (dir != null && !dir.equals(CWD) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Points CWD and every .gitlet path at the working directory DIR.
+     *  Main never calls this; it lets benchmarks and other tools drive
+     *  repositories outside of user.dir from a single JVM. */
+    static void setWorkingDirectory(File dir) {
+        CWD = dir;
+        GITLET_DIR = join(CWD, ".gitlet");
+        WORKTREE_DIR = GITLET_DIR;
+        if (GITLET_DIR.isFile()) {
+            WORKTREE_DIR = Worktree.adminDir(GITLET_DIR);
+            GITLET_DIR = Worktree.commonDir(WORKTREE_DIR);
+        }
+        COMMITS_DIR = join(GITLET_DIR, "Commits");
+        BLOBS_DIR = join(GITLET_DIR, "Blobs");
+        REPO_FILE = join(GITLET_DIR, "myRepo");
+        FORMAT_FILE = join(GITLET_DIR, "format");
+    }
+
+    /** The working directory. */
+    static File CWD;
+    /** The .gitlet directory of the repository CWD belongs to: the one
+     *  inside CWD, unless CWD is a linked working tree. */
+    static File GITLET_DIR;
+    /** The directory holding the staging area and other state of CWD's
+     *  own working tree: GITLET_DIR, unless CWD is a linked working
+     *  tree. */
+    static File WORKTREE_DIR;
+    /** The directory of serialized commits. */
+    static File COMMITS_DIR;
+    /** The directory of file contents, named by hash code. */
+    static File BLOBS_DIR;
+    /** The file holding this serialized Repository. */
+    static File REPO_FILE;
+    /** The file holding the format version of the repository. */
+    static File FORMAT_FILE;
+    /** The version of the layout of .gitlet written by this gitlet:
+     * binary commits, refs outside the serialized Repository and a
+     * per-worktree staging index. Raise it whenever that layout or the
+     * saved form of Repository changes incompatibly. */
+    static final int FORMAT_VERSION = 1;
+
+    /** Name of the file listing a repository's alternates. */
+    static final String ALTERNATES_FILE = "alternates";
+    /** The alternates of each .gitlet directory read so far. */
+    private static final HashMap<File, List<File>> ALTERNATES =
+        new HashMap<>();
+
+    static {
+        setWorkingDirectory(new File(System.getProperty("user.dir")));
+    }
 
     /** A String denoting the name of the current branch. */
     private String _currentBranch;
 
-    /** A HashMap which maps the name of staged files to
-     * their corresponding HashCode. */
-    private HashMap<String, String> _stagedForAdd;
+    /** The branches, kept in .gitlet/packed-refs and .gitlet/refs. */
+    private transient Refs _refs;
+
+    /** A HashMap which maps the names of remotes to the paths of
+     * their .gitlet directories. */
+    private HashMap<String, String> _remotes;
+
+    /** The sparse-checkout patterns, or null if every tracked file is
+     * checked out. */
+    private ArrayList<String> _sparsePatterns;
+
+    /** The compiled sparse-checkout patterns, built when first needed,
+     * or null if every tracked file is checked out. */
+    private transient PathPatterns _sparse;
 
-    /** A HashMap which maps the name of branches to the
-     * HashCodes of their head commits. */
-    private HashMap<String, String> _branchHeads;
+    /** Whether _sparse reflects the current sparse-checkout patterns. */
+    private transient boolean _sparseRead;
 
-    /** A String HashSet that contains the names of removed files. */
-    private HashSet<String> _stagedForRM;
+    /** The staging area, read from .gitlet/index when first needed. */
+    private transient StagingIndex _stage;
 }
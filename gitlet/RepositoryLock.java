@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+/** A lock on a repository, held on the file .gitlet/lock, that keeps
+ *  gitlet processes sharing a repository from overwriting each other's
+ *  changes.  Commands that only read take a shared lock, so any number
+ *  of them run at once; commands that change the repository take an
+ *  exclusive one.  Either kind waits at most a timeout for the lock,
+ *  and then gives up with an error rather than blocking forever.  The
+ *  operating system releases the lock if the process dies holding it.
+ *  @author Ramon Moreno
+ */
+class RepositoryLock implements AutoCloseable {
+
+    /** Returns a shared lock on the repository whose .gitlet directory is
+     *  DIR, waiting at most the default timeout for it. */
+    static RepositoryLock shared(File dir) {
+        return acquire(dir, true, timeout());
+    }
+
+    /** Returns an exclusive lock on the repository whose .gitlet
+     *  directory is DIR, waiting at most the default timeout for it. */
+    static RepositoryLock exclusive(File dir) {
+        return acquire(dir, false, timeout());
+    }
+
+    /** Returns a lock on the repository whose .gitlet directory is DIR,
+     *  shared iff SHARED, waiting at most TIMEOUT milliseconds for it. */
+    static RepositoryLock acquire(File dir, boolean shared, long timeout) {
+        return acquire(dir, LOCK_FILE, shared, timeout);
+    }
+
+    /** Like acquire(DIR, SHARED, TIMEOUT), but locks the file NAME in DIR
+     *  instead of the repository lock file. */
+    static RepositoryLock acquire(File dir, String name, boolean shared,
+                                  long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        try {
+            RandomAccessFile file =
+                new RandomAccessFile(Utils.join(dir, name), "rw");
+            FileChannel channel = file.getChannel();
+            while (true) {
+                FileLock lock = tryLock(channel, shared);
+                if (lock != null) {
+                    return new RepositoryLock(file, lock);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    file.close();
+                    throw new GitletException("Another gitlet process is "
+                            + "using this repository; try again later.");
+                }
+                Thread.sleep(RETRY_MS);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new GitletException("Interrupted while waiting for the "
+                    + "repository lock.");
+        }
+    }
+
+    /** Returns a lock on all of CHANNEL, shared iff SHARED, or null if
+     *  it is held elsewhere, in this process or another. */
+    private static FileLock tryLock(FileChannel channel, boolean shared)
+        throws IOException {
+        try {
+            return channel.tryLock(0, Long.MAX_VALUE, shared);
+        } catch (OverlappingFileLockException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the time to wait for a lock, in milliseconds: the value of
+     *  GITLET_LOCK_TIMEOUT if it is set, and DEFAULT_TIMEOUT_MS if not. */
+    private static long timeout() {
+        String value = System.getenv("GITLET_LOCK_TIMEOUT");
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException excp) {
+                return DEFAULT_TIMEOUT_MS;
+            }
+        }
+        return DEFAULT_TIMEOUT_MS;
+    }
+
+    /** A lock LOCK held on the open FILE. */
+    private RepositoryLock(RandomAccessFile file, FileLock lock) {
+        _file = file;
+        _lock = lock;
+    }
+
+    /** Returns true iff this lock is shared. */
+    boolean isShared() {
+        return _lock.isShared();
+    }
+
+    /** Releases this lock. */
+    @Override
+    public void close() {
+        try {
+            _lock.release();
+            _file.close();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Name of the lock file in a .gitlet directory. */
+    static final String LOCK_FILE = "lock";
+    /** Milliseconds waited for a lock unless GITLET_LOCK_TIMEOUT says
+     *  otherwise. */
+    static final long DEFAULT_TIMEOUT_MS = 10000;
+    /** Milliseconds between attempts to take a lock. */
+    private static final long RETRY_MS = 10;
+
+    /** The open lock file. */
+    private final RandomAccessFile _file;
+    /** The lock held on _file. */
+    private final FileLock _lock;
+}
@@ -0,0 +1,49 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of RepositoryLock and of Utils.replaceContents.
+ *  @author Ramon Moreno
+ */
+public class RepositoryLockTest {
+
+    @Test
+    public void heldLockTimesOut() throws IOException {
+        File dir = Files.createTempDirectory("lock").toFile();
+        try {
+            RepositoryLock held = RepositoryLock.acquire(dir, false, 0);
+            assertFalse(held.isShared());
+            try {
+                RepositoryLock.acquire(dir, true, 50);
+                fail("acquired a lock that was held");
+            } catch (GitletException excp) {
+                assertTrue(excp.getMessage().contains("try again later"));
+            }
+            held.close();
+            RepositoryLock.acquire(dir, true, 0).close();
+        } finally {
+            Utils.join(dir, RepositoryLock.LOCK_FILE).delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void replaceLeavesNoTemporaryFile() throws IOException {
+        File dir = Files.createTempDirectory("replace").toFile();
+        File file = Utils.join(dir, "state");
+        try {
+            Utils.replaceContents(file, "old");
+            Utils.replaceContents(file, "new");
+            assertEquals("new", Utils.readContentsAsString(file));
+            assertEquals(1, dir.list().length);
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of sparse checkouts.
+ *  @author Ramon Moreno
+ */
+public class SparseCheckoutTest {
+
+    /** Returns the files in the working directory, in order. */
+    private static List<String> present() {
+        ArrayList<String> result =
+            new ArrayList<>(WorkingTree.list(Repository.CWD));
+        result.sort(null);
+        return result;
+    }
+
+    /** The files committed on master. */
+    private static final String[] FILES = {
+        "top.txt", "sub/top.txt", "dir/a.java", "dir/b.txt",
+        "lib/dir/c.md", "other/d.txt", "e.java"
+    };
+
+    @Test
+    public void onlyMatchingFilesAreWritten() throws IOException {
+        File root = Files.createTempDirectory("sparse").toFile();
+        try {
+            Repository.setWorkingDirectory(root);
+            Repository repository = new Repository();
+            for (String name : FILES) {
+                Repository.writeWorkingFile(name, name + "\n");
+                repository.add(name);
+            }
+            repository.commit("files");
+
+            repository.sparseCheckout(new String[] {"set", "dir/"});
+            assertEquals(Arrays.asList("dir/a.java", "dir/b.txt",
+                                       "lib/dir/c.md"), present());
+
+            repository.sparseCheckout(new String[] {"set", "*.txt"});
+            assertEquals(Arrays.asList("dir/b.txt", "other/d.txt",
+                                       "sub/top.txt", "top.txt"), present());
+
+            repository.sparseCheckout(new String[] {"set", "/top.txt"});
+            assertEquals(Arrays.asList("top.txt"), present());
+
+            repository.branch("other");
+            repository.checkout(new String[] {"other"});
+            Repository.writeWorkingFile("top.txt", "changed\n");
+            repository.add("top.txt");
+            Repository.writeWorkingFile("sub/top.txt", "changed\n");
+            repository.add("sub/top.txt");
+            repository.commit("change");
+            Repository.deleteWorkingFile("sub/top.txt");
+            repository.checkout(new String[] {"master"});
+            assertEquals(Arrays.asList("top.txt"), present());
+            assertEquals("top.txt\n", Utils.readContentsAsString(
+                Repository.workingFile("top.txt")));
+            repository.checkout(new String[] {"other"});
+            assertEquals(Arrays.asList("top.txt"), present());
+            assertEquals("changed\n", Utils.readContentsAsString(
+                Repository.workingFile("top.txt")));
+
+            repository.sparseCheckout(new String[] {"disable"});
+            ArrayList<String> all = new ArrayList<>(Arrays.asList(FILES));
+            all.sort(null);
+            assertEquals(all, present());
+            assertEquals("changed\n", Utils.readContentsAsString(
+                Repository.workingFile("sub/top.txt")));
+        } finally {
+            Repository.setWorkingDirectory(
+                new File(System.getProperty("user.dir")));
+            TestUtils.delete(root);
+        }
+    }
+
+    @Test
+    public void ignoreFileIsAlwaysWritten() throws IOException {
+        File root = Files.createTempDirectory("sparse").toFile();
+        try {
+            Repository.setWorkingDirectory(root);
+            Repository repository = new Repository();
+            Repository.writeWorkingFile(WorkingTree.IGNORE_FILE, "*.log\n");
+            repository.add(WorkingTree.IGNORE_FILE);
+            for (String name : FILES) {
+                Repository.writeWorkingFile(name, name + "\n");
+                repository.add(name);
+            }
+            repository.commit("files");
+
+            repository.sparseCheckout(new String[] {"set", "dir/"});
+            assertEquals(Arrays.asList(WorkingTree.IGNORE_FILE, "dir/a.java",
+                                       "dir/b.txt", "lib/dir/c.md"),
+                         present());
+            Repository.writeWorkingFile("build.log", "output\n");
+            Repository.writeWorkingFile("dir/new.txt", "new\n");
+            assertEquals(Arrays.asList("dir/new.txt"),
+                         repository.untrackedFiles());
+
+            repository.branch("other");
+            repository.checkout(new String[] {"other"});
+            assertTrue(Repository.workingFile(WorkingTree.IGNORE_FILE)
+                       .isFile());
+        } finally {
+            Repository.setWorkingDirectory(
+                new File(System.getProperty("user.dir")));
+            TestUtils.delete(root);
+        }
+    }
+}
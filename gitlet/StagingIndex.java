@@ -0,0 +1,439 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The staging area, kept in .gitlet/index rather than inside the
+ *  serialized Repository, so that staging a file does not rewrite the
+ *  rest of the repository state and starting a command does not decode
+ *  every staged path.
+ *
+ *  The file starts with a header (magic number, version, entry count and
+ *  size of the path table), followed by the entries sorted by path, each
+ *  of fixed width: the offset and length of its path in the path table,
+ *  the blob id, the modification time and size the working file had
+ *  when it was staged, and flags saying whether the path is staged for
+ *  addition or for removal.  The path table comes next.  The file is
+ *  memory-mapped, and a path is looked up by binary search over the
+ *  entries without decoding any of the others.
+ *
+ *  Changes are appended to the end of the file as small records, each
+ *  superseding whatever was said about its path before, and read into
+ *  memory when the file is loaded.  Once the appended records outnumber
+ *  the sorted entries the whole file is rewritten, sorted, in one step.
+ *  @author Ramon Moreno
+ */
+class StagingIndex {
+
+    /** Returns the staging index of the current working tree. */
+    static StagingIndex load() {
+        return load(Repository.WORKTREE_DIR);
+    }
+
+    /** Returns the staging index of the repository whose .gitlet
+     *  directory is DIR, which is empty if DIR has no index file. */
+    static StagingIndex load(File dir) {
+        StagingIndex index = new StagingIndex(file(dir));
+        index.map();
+        return index;
+    }
+
+    /** An index kept in FILE, not yet read. */
+    private StagingIndex(File file) {
+        _file = file;
+    }
+
+    /** Returns true iff nothing is staged. */
+    boolean isEmpty() {
+        if (_count == 0) {
+            for (Entry entry : _changes.values()) {
+                if (entry._flags != NONE) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return entries().isEmpty();
+    }
+
+    /** Returns the blob id staged for addition at PATH, or null if PATH
+     *  is not staged for addition. */
+    ObjectId added(String path) {
+        Entry entry = find(path);
+        return entry != null && entry._flags == ADDED ? entry._id : null;
+    }
+
+    /** Returns true iff PATH is staged for addition. */
+    boolean isAdded(String path) {
+        return added(path) != null;
+    }
+
+    /** Returns true iff PATH is staged for removal. */
+    boolean isRemoved(String path) {
+        Entry entry = find(path);
+        return entry != null && entry._flags == REMOVED;
+    }
+
+    /** Returns true iff PATH is staged for addition and the working file
+     *  FILE has the same size and modification time as when it was
+     *  staged, so that its contents need not be hashed to know that it
+     *  is unchanged.  Files modified within the same clock tick as the
+     *  index file are never trusted this way. */
+    boolean unchanged(String path, File file) {
+        Entry entry = find(path);
+        if (entry == null || entry._flags != ADDED) {
+            return false;
+        }
+        long mtime = file.lastModified();
+        return mtime == entry._mtime && file.length() == entry._size
+            && mtime < _indexTime;
+    }
+
+    /** Returns the paths staged for addition, in order, with their blob
+     *  ids. */
+    FileMap additions() {
+        FileMap result = new FileMap();
+        for (Map.Entry<String, Entry> entry : entries().entrySet()) {
+            if (entry.getValue()._flags == ADDED) {
+                result.put(entry.getKey(), entry.getValue()._id);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the paths staged for addition, in order. */
+    List<String> addedPaths() {
+        return paths(ADDED);
+    }
+
+    /** Returns the paths staged for removal, in order. */
+    List<String> removedPaths() {
+        return paths(REMOVED);
+    }
+
+    /** Stages PATH for addition with blob ID, recording the size and
+     *  modification time of the working file FILE, which may be null if
+     *  the path has no working file. */
+    void add(String path, ObjectId id, File file) {
+        long mtime = file == null ? -1 : file.lastModified();
+        long size = file == null ? -1 : file.length();
+        change(path, new Entry(ADDED, id, mtime, size));
+    }
+
+    /** Stages PATH for removal. */
+    void remove(String path) {
+        change(path, new Entry(REMOVED, null, -1, -1));
+    }
+
+    /** Removes PATH from the staging area. */
+    void unstage(String path) {
+        if (find(path) != null) {
+            change(path, new Entry(NONE, null, -1, -1));
+        }
+    }
+
+    /** Empties the staging area. */
+    void clear() {
+        if (_count == 0 && _changes.isEmpty()) {
+            return;
+        }
+        rewrite(new TreeMap<>());
+    }
+
+    /* READING. */
+
+    /** Maps the index file, if there is one, and reads the records
+     *  appended to it. */
+    private void map() {
+        _buffer = null;
+        _count = 0;
+        _changes.clear();
+        _appended = 0;
+        if (!_file.exists()) {
+            _indexTime = Long.MAX_VALUE;
+            return;
+        }
+        long start = Trace.start();
+        try (FileChannel channel = FileChannel.open(
+                 _file.toPath(), StandardOpenOption.READ)) {
+            _buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                  channel.size());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _indexTime = _file.lastModified();
+        Trace.record(Trace.Stat.FILE_READ, start, _buffer.capacity(),
+                     _file.getPath());
+        if (_buffer.capacity() < HEADER_SIZE || _buffer.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("corrupt index "
+                                               + _file.getPath());
+        }
+        if (_buffer.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("unsupported index version "
+                                               + _buffer.getInt(4));
+        }
+        _count = _buffer.getInt(8);
+        _pathsStart = HEADER_SIZE + _count * ENTRY_SIZE;
+        int end = _pathsStart + _buffer.getInt(12);
+        readChanges(end);
+    }
+
+    /** Reads the records appended after position END of the mapped
+     *  file.  A record cut short by a crash is ignored. */
+    private void readChanges(int end) {
+        ByteBuffer in = _buffer.duplicate();
+        in.position(end);
+        while (in.remaining() >= RECORD_FIXED_SIZE) {
+            byte flags = in.get();
+            int length = in.getShort() & 0xffff;
+            if (flags < NONE || flags > REMOVED
+                || in.remaining() < length + RECORD_FIXED_SIZE - 3) {
+                break;
+            }
+            byte[] path = new byte[length];
+            in.get(path);
+            byte[] id = new byte[ObjectId.LENGTH];
+            in.get(id);
+            long mtime = in.getLong();
+            long size = in.getLong();
+            _changes.put(new String(path, StandardCharsets.UTF_8),
+                         new Entry(flags, flags == ADDED
+                                   ? ObjectId.fromBytes(id, 0) : null,
+                                   mtime, size));
+            _appended += 1;
+        }
+    }
+
+    /** Returns what is staged for PATH, or null if nothing is. */
+    private Entry find(String path) {
+        Entry change = _changes.get(path);
+        if (change != null) {
+            return change._flags == NONE ? null : change;
+        }
+        int k = search(path.getBytes(StandardCharsets.UTF_8));
+        return k < 0 ? null : entry(k);
+    }
+
+    /** Returns the position among the sorted entries of the one whose
+     *  path is PATH, or -1 if there is none. */
+    private int search(byte[] path) {
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, path);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares the path of the Kth sorted entry with PATH, byte by
+     *  byte, without decoding it. */
+    private int compare(int k, byte[] path) {
+        int at = HEADER_SIZE + k * ENTRY_SIZE;
+        int offset = _pathsStart + _buffer.getInt(at);
+        int length = _buffer.getInt(at + 4);
+        int n = Math.min(length, path.length);
+        for (int i = 0; i < n; i += 1) {
+            int c = (_buffer.get(offset + i) & 0xff) - (path[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - path.length;
+    }
+
+    /** Returns the path of the Kth sorted entry. */
+    private String path(int k) {
+        int at = HEADER_SIZE + k * ENTRY_SIZE;
+        byte[] path = new byte[_buffer.getInt(at + 4)];
+        _buffer.get(_pathsStart + _buffer.getInt(at), path);
+        return new String(path, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the Kth sorted entry. */
+    private Entry entry(int k) {
+        int at = HEADER_SIZE + k * ENTRY_SIZE;
+        byte flags = _buffer.get(at + 8);
+        ObjectId id = null;
+        if (flags == ADDED) {
+            byte[] bytes = new byte[ObjectId.LENGTH];
+            _buffer.get(at + 12, bytes);
+            id = ObjectId.fromBytes(bytes, 0);
+        }
+        return new Entry(flags, id, _buffer.getLong(at + 12 + ObjectId.LENGTH),
+                         _buffer.getLong(at + 20 + ObjectId.LENGTH));
+    }
+
+    /** Returns everything staged, by path. */
+    private TreeMap<String, Entry> entries() {
+        TreeMap<String, Entry> result = new TreeMap<>();
+        for (int k = 0; k < _count; k += 1) {
+            result.put(path(k), entry(k));
+        }
+        for (Map.Entry<String, Entry> change : _changes.entrySet()) {
+            if (change.getValue()._flags == NONE) {
+                result.remove(change.getKey());
+            } else {
+                result.put(change.getKey(), change.getValue());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the paths whose entries have FLAGS, in order. */
+    private List<String> paths(byte flags) {
+        ArrayList<String> result = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries().entrySet()) {
+            if (entry.getValue()._flags == flags) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+
+    /* WRITING. */
+
+    /** Records that PATH now has ENTRY, appending it to the file, or
+     *  rewriting the file if enough has been appended. */
+    private void change(String path, Entry entry) {
+        _changes.put(path, entry);
+        if (_appended + 1 > Math.max(MIN_COMPACTION, _count)) {
+            rewrite(entries());
+            return;
+        }
+        if (!_file.exists()) {
+            rewrite(new TreeMap<>());
+            _changes.put(path, entry);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            out.writeByte(entry._flags);
+            out.writeShort(name.length);
+            out.write(name);
+            out.write(entry._id == null ? new byte[ObjectId.LENGTH]
+                      : entry._id.toBytes());
+            out.writeLong(entry._mtime);
+            out.writeLong(entry._size);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        long start = Trace.start();
+        try (FileOutputStream out = new FileOutputStream(_file, true)) {
+            out.write(bytes.toByteArray());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Trace.record(Trace.Stat.FILE_WRITE, start, bytes.size(),
+                     _file.getPath());
+        _appended += 1;
+    }
+
+    /** Replaces the file with one holding exactly ENTRIES, sorted, and
+     *  maps it again. */
+    private void rewrite(TreeMap<String, Entry> entries) {
+        ArrayList<byte[]> paths = new ArrayList<>();
+        int pathBytes = 0;
+        for (String path : entries.keySet()) {
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            paths.add(name);
+            pathBytes += name.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE
+            + entries.size() * ENTRY_SIZE + pathBytes);
+        out.putInt(MAGIC).putInt(VERSION).putInt(entries.size())
+            .putInt(pathBytes);
+        int offset = 0;
+        int k = 0;
+        for (Entry entry : entries.values()) {
+            out.putInt(offset).putInt(paths.get(k).length);
+            out.put(entry._flags).put(new byte[3]);
+            out.put(entry._id == null ? new byte[ObjectId.LENGTH]
+                    : entry._id.toBytes());
+            out.putLong(entry._mtime).putLong(entry._size);
+            offset += paths.get(k).length;
+            k += 1;
+        }
+        for (byte[] name : paths) {
+            out.put(name);
+        }
+        Utils.replaceContents(_file, out.array());
+        map();
+    }
+
+    /** Returns the index file of the repository whose .gitlet directory
+     *  is DIR. */
+    static File file(File dir) {
+        return Utils.join(dir, "index");
+    }
+
+    /** What is staged for one path. */
+    private static class Entry {
+        /** An entry with FLAGS, blob ID, and working-file modification
+         *  time MTIME and size SIZE. */
+        Entry(byte flags, ObjectId id, long mtime, long size) {
+            _flags = flags;
+            _id = id;
+            _mtime = mtime;
+            _size = size;
+        }
+
+        /** ADDED, REMOVED, or NONE for a path no longer staged. */
+        private final byte _flags;
+        /** Blob id of an ADDED entry, or null. */
+        private final ObjectId _id;
+        /** Modification time of the working file, or -1. */
+        private final long _mtime;
+        /** Size of the working file, or -1. */
+        private final long _size;
+    }
+
+    /** Entry flags. */
+    private static final byte NONE = 0, ADDED = 1, REMOVED = 2;
+    /** First int of the index file. */
+    private static final int MAGIC = 0x47494458;
+    /** Version of the index file format. */
+    private static final int VERSION = 1;
+    /** Bytes in the header. */
+    private static final int HEADER_SIZE = 16;
+    /** Bytes in one sorted entry: path offset and length, flags and
+     *  padding, id, modification time and size. */
+    private static final int ENTRY_SIZE = 4 + 4 + 4 + ObjectId.LENGTH + 8 + 8;
+    /** Bytes in an appended record, not counting its path. */
+    private static final int RECORD_FIXED_SIZE = 1 + 2 + ObjectId.LENGTH
+        + 8 + 8;
+    /** Appended records always allowed before the file is rewritten. */
+    private static final int MIN_COMPACTION = 64;
+
+    /** The index file. */
+    private final File _file;
+    /** The mapped file, or null if there is none. */
+    private ByteBuffer _buffer;
+    /** Number of sorted entries. */
+    private int _count;
+    /** Position of the path table in _buffer. */
+    private int _pathsStart;
+    /** Modification time of the file when it was mapped. */
+    private long _indexTime;
+    /** The appended changes, by path. */
+    private final TreeMap<String, Entry> _changes = new TreeMap<>();
+    /** Number of records appended since the file was last rewritten. */
+    private int _appended;
+}
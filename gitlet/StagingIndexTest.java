@@ -0,0 +1,95 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of StagingIndex.
+ *  @author Ramon Moreno
+ */
+public class StagingIndexTest {
+
+    /** Returns the id of the blob with contents TEXT. */
+    private static ObjectId id(String text) {
+        return Hashing.objectId(text.getBytes());
+    }
+
+    /** Deletes DIR and the index in it. */
+    private static void delete(File dir) {
+        StagingIndex.file(dir).delete();
+        dir.delete();
+    }
+
+    @Test
+    public void changesSurviveReloading() throws IOException {
+        File dir = Files.createTempDirectory("index").toFile();
+        try {
+            StagingIndex index = StagingIndex.load(dir);
+            assertTrue(index.isEmpty());
+            index.add("b.txt", id("b"), null);
+            index.add("a.txt", id("a"), null);
+            index.remove("c.txt");
+            index.add("d.txt", id("d"), null);
+            index.unstage("d.txt");
+
+            StagingIndex again = StagingIndex.load(dir);
+            assertFalse(again.isEmpty());
+            assertEquals(id("a"), again.added("a.txt"));
+            assertTrue(again.isRemoved("c.txt"));
+            assertFalse(again.isAdded("c.txt"));
+            assertNull(again.added("d.txt"));
+            assertEquals(Arrays.asList("a.txt", "b.txt"), again.addedPaths());
+            assertEquals(Arrays.asList("c.txt"), again.removedPaths());
+
+            again.clear();
+            assertTrue(StagingIndex.load(dir).isEmpty());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void rewritesSortedAfterManyChanges() throws IOException {
+        File dir = Files.createTempDirectory("index").toFile();
+        try {
+            StagingIndex index = StagingIndex.load(dir);
+            for (int i = 0; i < 500; i += 1) {
+                index.add("dir/file" + i, id("v" + i), null);
+            }
+            for (int i = 0; i < 500; i += 2) {
+                index.unstage("dir/file" + i);
+            }
+            StagingIndex again = StagingIndex.load(dir);
+            assertEquals(250, again.addedPaths().size());
+            assertEquals(id("v499"), again.added("dir/file499"));
+            assertNull(again.added("dir/file498"));
+            assertNull(again.added("dir/file"));
+            assertTrue(StagingIndex.file(dir).length() < 500 * 80);
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void ignoresATornRecord() throws IOException {
+        File dir = Files.createTempDirectory("index").toFile();
+        try {
+            StagingIndex index = StagingIndex.load(dir);
+            index.add("a.txt", id("a"), null);
+            index.add("b.txt", id("b"), null);
+            try (FileOutputStream out =
+                     new FileOutputStream(StagingIndex.file(dir), true)) {
+                out.write(new byte[] {1, 0, 5, 'c', '.'});
+            }
+            StagingIndex again = StagingIndex.load(dir);
+            assertEquals(Arrays.asList("a.txt", "b.txt"), again.addedPaths());
+        } finally {
+            delete(dir);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/** Repositories and objects shared by the unit tests.
+ *  @author Ramon Moreno
+ */
+class TestUtils {
+
+    /** Deletes DIR and everything in it. */
+    static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+        dir.delete();
+    }
+
+    /** Writes CONTENTS as a blob of the repository whose .gitlet
+     *  directory is DIR and returns its id. */
+    static ObjectId blob(File dir, String contents) {
+        byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        ObjectId id = Hashing.objectId(bytes);
+        File file = Repository.blobFile(dir, id);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, bytes);
+        return id;
+    }
+
+    /** Writes a commit of FILES with message MESSAGE and parents PARENTS,
+     *  if any, to the repository whose .gitlet directory is DIR, adds it
+     *  to the commit graph as changing every path it has, and returns its
+     *  id.  Its date is fixed, so the same commit always has the same
+     *  id. */
+    static String commit(File dir, FileMap files, String message,
+                         String... parents) {
+        Commit commit = new Commit(files, parents.length == 0 ? null : parents,
+                                   message, DATE);
+        File file = Repository.commitFile(dir, commit.getMyUID());
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, commit.toBytes());
+        CommitGraph.append(dir, commit, files.keySet());
+        return commit.getMyUID();
+    }
+
+    /** Writes CONTENTS to the working file NAME of REPOSITORY, which must
+     *  be the current repository, adds it, commits it with the message
+     *  MESSAGE and saves REPOSITORY, as Main would. */
+    static void commit(Repository repository, String name, String contents,
+                       String message) {
+        Utils.writeContents(Repository.workingFile(name), contents);
+        repository.add(name);
+        repository.commit(message);
+        ObjectWriter.flush();
+        Utils.writeObject(Repository.REPO_FILE, repository);
+    }
+
+    /** The date of every commit made by commit(DIR, ...). */
+    static final String DATE = "Thu Jan 1 00:00:00 1970 -0800";
+}
@@ -0,0 +1,199 @@
+package gitlet;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/** Per-command instrumentation: counts and times the hot helpers (commit
+ *  decoding, hashing, file reads and writes, directory listings).  Turned
+ *  on with the --trace option or a GITLET_TRACE environment variable, in
+ *  which case a summary is printed to standard error after the command.
+ *  The same measurements are emitted as JDK Flight Recorder events when
+ *  the JVM runs with a recording.  When neither is on, each probe costs
+ *  one test of a static boolean.
+ *  @author Ramon Moreno
+ */
+class Trace {
+
+    /** The operations that are measured. */
+    enum Stat {
+        /** Whole commands. */
+        COMMAND("command"),
+        /** Commits read back with uidToACommit. */
+        COMMIT_DECODE("commits decoded"),
+        /** Calls to Utils.sha1. */
+        HASH("hashes"),
+        /** Files read with Utils.readContents. */
+        FILE_READ("files read"),
+        /** Files written with Utils.writeContents. */
+        FILE_WRITE("files written"),
+        /** Directory listings with Utils.plainFilenamesIn and
+         *  WorkingTree. */
+        DIR_LIST("directories listed");
+
+        /** A statistic described by LABEL in the summary. */
+        Stat(String label) {
+            _label = label;
+        }
+
+        /** Returns the label of this statistic. */
+        String label() {
+            return _label;
+        }
+
+        /** Label of this statistic. */
+        private final String _label;
+    }
+
+    /** Turns tracing on if ARGS starts with --trace or the GITLET_TRACE
+     *  environment variable is set to anything other than 0, and returns
+     *  ARGS without the option. */
+    static String[] configure(String[] args) {
+        String env = System.getenv("GITLET_TRACE");
+        boolean enabled = env != null && !env.isEmpty() && !env.equals("0");
+        if (args.length > 0 && args[0].equals("--trace")) {
+            enabled = true;
+            String[] rest = new String[args.length - 1];
+            System.arraycopy(args, 1, rest, 0, rest.length);
+            args = rest;
+        }
+        _enabled = enabled;
+        _jfr = FlightRecorder.isAvailable() && FlightRecorder.isInitialized();
+        _active = _enabled || _jfr;
+        return args;
+    }
+
+    /** Returns true iff a summary will be printed. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Returns the number of STAT operations counted so far. */
+    static long calls(Stat stat) {
+        return CALLS.get(stat.ordinal());
+    }
+
+    /** Returns a start time to pass to record, or 0 if nothing is being
+     *  measured. */
+    static long start() {
+        return _active ? System.nanoTime() : 0;
+    }
+
+    /** Records one STAT operation on BYTES bytes that began at START,
+     *  where DETAIL names its object (a file, id or command). */
+    static void record(Stat stat, long start, long bytes, String detail) {
+        if (!_active) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        if (_enabled) {
+            int k = stat.ordinal();
+            CALLS.incrementAndGet(k);
+            BYTES.addAndGet(k, bytes);
+            NANOS.addAndGet(k, nanos);
+        }
+        if (_jfr && stat != Stat.COMMAND) {
+            OperationEvent event = new OperationEvent();
+            event.operation = stat.label();
+            event.detail = detail;
+            event.bytes = bytes;
+            event.nanos = nanos;
+            event.commit();
+        }
+    }
+
+    /** Runs COMMAND with ARGUMENTS through ACTION, measuring it as a whole
+     *  and emitting a JFR event for it. */
+    static void command(String command, String[] arguments, Runnable action) {
+        if (!_active) {
+            action.run();
+            return;
+        }
+        CommandEvent event = new CommandEvent();
+        event.command = command;
+        event.arguments = String.join(" ", arguments);
+        event.begin();
+        long start = start();
+        try {
+            action.run();
+        } finally {
+            record(Stat.COMMAND, start, 0, command);
+            event.commit();
+        }
+    }
+
+    /** Prints the summary of everything recorded to OUT, if tracing is
+     *  enabled. */
+    static void summarize(PrintStream out) {
+        if (!_enabled) {
+            return;
+        }
+        out.println("trace:");
+        for (Stat stat : Stat.values()) {
+            int k = stat.ordinal();
+            long calls = CALLS.get(k);
+            if (calls == 0) {
+                continue;
+            }
+            out.printf("  %-20s %8d  %12d bytes  %10.3f ms%n", stat.label(),
+                calls, BYTES.get(k), NANOS.get(k) / 1e6);
+        }
+    }
+
+    /** A JFR event for one Gitlet command. */
+    @Name("gitlet.Command")
+    @Label("Gitlet Command")
+    @Category("Gitlet")
+    static class CommandEvent extends Event {
+        /** The command name. */
+        @Label("Command")
+        String command;
+        /** Its operands. */
+        @Label("Arguments")
+        String arguments;
+    }
+
+    /** A JFR event for one measured helper call. */
+    @Name("gitlet.Operation")
+    @Label("Gitlet Operation")
+    @Category("Gitlet")
+    static class OperationEvent extends Event {
+        /** What was done. */
+        @Label("Operation")
+        String operation;
+        /** The file, id or command it was done to. */
+        @Label("Detail")
+        String detail;
+        /** Bytes hashed, read or written. */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        /** Time taken. */
+        @Label("Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    /** True iff a summary is printed. */
+    private static boolean _enabled;
+    /** True iff JFR events are emitted. */
+    private static boolean _jfr;
+    /** True iff anything is measured. */
+    private static boolean _active;
+    /** Calls per statistic. */
+    private static final AtomicLongArray CALLS =
+        new AtomicLongArray(Stat.values().length);
+    /** Bytes per statistic. */
+    private static final AtomicLongArray BYTES =
+        new AtomicLongArray(Stat.values().length);
+    /** Nanoseconds per statistic. */
+    private static final AtomicLongArray NANOS =
+        new AtomicLongArray(Stat.values().length);
+}
@@ -0,0 +1,72 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the --trace summary.
+ *  @author Ramon Moreno
+ */
+public class TraceTest {
+
+    /** Runs Main with ARGS in the current repository and returns what it
+     *  printed to standard error. */
+    private static String run(String... args) {
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));
+        System.setErr(new PrintStream(captured, true));
+        try {
+            Main.main(args);
+        } finally {
+            System.setOut(out);
+            System.setErr(err);
+        }
+        return captured.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void traceCountsOnlyWhenEnabled() throws IOException {
+        File dir = Files.createTempDirectory("trace").toFile();
+        try {
+            Repository.setWorkingDirectory(dir);
+            Repository repository = new Repository();
+            TestUtils.commit(repository, "a.txt", "one\n", "one");
+            Utils.writeContents(Repository.workingFile("a.txt"), "two\n");
+
+            long commands = Trace.calls(Trace.Stat.COMMAND);
+            long lists = Trace.calls(Trace.Stat.DIR_LIST);
+            long hashes = Trace.calls(Trace.Stat.HASH);
+            String summary = run("--trace", "status");
+            assertTrue(Trace.enabled());
+            assertEquals(commands + 1, Trace.calls(Trace.Stat.COMMAND));
+            assertTrue(Trace.calls(Trace.Stat.DIR_LIST) > lists);
+            assertTrue(Trace.calls(Trace.Stat.HASH) > hashes);
+            assertTrue(summary.startsWith("trace:"));
+            assertTrue(summary.contains(Trace.Stat.COMMAND.label()));
+            assertTrue(summary.contains(Trace.Stat.DIR_LIST.label()));
+            assertTrue(summary.contains(Trace.Stat.HASH.label()));
+
+            commands = Trace.calls(Trace.Stat.COMMAND);
+            lists = Trace.calls(Trace.Stat.DIR_LIST);
+            hashes = Trace.calls(Trace.Stat.HASH);
+            assertEquals("", run("status"));
+            assertFalse(Trace.enabled());
+            assertEquals(commands, Trace.calls(Trace.Stat.COMMAND));
+            assertEquals(lists, Trace.calls(Trace.Stat.DIR_LIST));
+            assertEquals(hashes, Trace.calls(Trace.Stat.HASH));
+        } finally {
+            Trace.configure(new String[0]);
+            Repository.setWorkingDirectory(
+                new File(System.getProperty("user.dir")));
+            TestUtils.delete(dir);
+        }
+    }
+}
@@ -12,7 +12,31 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, HashingTest.class,
+                                          FileMapTest.class,
+                                          BitmapTest.class,
+                                          BloomFilterTest.class,
+                                          PathPatternsTest.class,
+                                          RepositoryLockTest.class,
+                                          StagingIndexTest.class,
+                                          ReplayTest.class,
+                                          CommitTest.class,
+                                          FsckTest.class,
+                                          MaintenanceTest.class,
+                                          FastImportTest.class,
+                                          ArchiveTest.class,
+                                          WorktreeTest.class,
+                                          BisectTest.class,
+                                          RefsTest.class,
+                                          BlameTest.class,
+                                          GrepTest.class,
+                                          RemoteTest.class,
+                                          CloneTest.class,
+                                          SparseCheckoutTest.class,
+                                          CommitGraphTest.class,
+                                          ObjectWriterTest.class,
+                                          TraceTest.class,
+                                          WorkingTreeTest.class));
     }
 
     /** A dummy test to avoid complaint. */
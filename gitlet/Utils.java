@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -9,14 +10,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /** Assorted utilities.
@@ -32,25 +35,7 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
-        }
+        return Hashing.sha1(vals);
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -93,8 +78,12 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        long start = Trace.start();
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            Trace.record(Trace.Stat.FILE_READ, start, contents.length,
+                         file.getPath());
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -112,6 +101,8 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
+        long start = Trace.start();
+        long written = 0;
         try {
             if (file.isDirectory()) {
                 throw
@@ -120,18 +111,76 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
+                byte[] bytes;
                 if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
+                    bytes = (byte[]) obj;
                 } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
                 }
+                str.write(bytes);
+                written += bytes.length;
             }
             str.close();
+            Trace.record(Trace.Stat.FILE_WRITE, start, written,
+                         file.getPath());
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Like writeContents(FILE, CONTENTS), but writes to a temporary file
+     *  in FILE's directory first, forces it to disk and then renames it
+     *  over FILE in one step, so that a reader sees either the old
+     *  contents of FILE or all of the new ones, never a partial write.
+     *  The directory is forced afterwards, so the rename is durable. */
+    static void replaceContents(File file, Object... contents) {
+        File temp = tempFile(file);
+        writeContents(temp, contents);
+        try {
+            try (FileChannel channel = FileChannel.open(
+                     temp.toPath(), StandardOpenOption.WRITE)) {
+                channel.force(false);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(temp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /** Forces the entries of the directory DIR to disk, where the
+     *  platform allows it. */
+    static void syncDirectory(File dir) {
+        try (FileChannel channel = FileChannel.open(dir.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Returns a file in the directory of FILE, named after it, that no
+     *  other thread or process is using, to be written and then renamed
+     *  to FILE.  Unlike File.createTempFile, it is created with the usual
+     *  permissions. */
+    static File tempFile(File file) {
+        return new File(file.getPath() + "." + PROCESS_ID + "."
+                        + TEMP_COUNTER.incrementAndGet() + ".tmp");
+    }
+
+    /** Id of this process, which names its temporary files. */
+    private static final long PROCESS_ID = ProcessHandle.current().pid();
+    /** Number of temporary files named by this process. */
+    private static final AtomicLong TEMP_COUNTER = new AtomicLong();
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -148,9 +197,9 @@ class Utils {
         }
     }
 
-    /** Write OBJ to FILE. */
+    /** Write OBJ to FILE, replacing it in one step. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        replaceContents(file, serialize(obj));
     }
 
     /* DIRECTORIES */
@@ -168,11 +217,13 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
+        long start = Trace.start();
         String[] files = dir.list(PLAIN_FILES);
         if (files == null) {
             return null;
         } else {
             Arrays.sort(files);
+            Trace.record(Trace.Stat.DIR_LIST, start, 0, dir.getPath());
             return Arrays.asList(files);
         }
     }
@@ -216,6 +267,23 @@ class Utils {
         }
     }
 
+    /** Returns the object of type T serialized in BYTES, casting it to
+     *  EXPECTEDCLASS.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
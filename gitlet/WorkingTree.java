@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+
+/** Lists the files of a working directory.  The walk is recursive and
+ *  runs each subdirectory as its own task on a fork-join pool.  The
+ *  .gitlet directory, or the .gitlet file of a linked working tree, is
+ *  always skipped, and so is everything matched by the patterns in the
+ *  .gitletignore file at the top of the working directory.  An ignored
+ *  directory is pruned as soon as it is seen, without being listed.
+ *  @author Ramon Moreno
+ */
+class WorkingTree {
+
+    /** Returns the paths, relative to ROOT and separated by forward
+     *  slashes, of the plain files under ROOT that are neither ignored
+     *  nor inside .gitlet, in lexicographic order. */
+    static Stream<String> walk(File root) {
+        return list(root).stream();
+    }
+
+    /** Like walk(ROOT), but returns a list. */
+    static List<String> list(File root) {
+        PathPatterns ignored = ignorePatterns(root);
+        List<String> result = POOL.invoke(new Walk(root, "", ignored));
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Returns the patterns of ROOT's .gitletignore file, which match
+     *  nothing if there is none. */
+    static PathPatterns ignorePatterns(File root) {
+        File ignoreFile = Utils.join(root, IGNORE_FILE);
+        if (!ignoreFile.isFile()) {
+            return new PathPatterns(Collections.emptyList());
+        }
+        return new PathPatterns(Arrays.asList(
+            Utils.readContentsAsString(ignoreFile).split("\r?\n")));
+    }
+
+    /** The walk of one directory. */
+    private static class Walk extends RecursiveTask<List<String>> {
+
+        /** A walk of DIR, whose path relative to the root is PREFIX (empty
+         *  or ending in a slash), skipping what IGNORED matches. */
+        Walk(File dir, String prefix, PathPatterns ignored) {
+            _dir = dir;
+            _prefix = prefix;
+            _ignored = ignored;
+        }
+
+        @Override
+        protected List<String> compute() {
+            long start = Trace.start();
+            File[] entries = _dir.listFiles();
+            Trace.record(Trace.Stat.DIR_LIST, start, 0, _dir.getPath());
+            ArrayList<String> files = new ArrayList<>();
+            if (entries == null) {
+                return files;
+            }
+            ArrayList<Walk> subtrees = new ArrayList<>();
+            for (File entry : entries) {
+                String path = _prefix + entry.getName();
+                if (entry.getName().equals(GITLET)) {
+                    continue;
+                } else if (entry.isFile()) {
+                    if (!_ignored.matches(path)) {
+                        files.add(path);
+                    }
+                } else if (entry.isDirectory()
+                           && !Files.isSymbolicLink(entry.toPath())
+                           && !_ignored.matchesDirectory(path)) {
+                    Walk subtree = new Walk(entry, path + "/", _ignored);
+                    subtree.fork();
+                    subtrees.add(subtree);
+                }
+            }
+            for (Walk subtree : subtrees) {
+                files.addAll(subtree.join());
+            }
+            return files;
+        }
+
+        /** The directory walked. */
+        private final File _dir;
+        /** Path of _dir relative to the root, with a trailing slash. */
+        private final String _prefix;
+        /** The ignore patterns. */
+        private final PathPatterns _ignored;
+    }
+
+    /** Name of the ignore file. */
+    static final String IGNORE_FILE = ".gitletignore";
+    /** Name of the entry that is never listed or walked. */
+    private static final String GITLET = ".gitlet";
+    /** The pool running walks. */
+    private static final ForkJoinPool POOL = ForkJoinPool.commonPool();
+}
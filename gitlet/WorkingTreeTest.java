@@ -0,0 +1,56 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of WorkingTree.
+ *  @author Ramon Moreno
+ */
+public class WorkingTreeTest {
+
+    /** Writes CONTENTS to the file at PATH under ROOT, creating its
+     *  directories. */
+    private static void write(File root, String path, String contents) {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+    }
+
+    @Test
+    public void walkPrunesIgnoredAndSkippedDirectories() throws IOException {
+        File root = Files.createTempDirectory("tree").toFile();
+        File outside = Files.createTempDirectory("outside").toFile();
+        try {
+            write(root, WorkingTree.IGNORE_FILE,
+                  "*.log\nbuild/\n!build/keep.txt\n");
+            write(root, "a.txt", "a");
+            write(root, "a.log", "a");
+            write(root, "src/b.txt", "b");
+            write(root, "src/deep/c.txt", "c");
+            write(root, "src/deep/c.log", "c");
+            write(root, "build/keep.txt", "kept only if build is walked");
+            write(root, "build/out/d.txt", "d");
+            write(root, ".gitlet/myRepo", "repository");
+            write(root, "sub/.gitlet/HEAD", "nested repository");
+            write(root, "sub/e.txt", "e");
+            write(root, "linked/.gitlet", "gitdir: elsewhere");
+            write(root, "linked/f.txt", "f");
+            write(outside, "g.txt", "g");
+            Files.createSymbolicLink(new File(root, "link").toPath(),
+                                     outside.toPath());
+
+            assertEquals(Arrays.asList(WorkingTree.IGNORE_FILE, "a.txt",
+                                       "linked/f.txt", "src/b.txt",
+                                       "src/deep/c.txt", "sub/e.txt"),
+                         WorkingTree.list(root));
+        } finally {
+            TestUtils.delete(root);
+            TestUtils.delete(outside);
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** A linked working tree: a working directory, other than the one that
+ *  holds the repository, with a branch of the repository checked out.
+ *  It shares the object store, the branches and everything else with
+ *  the main working tree, and has its own current branch, staging area
+ *  and sparse-checkout patterns.
+ *
+ *  In a linked working tree, .gitlet is a file holding the line
+ *  "gitdir: " followed by the absolute path of the tree's own directory
+ *  in the repository, .gitlet/worktrees/NAME.  That directory holds
+ *  HEAD, the name of the current branch; index, the staging area;
+ *  sparse-checkout, the patterns if there are any; and gitdir, the path
+ *  of the working tree, by which a tree whose directory has been deleted
+ *  is recognized as stale and forgotten.  It may also hold the state of
+ *  commands in progress there, such as a bisection.
+ *  @author Ramon Moreno
+ */
+class Worktree {
+
+    /** A working tree named NAME, whose own directory in the repository
+     *  is ADMIN, at PATH, with BRANCH checked out. */
+    private Worktree(String name, File admin, File path, String branch) {
+        _name = name;
+        _admin = admin;
+        _path = path;
+        _branch = branch;
+    }
+
+    /** Returns the directory in the repository of the linked working tree
+     *  whose .gitlet file is LINK. */
+    static File adminDir(File link) {
+        String contents = Utils.readContentsAsString(link).trim();
+        if (!contents.startsWith(GITDIR)) {
+            throw new GitletException("Not in an initialized Gitlet "
+                                      + "directory.");
+        }
+        return new File(contents.substring(GITDIR.length()).trim());
+    }
+
+    /** Returns the .gitlet directory of the repository that the linked
+     *  working tree whose directory in it is ADMIN belongs to. */
+    static File commonDir(File admin) {
+        return admin.getParentFile().getParentFile();
+    }
+
+    /** Makes a working tree of the repository whose .gitlet directory is
+     *  DIR at PATH, which must be new or an empty directory, with BRANCH
+     *  as its current branch, and returns it.  No files are checked
+     *  out. */
+    static Worktree create(File dir, File path, String branch) {
+        File worktrees = Utils.join(dir, WORKTREES);
+        String base = path.getName().isEmpty() ? "worktree" : path.getName();
+        String name = base;
+        for (int i = 1; Utils.join(worktrees, name).exists(); i += 1) {
+            name = base + i;
+        }
+        File admin = Utils.join(worktrees, name);
+        admin.mkdirs();
+        path.mkdirs();
+        Utils.writeContents(Utils.join(admin, HEAD), branch + "\n");
+        Utils.writeContents(Utils.join(admin, GITDIR_FILE),
+                            path.getAbsolutePath() + "\n");
+        Utils.writeContents(Utils.join(path, ".gitlet"),
+                            GITDIR + admin.getAbsolutePath() + "\n");
+        return new Worktree(name, admin, path, branch);
+    }
+
+    /** Returns the linked working trees of the repository whose .gitlet
+     *  directory is DIR, in order of name, leaving out those whose
+     *  directories no longer link to it.  Nothing is deleted, so a shared
+     *  lock on the repository is enough. */
+    static List<Worktree> list(File dir) {
+        ArrayList<Worktree> result = new ArrayList<>();
+        for (File admin : admins(dir)) {
+            File path = linkedPath(admin);
+            if (path != null) {
+                result.add(new Worktree(admin.getName(), admin, path,
+                                        head(admin)));
+            }
+        }
+        return result;
+    }
+
+    /** Forgets the linked working trees of the repository whose .gitlet
+     *  directory is DIR whose directories no longer link to it, deleting
+     *  their directories in the repository.  The caller holds the
+     *  exclusive lock on the repository. */
+    static void prune(File dir) {
+        for (File admin : admins(dir)) {
+            if (linkedPath(admin) == null) {
+                forget(admin);
+            }
+        }
+    }
+
+    /** Returns the directories of the linked working trees of the
+     *  repository whose .gitlet directory is DIR, in order of name. */
+    private static File[] admins(File dir) {
+        File[] admins = Utils.join(dir, WORKTREES).listFiles(File::isDirectory);
+        if (admins == null) {
+            return new File[0];
+        }
+        Arrays.sort(admins);
+        return admins;
+    }
+
+    /** Returns the working directory of the linked working tree whose
+     *  directory in the repository is ADMIN, or null if that directory
+     *  no longer links back to ADMIN. */
+    private static File linkedPath(File admin) {
+        File gitdir = Utils.join(admin, GITDIR_FILE);
+        if (!gitdir.exists()) {
+            return null;
+        }
+        File path = new File(Utils.readContentsAsString(gitdir).trim());
+        File link = Utils.join(path, ".gitlet");
+        if (!link.isFile()
+            || !adminDir(link).getAbsoluteFile()
+                   .equals(admin.getAbsoluteFile())) {
+            return null;
+        }
+        return path;
+    }
+
+    /** Returns the current branch of the linked working tree whose
+     *  directory in the repository is ADMIN. */
+    static String head(File admin) {
+        return Utils.readContentsAsString(Utils.join(admin, HEAD)).trim();
+    }
+
+    /** Makes BRANCH the current branch of the linked working tree whose
+     *  directory in the repository is ADMIN. */
+    static void setHead(File admin, String branch) {
+        Utils.replaceContents(Utils.join(admin, HEAD), branch + "\n");
+    }
+
+    /** Returns the sparse-checkout patterns of the linked working tree
+     *  whose directory in the repository is ADMIN, or null if it has
+     *  none. */
+    static ArrayList<String> sparsePatterns(File admin) {
+        File file = Utils.join(admin, SPARSE_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (String line : Utils.readContentsAsString(file).split("\n")) {
+            if (!line.isEmpty()) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+
+    /** Makes PATTERNS, or no patterns if it is null, the sparse-checkout
+     *  patterns of the linked working tree whose directory in the
+     *  repository is ADMIN. */
+    static void setSparsePatterns(File admin, List<String> patterns) {
+        File file = Utils.join(admin, SPARSE_FILE);
+        if (patterns == null) {
+            file.delete();
+        } else {
+            StringBuilder contents = new StringBuilder();
+            for (String pattern : patterns) {
+                contents.append(pattern).append('\n');
+            }
+            Utils.replaceContents(file, contents.toString());
+        }
+    }
+
+    /** Deletes ADMIN, the directory of a stale working tree, and
+     *  everything in it. */
+    private static void forget(File admin) {
+        File[] files = admin.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    forget(file);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        admin.delete();
+    }
+
+    /** Returns the name of this working tree. */
+    String name() {
+        return _name;
+    }
+
+    /** Returns this working tree's directory in the repository. */
+    File admin() {
+        return _admin;
+    }
+
+    /** Returns the working directory of this working tree. */
+    File path() {
+        return _path;
+    }
+
+    /** Returns the current branch of this working tree. */
+    String branch() {
+        return _branch;
+    }
+
+    /** Name of the directory of linked working trees in .gitlet. */
+    static final String WORKTREES = "worktrees";
+    /** Name of the file holding a linked tree's current branch. */
+    private static final String HEAD = "HEAD";
+    /** Name of the file holding the path of a linked tree. */
+    private static final String GITDIR_FILE = "gitdir";
+    /** Name of the file holding a linked tree's sparse patterns. */
+    private static final String SPARSE_FILE = "sparse-checkout";
+    /** Start of the contents of a linked tree's .gitlet file. */
+    private static final String GITDIR = "gitdir: ";
+
+    /** The name of this tree. */
+    private final String _name;
+    /** This tree's directory in the repository. */
+    private final File _admin;
+    /** The working directory of this tree. */
+    private final File _path;
+    /** The current branch of this tree. */
+    private final String _branch;
+}
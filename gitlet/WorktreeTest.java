@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Worktree.
+ *  @author Ramon Moreno
+ */
+public class WorktreeTest {
+
+    @Test
+    public void linkedTreesShareTheRepository() throws IOException {
+        File root = Files.createTempDirectory("worktree").toFile();
+        File dir = Utils.join(root, "main", ".gitlet");
+        dir.mkdirs();
+        File path = Utils.join(root, "feature");
+        Worktree created = Worktree.create(dir, path, "feature");
+
+        File link = Utils.join(path, ".gitlet");
+        assertTrue(link.isFile());
+        File admin = Worktree.adminDir(link);
+        assertEquals(created.admin().getAbsoluteFile(), admin);
+        assertEquals(dir.getAbsoluteFile(),
+                     Worktree.commonDir(admin).getAbsoluteFile());
+        assertEquals("feature", Worktree.head(admin));
+        Worktree.setHead(admin, "other");
+        assertEquals("other", Worktree.head(admin));
+
+        assertNull(Worktree.sparsePatterns(admin));
+        Worktree.setSparsePatterns(admin, Arrays.asList("src/*", "*.md"));
+        assertEquals(Arrays.asList("src/*", "*.md"),
+                     Worktree.sparsePatterns(admin));
+        Worktree.setSparsePatterns(admin, null);
+        assertNull(Worktree.sparsePatterns(admin));
+
+        Worktree again = Worktree.create(dir, Utils.join(root, "x", "feature"),
+                                         "master");
+        assertEquals("feature1", again.name());
+        List<Worktree> all = Worktree.list(dir);
+        assertEquals(2, all.size());
+        assertEquals("other", all.get(0).branch());
+        assertEquals("master", all.get(1).branch());
+    }
+
+    @Test
+    public void staleTreesAreForgotten() throws IOException {
+        File root = Files.createTempDirectory("worktree").toFile();
+        File dir = Utils.join(root, "main", ".gitlet");
+        dir.mkdirs();
+        File path = Utils.join(root, "gone");
+        Worktree gone = Worktree.create(dir, path, "gone");
+        Worktree.create(dir, Utils.join(root, "kept"), "kept");
+
+        Utils.writeContents(Utils.join(gone.admin(), "bisect"), "state");
+        Utils.join(path, ".gitlet").delete();
+        path.delete();
+        List<Worktree> all = Worktree.list(dir);
+        assertEquals(1, all.size());
+        assertEquals("kept", all.get(0).branch());
+        assertTrue(gone.admin().exists());
+
+        Worktree.prune(dir);
+        assertFalse(gone.admin().exists());
+        assertEquals(1, Worktree.list(dir).size());
+        assertEquals("gone", Worktree.create(dir, path, "gone").name());
+    }
+}